@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgoBenchmark {
+
+    @Benchmark
+    public Diagram sort(Workload workload) {
+        return new ShapeSorter().sort(workload.diagram);
+    }
+
+    @Benchmark
+    public Diagram sortWithFeedbackArcSet(Workload workload) {
+        return new ShapeSorter(ShapeSorter.CycleBreaking.FEEDBACK_ARC_SET).sort(workload.diagram);
+    }
+
+    @Benchmark
+    public Grid layout(Workload workload) {
+        return new ShapeLayouter().layout(workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public Grid layoutWithBranchHeights(Workload workload) {
+        return new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public Grid layoutWithColumnarStorage(Workload workload) {
+        return new ShapeLayouter(ShapeLayouter.RowAllocation.INSERT_AND_COMPACT, Grid.Storage.COLUMNAR).layout(workload.sortedDiagram);
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.converter.AlgoToDisplayModelConverter;
+import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.converter.StreamingBpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConverterBenchmark {
+
+    private final BpmnToAlgoModelConverter bpmnToAlgoModelConverter = new BpmnToAlgoModelConverter();
+    private final StreamingBpmnToAlgoModelConverter streamingBpmnToAlgoModelConverter = new StreamingBpmnToAlgoModelConverter();
+    private final AlgoToDisplayModelConverter algoToDisplayModelConverter = new AlgoToDisplayModelConverter();
+    private final AlgoToDisplayModelConverter parallelAlgoToDisplayModelConverter =
+            new AlgoToDisplayModelConverter(AlgoToDisplayModelConverter.WayPoints.PARALLEL);
+
+    @Benchmark
+    public Diagram toAlgoModel(Workload workload) {
+        return bpmnToAlgoModelConverter.toAlgoModel(workload.definitions);
+    }
+
+    // read the xml, compare with XmlParserBenchmark.unmarshall + toAlgoModel
+    @Benchmark
+    public Diagram streamToAlgoModel(Workload workload) {
+        return streamingBpmnToAlgoModelConverter.toAlgoModel(workload.bpmn);
+    }
+
+    @Benchmark
+    public DisplayModel toDisplayModel(Workload workload) {
+        return algoToDisplayModelConverter.convert(workload.grid, workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public DisplayModel toDisplayModelInParallel(Workload workload) {
+        return parallelAlgoToDisplayModelConverter.convert(workload.grid, workload.sortedDiagram);
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.input.CSVtoBPMN;
+import io.process.analytics.tools.bpmn.generator.input.CSVtoDiagram;
+import io.process.analytics.tools.bpmn.generator.input.CsvParsing;
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark {
+
+    @Benchmark
+    public TDefinitions readFromCSV(Workload workload) {
+        return new CSVtoBPMN().readFromCSV(workload.csv.nodes, workload.csv.edges);
+    }
+
+    @Benchmark
+    public TDefinitions readFromCSVInParallel(Workload workload) {
+        return new CSVtoBPMN(FileInput.BUFFERED, CsvParsing.PARALLEL).readFromCSV(workload.csv.nodes, workload.csv.edges);
+    }
+
+    @Benchmark
+    public Diagram readFromCSVToDiagram(Workload workload) {
+        return new CSVtoDiagram().readFromCSV(workload.csv.nodes, workload.csv.edges);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import static io.process.analytics.tools.bpmn.generator.export.BPMNExporter.defaultBpmnExporter;
+import static io.process.analytics.tools.bpmn.generator.export.PassThroughBPMNExporter.defaultPassThroughBpmnExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.converter.AlgoToDisplayModelConverter;
+import io.process.analytics.tools.bpmn.generator.export.ASCIIExporter;
+import io.process.analytics.tools.bpmn.generator.export.BPMNExporter;
+import io.process.analytics.tools.bpmn.generator.export.PassThroughBPMNExporter;
+import io.process.analytics.tools.bpmn.generator.export.SVGExporter;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExporterBenchmark {
+
+    private final BPMNExporter bpmnExporter = defaultBpmnExporter();
+    private final PassThroughBPMNExporter passThroughBpmnExporter = defaultPassThroughBpmnExporter();
+    private final SVGExporter svgExporter = new SVGExporter();
+    private final SVGExporter parallelSvgExporter = new SVGExporter(SVGExporter.Style.INLINE, SVGExporter.Rendering.PARALLEL);
+    private final ASCIIExporter asciiExporter = new ASCIIExporter();
+    // reused, so that only the export is measured
+    private final ByteArrayOutputStream svgOutput = new ByteArrayOutputStream();
+    private final StringWriter bpmnOutput = new StringWriter();
+
+    @Benchmark
+    public TDefinitions bpmn(Workload workload) {
+        return bpmnExporter.export(workload.definitions, workload.grid, workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public String bpmnPassThrough(Workload workload) {
+        return passThroughBpmnExporter.export(workload.bpmn, workload.grid, workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public int bpmnPassThroughWhileReading(Workload workload) {
+        bpmnOutput.getBuffer().setLength(0);
+        // the document is copied while read, the layout being already computed
+        passThroughBpmnExporter.export(new StringReader(workload.bpmn),
+                document -> new AlgoToDisplayModelConverter().convert(workload.grid, workload.sortedDiagram), bpmnOutput);
+        return bpmnOutput.getBuffer().length();
+    }
+
+    @Benchmark
+    public String svg(Workload workload) {
+        return svgExporter.export(workload.grid, workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public String svgInParallel(Workload workload) {
+        return parallelSvgExporter.export(workload.grid, workload.sortedDiagram);
+    }
+
+    @Benchmark
+    public int svgToStream(Workload workload) {
+        svgOutput.reset();
+        svgExporter.export(workload.grid, workload.sortedDiagram, svgOutput);
+        return svgOutput.size();
+    }
+
+    @Benchmark
+    public String ascii(Workload workload) {
+        return asciiExporter.export(workload.grid);
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+
+/**
+ * Structure of the generated benchmark models.
+ */
+public enum GraphShape {
+    /** start, tasks, end */
+    CHAIN(WorkloadGenerator.builder().nestingDepth(0).build()),
+    /** splits to up to 8 parallel branches */
+    WIDE_SPLITS(WorkloadGenerator.builder().fanOut(8).nestingDepth(1).cycleDensity(0).build()),
+    /** binary splits nested up to 4 levels deep */
+    NESTED_GATEWAYS(WorkloadGenerator.builder().fanOut(2).nestingDepth(4).cycleDensity(0).build()),
+    /** loops and splits, with loops nested in the splits */
+    CYCLES(WorkloadGenerator.builder().fanOut(3).nestingDepth(2).cycleDensity(0.3).build());
+
+    private final WorkloadGenerator generator;
+
+    GraphShape(WorkloadGenerator generator) {
+        this.generator = generator;
+    }
+
+    WorkloadGenerator generator(int nodeCount) {
+        return generator.toBuilder().nodeCount(nodeCount).build();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+import io.process.analytics.tools.bpmn.generator.model.Position;
+
+/**
+ * Heap retained by a laid out grid, for each storage: the positions of the workload grid are copied into
+ * {@link #GRIDS} grids, the used heap being measured after collecting the garbage. The shape ids are interned in the
+ * symbol table of the diagram, so only the grid is counted.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class GridHeapBenchmark {
+
+    private static final int GRIDS = 20;
+
+    @Param({ "ROW_TREE", "COLUMNAR" })
+    public Grid.Storage storage;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+
+        public long bytesPerGrid;
+        public long bytesPerPosition;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerGrid = 0;
+            bytesPerPosition = 0;
+        }
+
+    }
+
+    @Benchmark
+    public Grid[] retainedHeap(Workload workload, Heap heap) {
+        Position[] positions = workload.grid.getPositions().toArray(new Position[0]);
+        long before = usedHeap();
+        Grid[] grids = new Grid[GRIDS];
+        for (int i = 0; i < GRIDS; i++) {
+            grids[i] = new Grid(workload.sortedDiagram.getSymbols(), storage);
+            for (Position position : positions) {
+                grids[i].add(position);
+            }
+        }
+        long retained = usedHeap() - before;
+        heap.bytesPerGrid = retained / GRIDS;
+        heap.bytesPerPosition = retained / GRIDS / Math.max(positions.length, 1);
+        return grids;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+}
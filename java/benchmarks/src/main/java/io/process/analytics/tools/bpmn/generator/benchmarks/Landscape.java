@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBElement;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.process.analytics.tools.bpmn.generator.internal.Semantic;
+import io.process.analytics.tools.bpmn.generator.internal.XmlParser;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TFlowElement;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TProcess;
+
+/**
+ * A single BPMN document made of many generated processes, as exported from a process landscape.
+ */
+@State(Scope.Benchmark)
+public class Landscape {
+
+    @Param({ "100" })
+    public int processes;
+
+    @Param({ "100", "1000" })
+    public int processSize;
+
+    String bpmn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TDefinitions landscape = new TDefinitions();
+        landscape.setId("landscape");
+        landscape.setTargetNamespace(XMLConstants.NULL_NS_URI);
+        Semantic semantic = new Semantic(landscape);
+        for (int i = 0; i < processes; i++) {
+            TDefinitions definitions = GraphShape.CYCLES.generator(processSize).toBuilder().seed(i).build().generateDefinitions();
+            TProcess process = new Semantic(definitions).getProcesses().get(0);
+            // ids are unique in the document
+            String prefix = "process" + i + "_";
+            process.setId(prefix + process.getId());
+            for (JAXBElement<? extends TFlowElement> flowElement : process.getFlowElement()) {
+                flowElement.getValue().setId(prefix + flowElement.getValue().getId());
+            }
+            semantic.add(process);
+        }
+        bpmn = new XmlParser().marshal(landscape);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.internal.XmlParser;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+
+/**
+ * Input of every stage of the pipeline, computed once per graph shape and size.
+ */
+@State(Scope.Benchmark)
+public class Workload {
+
+    @Param({ "CHAIN", "WIDE_SPLITS", "NESTED_GATEWAYS", "CYCLES" })
+    public GraphShape shape;
+
+    @Param({ "100", "1000", "10000" })
+    public int size;
+
+    TDefinitions definitions;
+    String bpmn;
+    WorkloadGenerator.Csv csv;
+    Diagram diagram;
+    Diagram sortedDiagram;
+    Grid grid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkloadGenerator generator = shape.generator(size);
+        definitions = generator.generateDefinitions();
+        csv = generator.generateCsv();
+        bpmn = new XmlParser().marshal(definitions);
+        diagram = new BpmnToAlgoModelConverter().toAlgoModel(definitions);
+        sortedDiagram = new ShapeSorter().sort(diagram);
+        grid = new ShapeLayouter().layout(sortedDiagram);
+    }
+
+}
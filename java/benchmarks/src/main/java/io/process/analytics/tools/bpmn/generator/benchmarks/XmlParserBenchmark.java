@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.process.analytics.tools.bpmn.generator.internal.XmlParser;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XmlParserBenchmark {
+
+    private final XmlParser xmlParser = new XmlParser();
+    private final XmlParser compactXmlParser = new XmlParser(XmlParser.Output.COMPACT);
+    private final XmlParser parallelXmlParser = new XmlParser(XmlParser.Output.FORMATTED, XmlParser.Input.PARALLEL);
+
+    @Benchmark
+    public TDefinitions unmarshall(Workload workload) {
+        return xmlParser.unmarshall(workload.bpmn);
+    }
+
+    @Benchmark
+    public TDefinitions unmarshallLandscape(Landscape landscape) {
+        return xmlParser.unmarshall(landscape.bpmn);
+    }
+
+    @Benchmark
+    public TDefinitions unmarshallLandscapeInParallel(Landscape landscape) {
+        return parallelXmlParser.unmarshall(landscape.bpmn);
+    }
+
+    @Benchmark
+    public String marshal(Workload workload) {
+        return xmlParser.marshal(workload.definitions);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream marshalCompactToStream(Workload workload) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        compactXmlParser.marshal(workload.definitions, output);
+        return output;
+    }
+
+}
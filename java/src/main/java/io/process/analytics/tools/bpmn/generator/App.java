@@ -18,12 +18,19 @@ import static java.lang.String.format;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.joining;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.concurrent.Callable;
 
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter.RowAllocation;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter.CycleBreaking;
+import io.process.analytics.tools.bpmn.generator.input.CsvParsing;
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
 import io.process.analytics.tools.bpmn.generator.internal.FileUtils;
 import lombok.extern.log4j.Log4j2;
 import picocli.CommandLine;
@@ -41,7 +48,7 @@ public class App implements Callable<Integer> {
             paramLabel = "TYPE")
     String inputType = "BPMN";
     @Option(names = {"-u", "--output-type"},
-            description = "BPMN, SVG or ASCII.",
+            description = "BPMN, SVG, SVG_COMPACT, SVGZ or ASCII.",
             paramLabel = "TYPE")
     String outputType = "BPMN";
 
@@ -49,6 +56,20 @@ public class App implements Callable<Integer> {
             description = "Output file.",
             paramLabel = "OUTPUT")
     private File outputFile;
+    @Option(names = {"-m", "--memory-mapped"},
+            description = "Map the input files in memory instead of reading them through a buffer, for very large files.")
+    private boolean memoryMapped;
+    @Option(names = {"-p", "--parallel"},
+            description = "Parse the CSV input files and render the SVG output on all the cores, for very large files.")
+    private boolean parallel;
+    @Option(names = {"-c", "--cycle-breaking"},
+            description = "JOINS or FEEDBACK_ARC_SET: how the cycles are broken, FEEDBACK_ARC_SET never fails on dense loops.",
+            paramLabel = "STRATEGY")
+    private CycleBreaking cycleBreaking = CycleBreaking.JOINS;
+    @Option(names = {"-r", "--row-allocation"},
+            description = "INSERT_AND_COMPACT or BRANCH_HEIGHTS: BRANCH_HEIGHTS computes the rows of each branch before positioning the shapes.",
+            paramLabel = "STRATEGY")
+    private RowAllocation rowAllocation = RowAllocation.INSERT_AND_COMPACT;
     @Parameters(arity = "1..2", paramLabel = "INPUT", description = "Input file(s).")
     private File[] inputFiles;
 
@@ -238,30 +259,35 @@ public class App implements Callable<Integer> {
     @Override
     public Integer call() {
         try {
-            BpmnAutoLayout bpmnLayoutGenerator = new BpmnAutoLayout();
-            String output;
             switch (inputType) {
                 case "BPMN":
                     if (inputFiles.length != 1) {
                         System.err.println("Expected only one input file to import from BPMN format, got: " + inputType.length());
                     }
-                    output = bpmnLayoutGenerator.generateLayoutFromBPMNSemantic(FileUtils.fileContent(inputFiles[0]), BpmnAutoLayout.ExportType.BPMN);
                     break;
                 case "CSV":
                     if (inputFiles.length != 2) {
                         System.err.println("Expected 2 input files to import from CSV format, got: " + inputType.length());
                     }
-                    output = bpmnLayoutGenerator.generateLayoutFromCSV(FileUtils.fileContent(inputFiles[0]), FileUtils.fileContent(inputFiles[1]), exportType(outputType));
                     break;
                 default:
                     System.err.println("Unexpected input type: " + inputType);
                     return 2;
             }
+            // fail before creating the output file
+            for (File inputFile : inputFiles) {
+                if (!inputFile.exists()) {
+                    throw new NoSuchFileException(inputFile.getPath());
+                }
+            }
             if (outputFile != null) {
                 FileUtils.touch(outputFile);
-                Files.write(outputFile.toPath(), output.getBytes());
+                try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(outputFile.toPath()))) {
+                    layout(output);
+                }
             } else {
-                System.out.println(output);
+                layout(System.out);
+                System.out.println();
             }
         } catch (NoSuchFileException e) {
             System.err.println("File not found: " + e.getMessage());
@@ -274,6 +300,18 @@ public class App implements Callable<Integer> {
         return 0;
     }
 
+    private void layout(OutputStream output) throws IOException {
+        BpmnAutoLayout bpmnLayoutGenerator = new BpmnAutoLayout(memoryMapped ? FileInput.MAPPED : FileInput.BUFFERED,
+                parallel ? CsvParsing.PARALLEL : CsvParsing.SEQUENTIAL,
+                parallel ? BpmnAutoLayout.Exporting.PARALLEL : BpmnAutoLayout.Exporting.SEQUENTIAL, cycleBreaking,
+                rowAllocation);
+        if ("CSV".equals(inputType)) {
+            bpmnLayoutGenerator.generateLayoutFromCSV(inputFiles[0].toPath(), inputFiles[1].toPath(), exportType(outputType), output);
+        } else {
+            bpmnLayoutGenerator.generateLayoutFromBPMNSemantic(inputFiles[0].toPath(), BpmnAutoLayout.ExportType.BPMN, output);
+        }
+    }
+
 
     private static BpmnAutoLayout.ExportType exportType(String arg) {
         try {
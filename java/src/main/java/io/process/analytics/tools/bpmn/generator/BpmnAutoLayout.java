@@ -1,22 +1,48 @@
 package io.process.analytics.tools.bpmn.generator;
 
 import static io.process.analytics.tools.bpmn.generator.export.BPMNExporter.defaultBpmnExporter;
+import static io.process.analytics.tools.bpmn.generator.export.PassThroughBPMNExporter.defaultPassThroughBpmnExporter;
 import static io.process.analytics.tools.bpmn.generator.internal.BpmnInOut.defaultBpmnInOut;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
 import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.converter.AlgoToDisplayModelConverter;
 import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.converter.StreamingBpmnToAlgoModelConverter;
 import io.process.analytics.tools.bpmn.generator.export.ASCIIExporter;
 import io.process.analytics.tools.bpmn.generator.export.SVGExporter;
 import io.process.analytics.tools.bpmn.generator.input.CSVtoBPMN;
+import io.process.analytics.tools.bpmn.generator.input.CSVtoDiagram;
+import io.process.analytics.tools.bpmn.generator.input.CsvParsing;
 import io.process.analytics.tools.bpmn.generator.internal.BpmnInOut;
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
 import io.process.analytics.tools.bpmn.generator.internal.FileUtils;
 import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
 import io.process.analytics.tools.bpmn.generator.model.Diagram;
 import io.process.analytics.tools.bpmn.generator.model.Grid;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
@@ -24,58 +50,224 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class BpmnAutoLayout {
 
-
     public enum ExportType {
         ASCII,
         BPMN,
-        SVG
+        /** BPMN input only: the original document is kept as is, only its diagram is replaced */
+        BPMN_PASS_THROUGH,
+        SVG,
+        /** SVG whose elements share a style sheet, for smaller files */
+        SVG_COMPACT,
+        /** Compact SVG, gzip compressed: binary, only written to output streams */
+        SVGZ
+    }
+
+    /** How the exports of a single layout are run. */
+    public enum Exporting {
+        SEQUENTIAL,
+        /**
+         * Each export is run on the common fork join pool, they all share the same display model. The SVG exports
+         * also render their elements in parallel, see {@link SVGExporter.Rendering#PARALLEL}.
+         */
+        PARALLEL
     }
 
     protected static final BpmnInOut bpmnInOut = defaultBpmnInOut();
 
+    private static final String SVGZ_TO_STRING_ERROR = "SVGZ is a binary format, it can only be exported to an output stream";
+
+    private final FileInput fileInput;
+    private final CsvParsing csvParsing;
+    private final Exporting exporting;
+    private final ShapeSorter.CycleBreaking cycleBreaking;
+    private final ShapeLayouter.RowAllocation rowAllocation;
+
+    public BpmnAutoLayout() {
+        this(FileInput.BUFFERED);
+    }
+
+    /**
+     * @param fileInput how the files given as {@link Path} are opened
+     */
+    public BpmnAutoLayout(FileInput fileInput) {
+        this(fileInput, CsvParsing.SEQUENTIAL);
+    }
+
+    public BpmnAutoLayout(FileInput fileInput, CsvParsing csvParsing) {
+        this(fileInput, csvParsing, Exporting.SEQUENTIAL);
+    }
+
+    public BpmnAutoLayout(FileInput fileInput, CsvParsing csvParsing, Exporting exporting) {
+        this(fileInput, csvParsing, exporting, ShapeSorter.CycleBreaking.JOINS);
+    }
+
+    /**
+     * @param cycleBreaking how the cycles of the process are broken before laying it out
+     */
+    public BpmnAutoLayout(FileInput fileInput, CsvParsing csvParsing, Exporting exporting, ShapeSorter.CycleBreaking cycleBreaking) {
+        this(fileInput, csvParsing, exporting, cycleBreaking, ShapeLayouter.RowAllocation.INSERT_AND_COMPACT);
+    }
+
+    /**
+     * @param rowAllocation how the rows of the grid are allocated to the branches of the process
+     */
+    public BpmnAutoLayout(FileInput fileInput, CsvParsing csvParsing, Exporting exporting, ShapeSorter.CycleBreaking cycleBreaking,
+                          ShapeLayouter.RowAllocation rowAllocation) {
+        this.fileInput = fileInput;
+        this.csvParsing = csvParsing;
+        this.exporting = exporting;
+        this.cycleBreaking = cycleBreaking;
+        this.rowAllocation = rowAllocation;
+    }
 
     public static String layout(String bpmn, ExportType exportType) {
-        TDefinitions tDefinitions = bpmnInOut.readFromBpmn(bpmn);
-        LayoutSortedDiagram layout = layout(tDefinitions);
-        return export(layout, exportType);
+        return new BpmnAutoLayout().layoutAndExport(bpmn, exportType);
+    }
+
+    /**
+     * Write the export to the output stream, UTF-8 encoded. The streams are not closed.
+     */
+    public static void layout(InputStream bpmn, ExportType exportType, OutputStream output) throws IOException {
+        new BpmnAutoLayout().layoutAndExport(bpmn, exportType, output);
     }
+
     /*
        Public methods
      */
 
     public String generateLayoutFromBPMNSemantic(String bpmn, ExportType exportType) {
-        TDefinitions tDefinitions = bpmnInOut.readFromBpmn(bpmn);
-        LayoutSortedDiagram layout = layout(tDefinitions);
-        return export(layout, exportType);
+        return layoutAndExport(bpmn, exportType);
+    }
+
+    public void generateLayoutFromBPMNSemantic(InputStream bpmn, ExportType exportType, OutputStream output) throws IOException {
+        layoutAndExport(bpmn, exportType, output);
+    }
+
+    public void generateLayoutFromBPMNSemantic(Path bpmn, ExportType exportType, OutputStream output) throws IOException {
+        try (InputStream input = fileInput.newInputStream(bpmn)) {
+            layoutAndExport(input, exportType, output);
+        }
+    }
+
+    /**
+     * Lay out the BPMN once and export the layout to each of the types. The display model of the layout is computed
+     * once, and shared by the exports.
+     */
+    public Map<ExportType, String> generateLayoutFromBPMNSemantic(String bpmn, Set<ExportType> exportTypes) {
+        checkStringExports(exportTypes);
+        return export(layoutFromBpmn(bpmn, exportTypes), exportTypes, bpmn);
     }
 
     public String generateLayoutFromCSV(String nodes, String edges, ExportType exportType) {
-        TDefinitions tDefinitions = new CSVtoBPMN().readFromCSV(nodes, edges);
-        LayoutSortedDiagram layout = layout(tDefinitions);
-        return export(layout, exportType);
+        return export(layoutFromCsv(nodes, edges, EnumSet.of(exportType)), exportType);
     }
 
+    /**
+     * Lay out the CSV process once and export the layout to each of the types. The display model of the layout is
+     * computed once, and shared by the exports.
+     */
+    public Map<ExportType, String> generateLayoutFromCSV(String nodes, String edges, Set<ExportType> exportTypes) {
+        checkStringExports(exportTypes);
+        return export(layoutFromCsv(nodes, edges, exportTypes), exportTypes, null);
+    }
+
+    public void generateLayoutFromCSV(Path nodes, Path edges, ExportType exportType, OutputStream output) throws IOException {
+        LayoutSortedDiagram layout;
+        try (Reader nodesReader = fileInput.newReader(nodes, StandardCharsets.UTF_8);
+             Reader edgesReader = fileInput.newReader(edges, StandardCharsets.UTF_8)) {
+            layout = layoutFromCsv(nodesReader, edgesReader, EnumSet.of(exportType));
+        }
+        export(layout, exportType, output);
+    }
 
     /*
        BPMN --> Diagram
      */
 
-    private static  LayoutSortedDiagram layout(TDefinitions definitions) {
+    private String layoutAndExport(String bpmn, ExportType exportType) {
+        return export(layoutFromBpmn(bpmn, EnumSet.of(exportType)), exportType, bpmn);
+    }
+
+    private void layoutAndExport(InputStream bpmn, ExportType exportType, OutputStream output) throws IOException {
+        if (exportType == ExportType.BPMN_PASS_THROUGH) {
+            // the original document is copied while it is read, and written back with its own encoding
+            BufferedInputStream input = new BufferedInputStream(bpmn);
+            Charset encoding = FileUtils.xmlEncoding(input);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, encoding));
+            defaultPassThroughBpmnExporter().export(new InputStreamReader(input, encoding), originalBpmn -> {
+                log.debug("Reading BPMN semantic into internal model");
+                Diagram diagram = new StreamingBpmnToAlgoModelConverter().toAlgoModel(originalBpmn);
+                log.debug("Reading done");
+                LayoutSortedDiagram layout = layout(null, diagram);
+                log.debug("Exporting to BPMN, keeping the original document");
+                return layout.getDisplayModel();
+            }, writer);
+            writer.flush();
+            return;
+        }
+        export(layoutFromBpmn(bpmn, exportType), exportType, output);
+    }
+
+    private LayoutSortedDiagram layoutFromBpmn(InputStream bpmn, ExportType exportType) {
+        if (exportType == ExportType.BPMN) {
+            return layout(bpmnInOut.readFromBpmn(bpmn));
+        }
+        log.debug("Reading BPMN semantic into internal model");
+        Diagram diagram = new StreamingBpmnToAlgoModelConverter().toAlgoModel(bpmn);
+        log.debug("Reading done");
+        return layout(null, diagram);
+    }
+
+    private LayoutSortedDiagram layoutFromBpmn(String bpmn, Set<ExportType> exportTypes) {
+        if (exportTypes.contains(ExportType.BPMN)) {
+            return layout(bpmnInOut.readFromBpmn(bpmn));
+        }
+        // the other exports only need the flow nodes and sequence flows, no need to unmarshal the whole definitions
+        log.debug("Reading BPMN semantic into internal model");
+        Diagram diagram = new StreamingBpmnToAlgoModelConverter().toAlgoModel(bpmn);
+        log.debug("Reading done");
+        return layout(null, diagram);
+    }
+
+    /*
+       CSV --> Diagram
+     */
+
+    private LayoutSortedDiagram layoutFromCsv(String nodes, String edges, Set<ExportType> exportTypes) {
+        try {
+            return layoutFromCsv(new StringReader(nodes), new StringReader(edges), exportTypes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the CSV content", e);
+        }
+    }
+
+    private LayoutSortedDiagram layoutFromCsv(Reader nodes, Reader edges, Set<ExportType> exportTypes) throws IOException {
+        if (exportTypes.contains(ExportType.BPMN) || exportTypes.contains(ExportType.BPMN_PASS_THROUGH)) {
+            return layout(new CSVtoBPMN(fileInput, csvParsing).readFromCSV(nodes, edges));
+        }
+        // the other exports only need the algo model, no need to build the BPMN semantic
+        log.debug("Reading CSV into internal model");
+        Diagram diagram = new CSVtoDiagram(fileInput, csvParsing).readFromCSV(nodes, edges);
+        log.debug("Reading done");
+        return layout(null, diagram);
+    }
+
+    private LayoutSortedDiagram layout(TDefinitions definitions) {
         log.debug("Converting BPMN into internal model");
         Diagram diagram = new BpmnToAlgoModelConverter().toAlgoModel(definitions);
         log.debug("Conversion done");
+        return layout(definitions, diagram);
+    }
 
+    private LayoutSortedDiagram layout(TDefinitions definitions, Diagram diagram) {
         log.debug("Sorting and generating Layout");
-        Diagram sortedDiagram = new ShapeSorter().sort(diagram);
-        Grid grid = new ShapeLayouter().layout(sortedDiagram);
+        Diagram sortedDiagram = new ShapeSorter(cycleBreaking).sort(diagram);
+        Grid grid = new ShapeLayouter(rowAllocation).layout(sortedDiagram);
         log.debug("Sort and Layout done");
 
         return new LayoutSortedDiagram(definitions, grid, sortedDiagram);
     }
 
-
-
-
     /*
        Diagram --> Exported format
      */
@@ -87,24 +279,115 @@ public class BpmnAutoLayout {
 
     protected static String exportToBpmn(LayoutSortedDiagram diagram) {
         log.debug("Exporting to BPMN");
-        TDefinitions newDefinitions = defaultBpmnExporter().export(diagram.originalDefinitions, diagram.grid, diagram.diagram);
+        TDefinitions newDefinitions = defaultBpmnExporter().export(diagram.originalDefinitions, diagram.getDisplayModel());
         return bpmnInOut.writeToBpmn(newDefinitions);
     }
 
-    private static String exportToSvg(LayoutSortedDiagram diagram) {
+    private String exportToSvg(LayoutSortedDiagram diagram, SVGExporter.Style style) {
         log.debug("Exporting to SVG");
-        return new SVGExporter().export(diagram.getGrid(), diagram.getDiagram());
+        return svgExporter(style).export(diagram.getDisplayModel());
     }
 
+    private SVGExporter svgExporter(SVGExporter.Style style) {
+        return new SVGExporter(style, exporting == Exporting.PARALLEL ? SVGExporter.Rendering.PARALLEL : SVGExporter.Rendering.SEQUENTIAL);
+    }
 
-    private static String export(LayoutSortedDiagram layout, ExportType exportType) {
+    private void export(LayoutSortedDiagram layout, ExportType exportType, OutputStream output) {
+        switch (exportType) {
+            case ASCII:
+                log.debug("Exporting to ASCII file");
+                new ASCIIExporter().export(layout.getGrid(), writer(output));
+                break;
+            case BPMN:
+            // no original document to keep
+            case BPMN_PASS_THROUGH:
+                log.debug("Exporting to BPMN");
+                TDefinitions newDefinitions = defaultBpmnExporter().export(layout.originalDefinitions, layout.getDisplayModel());
+                bpmnInOut.writeToBpmn(newDefinitions, output);
+                break;
+            case SVG:
+                log.debug("Exporting to SVG");
+                svgExporter(SVGExporter.Style.INLINE).export(layout.getDisplayModel(), output);
+                break;
+            case SVG_COMPACT:
+                log.debug("Exporting to compact SVG");
+                svgExporter(SVGExporter.Style.COMPACT).export(layout.getDisplayModel(), output);
+                break;
+            case SVGZ:
+                log.debug("Exporting to SVGZ");
+                svgExporter(SVGExporter.Style.COMPACT).exportCompressed(layout.getDisplayModel(), output);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected Export Type: " + exportType);
+        }
+    }
+
+    private static Writer writer(OutputStream output) {
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    private Map<ExportType, String> export(LayoutSortedDiagram layout, Set<ExportType> exportTypes, String originalBpmn) {
+        // without an original document, both are the same export, and it modifies the original definitions
+        boolean sameBpmnExports = originalBpmn == null
+                && exportTypes.contains(ExportType.BPMN) && exportTypes.contains(ExportType.BPMN_PASS_THROUGH);
+        Set<ExportType> exported = EnumSet.noneOf(ExportType.class);
+        exported.addAll(exportTypes);
+        if (sameBpmnExports) {
+            exported.remove(ExportType.BPMN_PASS_THROUGH);
+        }
+        if (exported.stream().anyMatch(exportType -> exportType != ExportType.ASCII)) {
+            // computed before the exports start, rather than by the first one while the others wait for it
+            layout.getDisplayModel();
+        }
+
+        Map<ExportType, String> exports = new EnumMap<>(ExportType.class);
+        if (exporting == Exporting.PARALLEL) {
+            Map<ExportType, ForkJoinTask<String>> tasks = new EnumMap<>(ExportType.class);
+            for (ExportType exportType : exported) {
+                tasks.put(exportType, ForkJoinPool.commonPool().submit(() -> export(layout, exportType, originalBpmn)));
+            }
+            tasks.forEach((exportType, task) -> exports.put(exportType, task.join()));
+        } else {
+            for (ExportType exportType : exported) {
+                exports.put(exportType, export(layout, exportType, originalBpmn));
+            }
+        }
+        if (sameBpmnExports) {
+            exports.put(ExportType.BPMN_PASS_THROUGH, exports.get(ExportType.BPMN));
+        }
+        return exports;
+    }
+
+    private static void checkStringExports(Set<ExportType> exportTypes) {
+        // before laying out, and before the errors of parallel exports get wrapped
+        if (exportTypes.contains(ExportType.SVGZ)) {
+            throw new IllegalArgumentException(SVGZ_TO_STRING_ERROR);
+        }
+    }
+
+    // the original document is null when the layout does not come from a BPMN document
+    private String export(LayoutSortedDiagram layout, ExportType exportType, String originalBpmn) {
+        if (exportType == ExportType.BPMN_PASS_THROUGH && originalBpmn != null) {
+            log.debug("Exporting to BPMN, keeping the original document");
+            return defaultPassThroughBpmnExporter().export(originalBpmn, layout.getDisplayModel());
+        }
+        return export(layout, exportType);
+    }
+
+    private String export(LayoutSortedDiagram layout, ExportType exportType) {
         switch (exportType) {
             case ASCII:
                 return exportToAscii(layout);
             case BPMN:
+            // no original document to keep
+            case BPMN_PASS_THROUGH:
                 return exportToBpmn(layout);
             case SVG:
-                return exportToSvg(layout);
+                return exportToSvg(layout, SVGExporter.Style.INLINE);
+            case SVG_COMPACT:
+                return exportToSvg(layout, SVGExporter.Style.COMPACT);
+            case SVGZ:
+                throw new IllegalArgumentException(SVGZ_TO_STRING_ERROR);
             default:
                 throw new IllegalStateException("Unexpected Export Type: " + exportType);
         }
@@ -114,8 +397,19 @@ public class BpmnAutoLayout {
     @Getter
     public static class LayoutSortedDiagram {
 
+        // null when the layout is not exported to BPMN
         private final TDefinitions originalDefinitions;
         private final Grid grid;
         private final Diagram diagram;
+        // computed once, shared by all the exports of the layout
+        private DisplayModel displayModel;
+
+        public synchronized DisplayModel getDisplayModel() {
+            if (displayModel == null) {
+                log.debug("Converting the layout into the display model");
+                displayModel = new AlgoToDisplayModelConverter().convert(grid, diagram);
+            }
+            return displayModel;
+        }
     }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+
+/**
+ * Vertical extent needed by each branch of a sorted diagram, computed bottom-up.
+ *
+ * A shape is on the column after the columns of its previous shapes. Each shape has a band: the rows and the columns
+ * used by the shape and by its members, recursively. The members of a shape are:
+ * <ul>
+ *     <li>its branches, i.e. the shapes having it as single previous shape, in the order of its outgoing edges</li>
+ *     <li>the joins (shapes having several previous shapes) whose previous shapes are all in its band and not all in the
+ *     band of one of its members</li>
+ * </ul>
+ * The branches of a shape are stacked in its band:
+ * <ul>
+ *     <li>a shape without branch needs 1 row</li>
+ *     <li>a shape with an odd number of branches is on the row of its middle branch</li>
+ *     <li>a shape with an even number of branches is on an extra row between the 2 middle branches</li>
+ * </ul>
+ * A join is then put on the middle row of the members holding its previous shapes, or on the row of the shape if they
+ * are all the shape itself. Its band is moved down while it overlaps the rows of a member band sharing some columns,
+ * then the band of the shape is extended to hold it.
+ *
+ * The bands of the shapes that are not a member of an other shape (start shapes, and joins of previous shapes in
+ * different start bands) are stacked from the first row, in the same way. Bands only overlap when their columns do
+ * not, so shapes are never put on the same cell.
+ */
+final class BranchHeights {
+
+    private static final int NONE = -1;
+
+    // by index of the shapes in the diagram
+    private final int[] parent;
+    private final int[] column;
+    // last column of the band of the shape
+    private final int[] lastColumn;
+    private final int[] height;
+    // row of the shape in its band
+    private final int[] anchor;
+    // first row of the band of the shape in the band of its parent, or from the first row without parent
+    private final int[] offset;
+    private final boolean[] isJoin;
+
+    BranchHeights(Diagram diagram) {
+        int shapeCount = diagram.getShapes().size();
+        parent = new int[shapeCount];
+        column = new int[shapeCount];
+        lastColumn = new int[shapeCount];
+        height = new int[shapeCount];
+        anchor = new int[shapeCount];
+        offset = new int[shapeCount];
+        isJoin = new boolean[shapeCount];
+        Arrays.fill(parent, NONE);
+
+        // edge ends are numbered as nodes of the diagram: the ends that are shapes are numbered by their shape index
+        DiagramNodes nodes = new DiagramNodes(diagram);
+        int[][] previousNodes = otherEnds(nodes.edgeTo, nodes.edgeFrom, nodes.nodeCount);
+        int[][] nextNodes = otherEnds(nodes.edgeFrom, nodes.edgeTo, nodes.nodeCount);
+
+        // the shapes of a sorted diagram are after their previous shapes, so parents are known from the first shape
+        int[] depth = new int[shapeCount];
+        int[][] previousShapesOfJoin = new int[shapeCount][];
+        for (int shape = 0; shape < shapeCount; shape++) {
+            int[] previousShapes = previousShapes(diagram, previousNodes, shape);
+            for (int previous : previousShapes) {
+                column[shape] = Math.max(column[shape], column[previous] + 1);
+            }
+            if (previousShapes.length == 1) {
+                parent[shape] = previousShapes[0];
+            } else if (previousShapes.length > 1) {
+                parent[shape] = commonAncestor(previousShapes, depth);
+                isJoin[shape] = true;
+                previousShapesOfJoin[shape] = previousShapes;
+            }
+            depth[shape] = parent[shape] == NONE ? 0 : depth[parent[shape]] + 1;
+        }
+
+        // branches in the order of the outgoing edges, then joins in the order of the shapes
+        List<List<Integer>> members = new ArrayList<>(Collections.nCopies(shapeCount, null));
+        List<Integer> roots = new ArrayList<>();
+        for (int shape = 0; shape < shapeCount; shape++) {
+            if (parent[shape] == NONE && !isJoin[shape]) {
+                roots.add(shape);
+            }
+            for (int target : nextNodes[node(diagram, shape)]) {
+                if (target < shapeCount && parent[target] == shape && !isJoin[target]) {
+                    membersOf(members, shape).add(target);
+                }
+            }
+        }
+        for (int shape = 0; shape < shapeCount; shape++) {
+            if (isJoin[shape]) {
+                (parent[shape] == NONE ? roots : membersOf(members, parent[shape])).add(shape);
+            }
+        }
+
+        for (int shape = shapeCount - 1; shape >= 0; shape--) {
+            List<Integer> membersOfShape = members.get(shape) == null ? Collections.emptyList() : members.get(shape);
+            lastColumn[shape] = column[shape];
+            for (int member : membersOfShape) {
+                lastColumn[shape] = Math.max(lastColumn[shape], lastColumn[member]);
+            }
+            stack(shape, membersOfShape, previousShapesOfJoin);
+        }
+        stack(NONE, roots, previousShapesOfJoin);
+    }
+
+    /**
+     * @return the previous shape of each incoming edge, or an empty array if one of them is not before the shape
+     */
+    private static int[] previousShapes(Diagram diagram, int[][] previousNodes, int shape) {
+        int node = node(diagram, shape);
+        int[] previousShapes = new int[previousNodes[node].length];
+        int count = 0;
+        for (int previous : previousNodes[node]) {
+            if (previous == node) {
+                continue;
+            }
+            if (previous >= diagram.getShapes().size() || previous >= shape) {
+                return new int[0];
+            }
+            previousShapes[count++] = previous;
+        }
+        return Arrays.copyOf(previousShapes, count);
+    }
+
+    /**
+     * @return the node of the shape, the first shape with its id when the id is duplicated
+     */
+    private static int node(Diagram diagram, int shape) {
+        return diagram.getShapeIndex(diagram.getShapeHandle(shape));
+    }
+
+    /**
+     * @return for each node, the other ends of its edges in the order of the edges of the diagram
+     */
+    private static int[][] otherEnds(int[] nodeOfEdge, int[] otherEndOfEdge, int nodeCount) {
+        int[] degree = new int[nodeCount];
+        for (int node : nodeOfEdge) {
+            degree[node]++;
+        }
+        int[][] otherEnds = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            otherEnds[node] = new int[degree[node]];
+            degree[node] = 0;
+        }
+        for (int e = 0; e < nodeOfEdge.length; e++) {
+            int node = nodeOfEdge[e];
+            otherEnds[node][degree[node]++] = otherEndOfEdge[e];
+        }
+        return otherEnds;
+    }
+
+    // -1 when the shapes are in different start bands
+    private int commonAncestor(int[] shapes, int[] depth) {
+        int ancestor = shapes[0];
+        for (int i = 1; i < shapes.length && ancestor != NONE; i++) {
+            int other = shapes[i];
+            while (ancestor != other && ancestor != NONE && other != NONE) {
+                if (depth[ancestor] >= depth[other]) {
+                    ancestor = parent[ancestor];
+                } else {
+                    other = parent[other];
+                }
+            }
+            if (ancestor != other) {
+                ancestor = NONE;
+            }
+        }
+        return ancestor;
+    }
+
+    private static List<Integer> membersOf(List<List<Integer>> members, int shape) {
+        List<Integer> membersOfShape = members.get(shape);
+        if (membersOfShape == null) {
+            membersOfShape = new ArrayList<>();
+            members.set(shape, membersOfShape);
+        }
+        return membersOfShape;
+    }
+
+    /**
+     * Stack the members in the band of the shape, or from the first row when the shape is -1
+     */
+    private void stack(int shape, List<Integer> members, int[][] previousShapesOfJoin) {
+        int branchCount = 0;
+        while (branchCount < members.size() && !isJoin[members.get(branchCount)]) {
+            branchCount++;
+        }
+        int row = 0;
+        int shapeRow = 0;
+        for (int i = 0; i < branchCount; i++) {
+            if (shape != NONE && branchCount % 2 == 0 && i == branchCount / 2) {
+                // the shape is between the 2 middle branches
+                shapeRow = row;
+                row++;
+            }
+            int branch = members.get(i);
+            offset[branch] = row;
+            row += height[branch];
+        }
+        if (shape != NONE && branchCount % 2 != 0) {
+            int middle = members.get(branchCount / 2);
+            shapeRow = offset[middle] + anchor[middle];
+        }
+
+        // placed members by offset, the branches are stacked in that order
+        int[] placed = new int[members.size()];
+        for (int i = 0; i < branchCount; i++) {
+            placed[i] = members.get(i);
+        }
+        int top = 0;
+        int bottom = Math.max(row, 1);
+        for (int i = branchCount; i < members.size(); i++) {
+            int join = members.get(i);
+            offset[join] = freeOffset(join, joinRow(shape, shapeRow, previousShapesOfJoin[join]) - anchor[join], placed, i);
+            insertByOffset(placed, i, join);
+            top = Math.min(top, offset[join]);
+            bottom = Math.max(bottom, offset[join] + height[join]);
+        }
+        // the joins can go above the first branch
+        for (int member : members) {
+            offset[member] -= top;
+        }
+        if (shape != NONE) {
+            anchor[shape] = shapeRow - top;
+            height[shape] = bottom - top;
+        }
+    }
+
+    // middle row of the members holding the previous shapes of the join, they are before the join so already placed
+    private int joinRow(int shape, int shapeRow, int[] previousShapes) {
+        int firstRow = Integer.MAX_VALUE;
+        int lastRow = NONE;
+        for (int previous : previousShapes) {
+            // the previous shape may be the shape itself, it is not held by a member then
+            int member = previous;
+            while (member != shape && parent[member] != shape) {
+                member = parent[member];
+            }
+            if (member != shape) {
+                int memberRow = offset[member] + anchor[member];
+                firstRow = Math.min(firstRow, memberRow);
+                lastRow = Math.max(lastRow, memberRow);
+            }
+        }
+        return lastRow == NONE ? shapeRow : (firstRow + lastRow) / 2;
+    }
+
+    /**
+     * First offset from the given one where the band of the join does not overlap the bands of the placed members.
+     *
+     * The members are swept once by offset: the join is moved below each band it overlaps, and no band further down
+     * can overlap it once a band starts below it.
+     */
+    private int freeOffset(int join, int offsetOfJoin, int[] placedByOffset, int placedCount) {
+        for (int i = 0; i < placedCount; i++) {
+            int member = placedByOffset[i];
+            if (offset[member] >= offsetOfJoin + height[join]) {
+                break;
+            }
+            boolean sharedColumns = column[join] <= lastColumn[member] && column[member] <= lastColumn[join];
+            if (sharedColumns && offsetOfJoin < offset[member] + height[member]) {
+                offsetOfJoin = offset[member] + height[member];
+            }
+        }
+        return offsetOfJoin;
+    }
+
+    private void insertByOffset(int[] placedByOffset, int placedCount, int member) {
+        int index = placedCount;
+        while (index > 0 && offset[placedByOffset[index - 1]] > offset[member]) {
+            index--;
+        }
+        System.arraycopy(placedByOffset, index, placedByOffset, index + 1, placedCount - index);
+        placedByOffset[index] = member;
+    }
+
+    /**
+     * @return the index of the shape whose band holds the band of this shape, -1 if the band starts from the first row
+     */
+    int parent(int shape) {
+        return parent[shape];
+    }
+
+    int column(int shape) {
+        return column[shape];
+    }
+
+    int height(int shape) {
+        return height[shape];
+    }
+
+    int anchor(int shape) {
+        return anchor[shape];
+    }
+
+    int offset(int shape) {
+        return offset[shape];
+    }
+
+}
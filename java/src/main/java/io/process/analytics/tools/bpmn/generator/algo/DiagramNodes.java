@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.algo;
+
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+
+/**
+ * Numbering of the nodes of a diagram used by the sorting algorithms: a shape is numbered by its index in the diagram,
+ * edge ends that are not shapes are numbered after the shapes.
+ *
+ * Read from the index of the diagram, without looking at ids.
+ */
+final class DiagramNodes {
+
+    final int shapeCount;
+    final int nodeCount;
+    // ends of the edges, in the iteration order of the edges of the diagram
+    final int[] edgeFrom;
+    final int[] edgeTo;
+
+    DiagramNodes(Diagram diagram) {
+        shapeCount = diagram.getShapes().size();
+        nodeCount = diagram.getNodeCount();
+        int edgeCount = diagram.getEdges().size();
+        edgeFrom = new int[edgeCount];
+        edgeTo = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeFrom[e] = diagram.getSourceNode(e);
+            edgeTo[e] = diagram.getTargetNode(e);
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.algo;
+
+import static io.process.analytics.tools.bpmn.generator.model.Edge.revertedEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Edge;
+
+/**
+ * Remove cycles of a diagram by reverting a small set of edges (a feedback arc set).
+ *
+ * The diagram is first split into strongly connected components (Tarjan algorithm): only edges inside a component can
+ * be part of a cycle. Shapes of each component are then ordered with the Eades–Lin–Smyth greedy heuristic, preferring
+ * the shapes entering the component when there is no sink nor source, and edges going backward in that order are
+ * reverted. Self loops are kept as is as reverting them would not remove the cycle.
+ *
+ * Everything runs in O(V+E) and always terminates.
+ */
+public class FeedbackArcSetCycleBreaker {
+
+    /**
+     * @return a diagram with the same shapes, in which the edges of the feedback arc set are reverted
+     */
+    public Diagram breakCycles(Diagram diagram) {
+        Graph graph = new Graph(diagram);
+        boolean[] toRevert = graph.feedbackArcSet();
+
+        List<Edge> edges = new ArrayList<>(graph.edges.length);
+        for (int e = 0; e < graph.edges.length; e++) {
+            edges.add(toRevert[e] ? revertedEdge(graph.edges[e]) : graph.edges[e]);
+        }
+        return Diagram.builder().shapes(diagram.getShapes()).edges(edges).symbols(diagram.getSymbols()).build();
+    }
+
+    private static class Graph {
+
+        private final Edge[] edges;
+        private final int nodeCount;
+        private final int[] edgeFrom;
+        private final int[] edgeTo;
+        // adjacency (edge indexes), self loops excluded
+        private final int[] outOffsets;
+        private final int[] outEdges;
+        private final int[] inOffsets;
+        private final int[] inEdges;
+
+        Graph(Diagram diagram) {
+            edges = diagram.getEdges().toArray(new Edge[0]);
+            DiagramNodes nodes = new DiagramNodes(diagram);
+            edgeFrom = nodes.edgeFrom;
+            edgeTo = nodes.edgeTo;
+            nodeCount = nodes.nodeCount;
+
+            outOffsets = new int[nodeCount + 1];
+            inOffsets = new int[nodeCount + 1];
+            for (int e = 0; e < edges.length; e++) {
+                if (!isSelfLoop(e)) {
+                    outOffsets[edgeFrom[e] + 1]++;
+                    inOffsets[edgeTo[e] + 1]++;
+                }
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                outOffsets[node + 1] += outOffsets[node];
+                inOffsets[node + 1] += inOffsets[node];
+            }
+            outEdges = new int[outOffsets[nodeCount]];
+            inEdges = new int[inOffsets[nodeCount]];
+            int[] outFill = Arrays.copyOf(outOffsets, nodeCount);
+            int[] inFill = Arrays.copyOf(inOffsets, nodeCount);
+            for (int e = 0; e < edges.length; e++) {
+                if (!isSelfLoop(e)) {
+                    outEdges[outFill[edgeFrom[e]]++] = e;
+                    inEdges[inFill[edgeTo[e]]++] = e;
+                }
+            }
+        }
+
+        private boolean isSelfLoop(int e) {
+            return edgeFrom[e] == edgeTo[e];
+        }
+
+        boolean[] feedbackArcSet() {
+            int[] components = stronglyConnectedComponents();
+            int[] order = greedyOrder(components);
+            boolean[] toRevert = new boolean[edges.length];
+            for (int e = 0; e < edges.length; e++) {
+                toRevert[e] = !isSelfLoop(e) && components[edgeFrom[e]] == components[edgeTo[e]]
+                        && order[edgeFrom[e]] > order[edgeTo[e]];
+            }
+            return toRevert;
+        }
+
+        /**
+         * Iterative Tarjan algorithm
+         *
+         * @return the component of each node
+         */
+        private int[] stronglyConnectedComponents() {
+            int[] components = new int[nodeCount];
+            int[] discovery = new int[nodeCount];
+            int[] lowLink = new int[nodeCount];
+            boolean[] onStack = new boolean[nodeCount];
+            int[] stack = new int[nodeCount];
+            int stackSize = 0;
+            int[] callStack = new int[nodeCount];
+            int[] nextEdge = new int[nodeCount];
+            Arrays.fill(discovery, -1);
+            int time = 0;
+            int componentCount = 0;
+
+            for (int root = 0; root < nodeCount; root++) {
+                if (discovery[root] != -1) {
+                    continue;
+                }
+                int depth = 0;
+                callStack[depth] = root;
+                discovery[root] = lowLink[root] = time++;
+                nextEdge[root] = outOffsets[root];
+                stack[stackSize++] = root;
+                onStack[root] = true;
+                while (depth >= 0) {
+                    int node = callStack[depth];
+                    if (nextEdge[node] < outOffsets[node + 1]) {
+                        int next = edgeTo[outEdges[nextEdge[node]++]];
+                        if (discovery[next] == -1) {
+                            discovery[next] = lowLink[next] = time++;
+                            nextEdge[next] = outOffsets[next];
+                            stack[stackSize++] = next;
+                            onStack[next] = true;
+                            callStack[++depth] = next;
+                        } else if (onStack[next]) {
+                            lowLink[node] = Math.min(lowLink[node], discovery[next]);
+                        }
+                        continue;
+                    }
+                    if (lowLink[node] == discovery[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            components[member] = componentCount;
+                        } while (member != node);
+                        componentCount++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callStack[depth];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                    }
+                }
+            }
+            return components;
+        }
+
+        /**
+         * Eades–Lin–Smyth heuristic restricted to the edges inside components, in linear time: nodes are kept in
+         * buckets by out-degree minus in-degree.
+         *
+         * @return the rank of each node in the computed order
+         */
+        private int[] greedyOrder(int[] components) {
+            int[] outDegree = new int[nodeCount];
+            int[] inDegree = new int[nodeCount];
+            boolean[] isEntry = new boolean[nodeCount];
+            boolean[] inside = new boolean[edges.length];
+            for (int e = 0; e < edges.length; e++) {
+                if (isSelfLoop(e)) {
+                    continue;
+                }
+                if (components[edgeFrom[e]] == components[edgeTo[e]]) {
+                    inside[e] = true;
+                    outDegree[edgeFrom[e]]++;
+                    inDegree[edgeTo[e]]++;
+                } else {
+                    isEntry[edgeTo[e]] = true;
+                }
+            }
+
+            int maxDegree = Math.max(1, edges.length);
+            Buckets buckets = new Buckets(nodeCount, maxDegree);
+            IntStack sinks = new IntStack(nodeCount);
+            IntStack sources = new IntStack(nodeCount);
+            IntStack entries = new IntStack(nodeCount);
+            for (int node = nodeCount - 1; node >= 0; node--) {
+                if (outDegree[node] == 0) {
+                    sinks.push(node);
+                } else if (inDegree[node] == 0) {
+                    sources.push(node);
+                } else if (isEntry[node]) {
+                    entries.push(node);
+                }
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                buckets.add(node, outDegree[node] - inDegree[node]);
+            }
+
+            boolean[] removed = new boolean[nodeCount];
+            int[] left = new int[nodeCount];
+            int leftSize = 0;
+            int[] right = new int[nodeCount];
+            int rightSize = 0;
+            for (int remaining = nodeCount; remaining > 0; remaining--) {
+                int node;
+                boolean toRight = false;
+                if ((node = pollValid(sinks, removed, outDegree)) != -1) {
+                    toRight = true;
+                } else if ((node = pollValid(sources, removed, inDegree)) != -1) {
+                    // source
+                } else if ((node = pollValid(entries, removed, null)) != -1) {
+                    // keep the shapes entering a cycle before the other shapes of the cycle
+                } else {
+                    node = buckets.pollMax();
+                }
+                if (toRight) {
+                    right[rightSize++] = node;
+                } else {
+                    left[leftSize++] = node;
+                }
+
+                removed[node] = true;
+                buckets.remove(node);
+                for (int i = outOffsets[node]; i < outOffsets[node + 1]; i++) {
+                    int e = outEdges[i];
+                    int target = edgeTo[e];
+                    if (inside[e] && !removed[target]) {
+                        inDegree[target]--;
+                        buckets.move(target, outDegree[target] - inDegree[target]);
+                        if (inDegree[target] == 0) {
+                            sources.push(target);
+                        }
+                    }
+                }
+                for (int i = inOffsets[node]; i < inOffsets[node + 1]; i++) {
+                    int e = inEdges[i];
+                    int source = edgeFrom[e];
+                    if (inside[e] && !removed[source]) {
+                        outDegree[source]--;
+                        buckets.move(source, outDegree[source] - inDegree[source]);
+                        if (outDegree[source] == 0) {
+                            sinks.push(source);
+                        }
+                    }
+                }
+            }
+
+            int[] order = new int[nodeCount];
+            for (int i = 0; i < leftSize; i++) {
+                order[left[i]] = i;
+            }
+            for (int i = 0; i < rightSize; i++) {
+                order[right[i]] = nodeCount - 1 - i;
+            }
+            return order;
+        }
+
+        private static int pollValid(IntStack stack, boolean[] removed, int[] degrees) {
+            while (stack.size > 0) {
+                int node = stack.pop();
+                if (!removed[node] && (degrees == null || degrees[node] == 0)) {
+                    return node;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Nodes bucketed by degree difference, in doubly linked lists
+     */
+    private static class Buckets {
+
+        private final int offset;
+        private final int[] heads;
+        private final int[] tails;
+        private final int[] previous;
+        private final int[] next;
+        private final int[] bucketOf;
+        private int max;
+
+        Buckets(int nodeCount, int maxDegree) {
+            offset = maxDegree;
+            heads = new int[2 * maxDegree + 1];
+            tails = new int[2 * maxDegree + 1];
+            Arrays.fill(heads, -1);
+            Arrays.fill(tails, -1);
+            previous = new int[nodeCount];
+            next = new int[nodeCount];
+            bucketOf = new int[nodeCount];
+            max = 0;
+        }
+
+        void add(int node, int delta) {
+            int bucket = delta + offset;
+            bucketOf[node] = bucket;
+            previous[node] = tails[bucket];
+            next[node] = -1;
+            if (tails[bucket] == -1) {
+                heads[bucket] = node;
+            } else {
+                next[tails[bucket]] = node;
+            }
+            tails[bucket] = node;
+            max = Math.max(max, bucket);
+        }
+
+        void remove(int node) {
+            int bucket = bucketOf[node];
+            if (previous[node] == -1) {
+                heads[bucket] = next[node];
+            } else {
+                next[previous[node]] = next[node];
+            }
+            if (next[node] == -1) {
+                tails[bucket] = previous[node];
+            } else {
+                previous[next[node]] = previous[node];
+            }
+        }
+
+        void move(int node, int delta) {
+            remove(node);
+            add(node, delta);
+        }
+
+        int pollMax() {
+            while (heads[max] == -1) {
+                max--;
+            }
+            return heads[max];
+        }
+    }
+
+    private static class IntStack {
+
+        private final int[] values;
+        private int size;
+
+        // degrees only decrease: a node is pushed at most once in each stack
+        IntStack(int capacity) {
+            values = new int[capacity];
+        }
+
+        void push(int value) {
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+    }
+
+}
@@ -3,6 +3,9 @@ package io.process.analytics.tools.bpmn.generator.algo;
 import static io.process.analytics.tools.bpmn.generator.export.ASCIIExporter.toAscii;
 import static io.process.analytics.tools.bpmn.generator.model.Position.position;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,9 +19,40 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class ShapeLayouter {
 
+    public enum RowAllocation {
+        /**
+         * Rows are inserted around splits and joins while shapes are positioned, then the grid is compacted to remove
+         * the rows that were not needed.
+         */
+        INSERT_AND_COMPACT,
+        /**
+         * The rows needed by each branch and each join are computed before positioning shapes, see
+         * {@link BranchHeights}. Shapes are put in their band, so no row is inserted and the grid is not compacted.
+         */
+        BRANCH_HEIGHTS
+    }
+
+    private final RowAllocation rowAllocation;
+    private final Grid.Storage storage;
+
+    public ShapeLayouter() {
+        this(RowAllocation.INSERT_AND_COMPACT);
+    }
+
+    public ShapeLayouter(RowAllocation rowAllocation) {
+        this(rowAllocation, Grid.Storage.ROW_TREE);
+    }
+
+    public ShapeLayouter(RowAllocation rowAllocation, Grid.Storage storage) {
+        this.rowAllocation = rowAllocation;
+        this.storage = storage;
+    }
 
     public Grid layout(Diagram diagram) {
-        Grid grid = new Grid();
+        if (rowAllocation == RowAllocation.BRANCH_HEIGHTS) {
+            return layoutWithBranchHeights(diagram);
+        }
+        Grid grid = new Grid(diagram.getSymbols(), storage);
         for (Shape shape : diagram.getShapes()) {
             Position positionOfCurrentShape = positionShape(diagram, grid, shape);
             putOnGrid(grid, positionOfCurrentShape);
@@ -30,6 +64,28 @@ public class ShapeLayouter {
         return grid;
     }
 
+    private Grid layoutWithBranchHeights(Diagram diagram) {
+        Grid grid = new Grid(diagram.getSymbols(), storage);
+        BranchHeights branchHeights = new BranchHeights(diagram);
+        List<Shape> shapes = diagram.getShapes();
+        for (int index = 0; index < shapes.size(); index++) {
+            Shape shape = shapes.get(index);
+            int parent = branchHeights.parent(index);
+            // the bands without parent are stacked from the first row
+            int parentBandTop = 0;
+            if (parent != -1) {
+                Position parentPosition = grid.getPosition(diagram.getShapeHandle(parent));
+                parentBandTop = parentPosition.getY() - branchHeights.anchor(parent);
+            }
+            Position positionOfCurrentShape = position(shape, branchHeights.column(index),
+                    parentBandTop + branchHeights.offset(index) + branchHeights.anchor(index));
+            // the bands never overlap: fails rather than inserting a row if the cell is already filled
+            grid.add(positionOfCurrentShape);
+            log.debug("Adding {}:\n{}", shape::getName, () -> toAscii(grid));
+        }
+        return grid;
+    }
+
     private void putOnGrid(Grid grid, Position positionOfCurrentShape) {
         if (grid.isFilled(positionOfCurrentShape)) {
             //never overlap an element
@@ -41,7 +97,7 @@ public class ShapeLayouter {
     }
 
     private void addRowsWhenShapeIsASplit(Diagram diagram, Grid grid, Shape shape, Position positionOfCurrentShape) {
-        List<Edge> outgoingEdges = diagram.getOutgoingEdges(shape.getId());
+        List<Edge> outgoingEdges = outgoingEdges(diagram, shape.getId());
         if (outgoingEdges.size() > 1) {
             //add rows to place elements of this split
             int rowsToAddBeforeAndAfter = outgoingEdges.size() / 2;
@@ -54,14 +110,14 @@ public class ShapeLayouter {
 
     private Position positionShape(Diagram diagram, Grid grid, Shape shape) {
         Position positionOfCurrentShape;
-        List<Edge> incomingEdges = diagram.getIncomingEdges(shape.getId());
+        List<Edge> incomingEdges = incomingEdges(diagram, shape.getId());
         if (incomingEdges.isEmpty()) {
             //This is a start node, insert it in a new column
             positionOfCurrentShape = addStartShape(grid, shape);
         } else if (incomingEdges.size() == 1) {
             //find the previous node position
             String previousShapeID = incomingEdges.get(0).getFrom();
-            List<Edge> outgoingEdgesOfPreviousShape = diagram.getOutgoingEdges(previousShapeID);
+            List<Edge> outgoingEdgesOfPreviousShape = outgoingEdges(diagram, previousShapeID);
             if (outgoingEdgesOfPreviousShape.size() == 1) {
                 positionOfCurrentShape = addDirectlyNextTo(grid, shape, previousShapeID);
             } else {
@@ -73,31 +129,39 @@ public class ShapeLayouter {
         return positionOfCurrentShape;
     }
 
+    /**
+     * Merge consecutive rows when no shape of a row has a shape in the same or an adjacent column in the next row.
+     *
+     * Rows are swept once from top to bottom: the columns blocked by the rows merged so far are kept in a bitset, a
+     * row joins the current group when none of its columns is blocked, otherwise it starts a new group. Each group is
+     * then merged into its last row.
+     */
     private void compactGrid(Grid grid) {
-        int i = 0;
-        while (i < grid.getLastRowIndex()) {
-            List<Integer> currentRow = grid.getRow(i).stream().map(Position::getX).collect(Collectors.toList());
-            List<Integer> nextRow = grid.getRow(i + 1).stream().map(Position::getX).collect(Collectors.toList());
-
-            boolean currentRowCanBeMovedBelow = true;
-            for (Integer shapeIndexInCurrentRow : currentRow) {
-                int index = shapeIndexInCurrentRow;
-                //we can move the current row below if each element have all adjacent cells free in the row below
-                if (nextRow.stream().anyMatch(s -> s == index || s == index + 1 || s == index - 1)) {
-                    currentRowCanBeMovedBelow = false;
-                    break;
-                }
+        int lastRowIndex = grid.getLastRowIndex();
+        List<int[]> groups = new ArrayList<>();
+        BitSet blockedColumns = new BitSet();
+        List<int[]> columnsOfGroup = new ArrayList<>();
+        int groupStart = 0;
+        for (int y = 0; y <= lastRowIndex; y++) {
+            int[] columns = grid.getColumns(y);
+            if (y > groupStart && Arrays.stream(columns).anyMatch(blockedColumns::get)) {
+                groups.add(new int[] { groupStart, y - 1 });
+                columnsOfGroup.forEach(groupColumns -> Arrays.stream(groupColumns).forEach(x -> blockedColumns.clear(Math.max(x - 1, 0), x + 2)));
+                columnsOfGroup.clear();
+                groupStart = y;
             }
+            for (int x : columns) {
+                blockedColumns.set(Math.max(x - 1, 0), x + 2);
+            }
+            columnsOfGroup.add(columns);
+        }
+        groups.add(new int[] { groupStart, lastRowIndex });
 
-            if (currentRowCanBeMovedBelow) {
-                final int finalI = i + 1;
-                for (Position position : grid.getRow(i)) {
-                    grid.remove(position);
-                    grid.add(position.toBuilder().y(finalI).build());
-                }
-                grid.removeEmptyRow(i);
-            } else {
-                i++;
+        int removedRows = 0;
+        for (int[] group : groups) {
+            if (group[0] < group[1]) {
+                grid.mergeRows(group[0] - removedRows, group[1] - removedRows);
+                removedRows += group[1] - group[0];
             }
         }
     }
@@ -143,5 +207,22 @@ public class ShapeLayouter {
         return position(shapeToAdd, previous.getX() + 1, previous.getY());
     }
 
+    // self loops are not taken into account to position shapes
+    private static List<Edge> incomingEdges(Diagram diagram, String shapeId) {
+        List<Edge> edges = diagram.getIncomingEdges(shapeId);
+        if (edges.stream().noneMatch(e -> e.getFrom().equals(shapeId))) {
+            return edges;
+        }
+        return edges.stream().filter(e -> !e.getFrom().equals(shapeId)).collect(Collectors.toList());
+    }
+
+    private static List<Edge> outgoingEdges(Diagram diagram, String shapeId) {
+        List<Edge> edges = diagram.getOutgoingEdges(shapeId);
+        if (edges.stream().noneMatch(e -> e.getTo().equals(shapeId))) {
+            return edges;
+        }
+        return edges.stream().filter(e -> !e.getTo().equals(shapeId)).collect(Collectors.toList());
+    }
+
 
 }
@@ -23,18 +23,37 @@ import java.util.stream.Collectors;
 import io.process.analytics.tools.bpmn.generator.model.Edge;
 import io.process.analytics.tools.bpmn.generator.model.Shape;
 import io.process.analytics.tools.bpmn.generator.model.Diagram;
-import lombok.Builder;
-import lombok.Data;
-import lombok.Singular;
 
 /**
  * Sort nodes of a diagram in topological order.
  *
- * The algorithm also handles cycle.
+ * The algorithm also handles cycle, see {@link CycleBreaking} for the available strategies.
  *
  */
 public class ShapeSorter {
 
+    public enum CycleBreaking {
+        /**
+         * Cycles are broken while sorting, at the first join having a sorted incoming shape. All other edges of the
+         * cycle are then reverted. This may fail on diagrams with dense loops.
+         */
+        JOINS,
+        /**
+         * Cycles are broken before sorting by reverting a feedback arc set, see {@link FeedbackArcSetCycleBreaker}.
+         * This runs in linear time and never fails.
+         */
+        FEEDBACK_ARC_SET
+    }
+
+    private final CycleBreaking cycleBreaking;
+
+    public ShapeSorter() {
+        this(CycleBreaking.JOINS);
+    }
+
+    public ShapeSorter(CycleBreaking cycleBreaking) {
+        this.cycleBreaking = cycleBreaking;
+    }
 
     /**
      * sort nodes of a diagram in topological order
@@ -43,13 +62,20 @@ public class ShapeSorter {
      * @return a diagram with same nodes but sorted
      */
     public Diagram sort(Diagram diagram) {
+        if (cycleBreaking == CycleBreaking.FEEDBACK_ARC_SET) {
+            return doSort(new FeedbackArcSetCycleBreaker().breakCycles(diagram));
+        }
         Diagram sorted = doSort(diagram);
+        if (sorted.getEdges().stream().noneMatch(Edge::isReverted)) {
+            // no cycle, sorting again would produce the same diagram
+            return sorted;
+        }
         Diagram sortedDiagramWithRevertedCycles = revertOtherEdgesOfCycles(sorted);
         return doSort(sortedDiagramWithRevertedCycles);
     }
 
     private Diagram revertOtherEdgesOfCycles(Diagram diagram) {
-        List<Edge> edgesToRevert = new ArrayList<>();
+        Set<Edge> edgesToRevert = new HashSet<>();
         diagram.getEdges().stream().filter(Edge::isReverted).forEach(e->{
             Shape currentElement = diagram.getShape(e.getTo());
             while (!isAJoinInOriginalDiagram(diagram, currentElement) && !isASplitInOriginalDiagram(diagram, currentElement)) {
@@ -59,7 +85,7 @@ public class ShapeSorter {
                 currentElement = diagram.getShape(currentEdge.getFrom());
             }
         });
-        return Diagram.builder().shapes(diagram.getShapes())
+        return Diagram.builder().shapes(diagram.getShapes()).symbols(diagram.getSymbols())
                 .edges(diagram.getEdges().stream().map(e -> {
                     if (edgesToRevert.contains(e)) {
                         return revertedEdge(e);
@@ -78,109 +104,217 @@ public class ShapeSorter {
     }
 
     private Diagram doSort(Diagram diagram) {
-        List<Shape> shapeToSort = new ArrayList<>();
-        List<Edge> remainingEdges = new ArrayList<>();
-        List<Edge> finalEdges = new ArrayList<>();
-        shapeToSort.addAll(diagram.getShapes());
-        remainingEdges.addAll(diagram.getEdges());
-        finalEdges.addAll(diagram.getEdges());
-        List<Join> joins = findAllJoins(shapeToSort, remainingEdges);
-
-        Diagram.DiagramBuilder sortedDiagram = Diagram.builder();
-
-        while (!shapeToSort.isEmpty()) {
-            List<Shape> startShapes = getStartNodes(shapeToSort, remainingEdges);
-            if (!startShapes.isEmpty()) {
-                for (Shape startShape : startShapes) {
-                    shapeToSort.remove(startShape);
-                    sortedDiagram.shape(startShape);
-                    remainingEdges = removeEdgesStartingWithNode(remainingEdges, startShape);
-                    joins.stream().filter(j -> j.isJoining(startShape)).forEach(j -> j.markProcessed(startShape));
+        return new SortEngine(diagram).sort();
+    }
+
+    /**
+     * Topological sort based on in-degree counters (Kahn algorithm).
+     *
+     * Shapes are sorted by "layers": a layer contains all shapes that have no more incoming edge once the previous
+     * layers have been sorted, ordered as in the original diagram.
+     * When the remaining shapes are all part of cycles, the cycle is broken at the first join (in original diagram
+     * order) that already has a sorted incoming shape: its edges coming from non sorted shapes are reverted.
+     * Self loops are ignored: they do not prevent a shape from being sorted.
+     */
+    private static class SortEngine {
+
+        private final Diagram diagram;
+        private final List<Shape> shapes;
+        private final Edge[] edges;
+        private final int shapeCount;
+
+        private final int[] edgeFrom;
+        private final int[] edgeTo;
+        private final boolean[] edgeRemoved;
+        private final IntList[] outgoing;
+        private final IntList[] incoming;
+        private final int[] inDegree;
+        private final boolean[] sorted;
+
+        // shapes having incoming edges from more than 1 shape when starting the sort, and the joins of each shape
+        private final boolean[] isJoin;
+        private final IntList[] joinsOf;
+        private final PriorityQueue<Integer> joinsWithSortedIncoming = new PriorityQueue<>();
+        private final boolean[] joinWithSortedIncoming;
+
+        SortEngine(Diagram diagram) {
+            this.diagram = diagram;
+            shapes = diagram.getShapes();
+            edges = diagram.getEdges().toArray(new Edge[0]);
+            DiagramNodes nodes = new DiagramNodes(diagram);
+            shapeCount = nodes.shapeCount;
+            edgeFrom = nodes.edgeFrom;
+            edgeTo = nodes.edgeTo;
+            int nodeCount = nodes.nodeCount;
+            edgeRemoved = new boolean[edges.length];
+            outgoing = new IntList[nodeCount];
+            incoming = new IntList[nodeCount];
+            inDegree = new int[nodeCount];
+            sorted = new boolean[nodeCount];
+            for (int e = 0; e < edges.length; e++) {
+                if (edgeFrom[e] == edgeTo[e]) {
+                    continue;
                 }
-            } else {
-                //retrieve a join that we "entered", i.e. we processed an element that has an edge going to this join.
-                Join join = getAJoinThatWasProcessed(joins, shapeToSort);
-                //revert all edges from this join to remove the cycle
-                remainingEdges = revertNonProcessedEdgeOfTheJoin(remainingEdges, join);
-                finalEdges = revertNonProcessedEdgeOfTheJoin(finalEdges, join);
-                if (getStartNodes(shapeToSort, remainingEdges).isEmpty()) {
-                    throw new IllegalStateException("Unable to remove cycle from the Diagram: " + diagram);
+                outgoing(edgeFrom[e]).add(e);
+                incoming(edgeTo[e]).add(e);
+                inDegree[edgeTo[e]]++;
+            }
+
+            isJoin = new boolean[shapeCount];
+            joinWithSortedIncoming = new boolean[shapeCount];
+            joinsOf = new IntList[nodeCount];
+            int[] lastCountedTarget = new int[nodeCount];
+            Arrays.fill(lastCountedTarget, -1);
+            for (int shape = 0; shape < shapeCount; shape++) {
+                // count distinct sources
+                int sources = 0;
+                IntList incomingEdges = incoming(shape);
+                for (int i = 0; i < incomingEdges.size; i++) {
+                    int source = edgeFrom[incomingEdges.values[i]];
+                    if (lastCountedTarget[source] != shape) {
+                        lastCountedTarget[source] = shape;
+                        sources++;
+                    }
+                }
+                isJoin[shape] = sources > 1;
+            }
+            for (int e = 0; e < edges.length; e++) {
+                int target = edgeTo[e];
+                if (target < shapeCount && isJoin[target] && edgeFrom[e] != target) {
+                    if (joinsOf[edgeFrom[e]] == null) {
+                        joinsOf[edgeFrom[e]] = new IntList();
+                    }
+                    joinsOf[edgeFrom[e]].add(target);
                 }
             }
         }
-        return sortedDiagram.edges(finalEdges).build();
-    }
 
-    private List<Edge> revertNonProcessedEdgeOfTheJoin(List<Edge> edges, Join join) {
-        return edges.stream().map(edge -> {
-            if (join.contains(edge) && !join.wasProcessed(edge.getFrom())) {
-                //revert the edge
-                return revertedEdge(edge);
-            } else {
-                return edge;
+        Diagram sort() {
+            Diagram.DiagramBuilder sortedDiagram = Diagram.builder().symbols(diagram.getSymbols());
+            IntList layer = new IntList();
+            for (int shape = 0; shape < shapeCount; shape++) {
+                if (inDegree[shape] == 0) {
+                    layer.add(shape);
+                }
             }
-        }).collect(Collectors.toList());
-    }
+            int sortedCount = 0;
+            while (sortedCount < shapeCount) {
+                if (layer.size == 0) {
+                    int join = pollJoinWithSortedIncoming();
+                    revertEdgesFromNonSortedShapes(join);
+                    if (inDegree[join] != 0) {
+                        throw new IllegalStateException("Unable to remove cycle from the Diagram: " + diagram);
+                    }
+                    layer.add(join);
+                }
+                IntList nextLayer = new IntList();
+                for (int i = 0; i < layer.size; i++) {
+                    int shape = layer.values[i];
+                    sorted[shape] = true;
+                    sortedCount++;
+                    sortedDiagram.shape(shapes.get(shape));
+                    markJoinsWithSortedIncoming(shape);
+                    removeOutgoingEdges(shape, nextLayer);
+                }
+                // keep the original ordering of shapes inside a layer
+                nextLayer.sort();
+                layer = nextLayer;
+            }
+            return sortedDiagram.edges(Arrays.asList(edges)).build();
+        }
 
-    private Join getAJoinThatWasProcessed(List<Join> joins, List<Shape> shapeToSort) {
-        // we should always have a join that was processed at least once when we don't have a start node
-        return joins.stream().filter(j -> !j.getProcessedEdges().isEmpty())
-                .filter(j -> shapeToSort.contains(j.to))
-                .findFirst().get();
-    }
+        private void removeOutgoingEdges(int shape, IntList nextLayer) {
+            IntList outgoingEdges = outgoing(shape);
+            for (int i = 0; i < outgoingEdges.size; i++) {
+                int e = outgoingEdges.values[i];
+                // an edge is kept in the list of its previous source when it is reverted
+                if (edgeFrom[e] != shape || edgeRemoved[e]) {
+                    continue;
+                }
+                edgeRemoved[e] = true;
+                int target = edgeTo[e];
+                if (--inDegree[target] == 0 && target < shapeCount && !sorted[target]) {
+                    nextLayer.add(target);
+                }
+            }
+        }
 
-    private List<Edge> removeEdgesStartingWithNode(List<Edge> edges, Shape startShape) {
-        return edges.stream().filter(e -> !e.getFrom().equals(startShape.getId())).collect(Collectors.toList());
-    }
+        private void markJoinsWithSortedIncoming(int shape) {
+            IntList joins = joinsOf[shape];
+            if (joins == null) {
+                return;
+            }
+            for (int i = 0; i < joins.size; i++) {
+                int join = joins.values[i];
+                if (!joinWithSortedIncoming[join]) {
+                    joinWithSortedIncoming[join] = true;
+                    joinsWithSortedIncoming.add(join);
+                }
+            }
+        }
 
-    private List<Shape> getStartNodes(List<Shape> nodesToSort, List<Edge> edges) {
-        return nodesToSort.stream()
-                .filter(n -> hasNoIncomingLink(n, edges))
-                .collect(Collectors.toList());
-    }
+        private int pollJoinWithSortedIncoming() {
+            // we should always have a join that was processed at least once when we don't have a start node
+            while (!joinsWithSortedIncoming.isEmpty()) {
+                int join = joinsWithSortedIncoming.poll();
+                if (!sorted[join]) {
+                    return join;
+                }
+            }
+            throw new IllegalStateException("Unable to remove cycle from the Diagram: " + diagram);
+        }
 
-    private List<Join> findAllJoins(List<Shape> shapes, List<Edge> edges) {
-        //get the nodes that are "join"
-        return shapes.stream().map(n -> Join.builder().to(n))
-                .map(j -> j.incomings(edges.stream().filter(e -> e.getTo().equals(j.to.getId())).map(Edge::getFrom).collect(Collectors.toList())))
-                .map(Join.JoinBuilder::build)
-                //keep only join if there is more than 1 edge incoming
-                .filter(j -> j.incomings.size() > 1)
-                .collect(Collectors.toList());
+        // revert all edges coming to the join from shapes that are not sorted yet to remove the cycle
+        private void revertEdgesFromNonSortedShapes(int join) {
+            IntList incomingEdges = incoming(join);
+            int size = incomingEdges.size; // edges reverted to the join must not be reverted back
+            for (int i = 0; i < size; i++) {
+                int e = incomingEdges.values[i];
+                int source = edgeFrom[e];
+                if (edgeTo[e] != join || edgeRemoved[e] || sorted[source]) {
+                    continue;
+                }
+                edges[e] = revertedEdge(edges[e]);
+                edgeFrom[e] = join;
+                edgeTo[e] = source;
+                inDegree[join]--;
+                inDegree[source]++;
+                outgoing(join).add(e);
+                incoming(source).add(e);
+            }
+        }
 
-    }
+        private IntList outgoing(int node) {
+            if (outgoing[node] == null) {
+                outgoing[node] = new IntList();
+            }
+            return outgoing[node];
+        }
 
+        private IntList incoming(int node) {
+            if (incoming[node] == null) {
+                incoming[node] = new IntList();
+            }
+            return incoming[node];
+        }
 
-    private boolean hasNoIncomingLink(Shape m, List<Edge> edges) {
-        return edges.stream().noneMatch(e -> e.getTo().equals(m.getId()));
     }
 
-    @Data
-    @Builder
-    private static class Join {
-        @Singular
-        private Set<String> incomings;
-        private final Shape to;
-        @Builder.Default
-        private Set<String> processedEdges = new HashSet<>();
-
-        boolean isJoining(Shape shape) {
-            return incomings.contains(shape.getId());
-        }
+    private static class IntList {
 
-        void markProcessed(Shape shape) {
-            processedEdges.add(shape.getId());
-        }
+        private int[] values = new int[4];
+        private int size;
 
-        boolean wasProcessed(String shapeId) {
-            return processedEdges.contains(shapeId);
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
         }
 
-        boolean contains(Edge edge) {
-            return to.getId().equals(edge.getTo()) && incomings.contains(edge.getFrom());
+        void sort() {
+            Arrays.sort(values, 0, size);
         }
-
     }
 
-
 }
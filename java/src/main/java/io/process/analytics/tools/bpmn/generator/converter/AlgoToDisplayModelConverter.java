@@ -17,16 +17,41 @@ package io.process.analytics.tools.bpmn.generator.converter;
 
 import static io.process.analytics.tools.bpmn.generator.converter.Configuration.CELL_HEIGHT;
 import static io.process.analytics.tools.bpmn.generator.converter.Configuration.CELL_WIDTH;
+import static java.util.Collections.unmodifiableList;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import io.process.analytics.tools.bpmn.generator.converter.waypoint.WayPointsComputer;
 import io.process.analytics.tools.bpmn.generator.model.*;
 import io.process.analytics.tools.bpmn.generator.model.display.*;
 
+/**
+ * The display model is not modified once built, it can be shared between exporters, including concurrent ones.
+ */
 public class AlgoToDisplayModelConverter {
 
+    public enum WayPoints {
+        SEQUENTIAL,
+        /**
+         * The waypoints of the edges are computed on the common fork join pool, the grid and the flow nodes being only
+         * read at that point. Meant for diagrams of tens of thousands of edges.
+         */
+        PARALLEL
+    }
+
+    private final WayPoints wayPoints;
+
+    public AlgoToDisplayModelConverter() {
+        this(WayPoints.SEQUENTIAL);
+    }
+
+    public AlgoToDisplayModelConverter(WayPoints wayPoints) {
+        this.wayPoints = wayPoints;
+    }
+
     public DisplayModel convert(Grid grid, Diagram diagram) {
         DisplayModel.DisplayModelBuilder model = DisplayModel.builder();
         // dimensions must be increased when generating alternate path to avoid edge overlapping on shapes
@@ -35,30 +60,41 @@ public class AlgoToDisplayModelConverter {
         // increase to display edges with extra paths to avoid shape overlapping
         model.width(grid.width() * CELL_WIDTH).height((grid.height() + 1) * CELL_HEIGHT);
 
-        Collection<DisplayFlowNode> flowNodes = grid.getPositions().stream()
-                .map(position -> toDisplayFlowNode(position, diagram))
-                .collect(Collectors.toList());
+        SymbolTable symbols = diagram.getSymbols();
+        // the grid shares the handles of the diagram when it was laid out from it
+        boolean sameHandles = grid.getSymbols() == symbols;
+        List<Position> positions = grid.getPositions();
+        int[] shapeHandles = grid.getShapeHandles();
+        List<DisplayFlowNode> flowNodes = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            Position position = positions.get(i);
+            int handle = sameHandles ? shapeHandles[i] : symbols.handle(position.getShape());
+            flowNodes.add(toDisplayFlowNode(position, handle, diagram));
+        }
         model.flowNodes(flowNodes);
 
-        WayPointsComputer wayPointsComputer = new WayPointsComputer(grid, flowNodes);
-        diagram.getEdges()
-                .stream()
-                .map(edge -> new DisplayEdge(edge.getId(), wayPointsComputer.compute(edge)))
-                .forEach(model::edge);
+        // the edges are numbered in the iteration order of the diagram, and keep their order in parallel
+        WayPointsComputer wayPointsComputer = new WayPointsComputer(grid, flowNodes, diagram);
+        Edge[] edges = diagram.getEdges().toArray(new Edge[0]);
+        IntStream edgeIndexes = wayPoints == WayPoints.PARALLEL
+                ? IntStream.range(0, edges.length).parallel()
+                : IntStream.range(0, edges.length);
+        model.edges(edgeIndexes
+                .mapToObj(e -> new DisplayEdge(symbols.intern(edges[e].getId()), unmodifiableList(wayPointsComputer.compute(edges[e], e))))
+                .collect(Collectors.toList()));
+        model.symbols(symbols);
 
         return model.build();
     }
 
-    private DisplayFlowNode toDisplayFlowNode(Position position, Diagram diagram) {
+    private DisplayFlowNode toDisplayFlowNode(Position position, int handle, Diagram diagram) {
         int xOffset = position.getX() * CELL_WIDTH;
         int yOffset = position.getY() * CELL_HEIGHT;
         int nodeWidth = x(60);
         int nodeHeight = y(60);
 
-        // TODO manage when not found (should not occur)
-        Shape shape = diagram.getShapes().stream()
-                .filter(s -> s.getId().equals(position.getShape()))
-                .findFirst().get();
+        // indexed by the diagram, the first one when an id is duplicated
+        Shape shape = diagram.getShape(handle);
         String name = shape.getName();
 
         // ensure to have a square shape (i.e. same width and height) for non activity elements
@@ -90,7 +126,7 @@ public class AlgoToDisplayModelConverter {
         DisplayDimension labelDimension = new DisplayDimension(labelX, labelY, nodeWidth, nodeHeight);
         DisplayLabel label = new DisplayLabel(name, y(16), labelDimension);
 
-        return DisplayFlowNode.builder().bpmnElementId(shape.getId())
+        return DisplayFlowNode.builder().bpmnElement(handle)
                 .dimension(flowNodeDimension)
                 .label(label)
                 .type(shapeType)
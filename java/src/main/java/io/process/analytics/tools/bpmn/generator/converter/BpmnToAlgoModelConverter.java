@@ -27,12 +27,15 @@ import io.process.analytics.tools.bpmn.generator.model.Edge;
 import io.process.analytics.tools.bpmn.generator.model.Diagram;
 import io.process.analytics.tools.bpmn.generator.model.Shape;
 import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
 
 public class BpmnToAlgoModelConverter {
 
     public Diagram toAlgoModel(TDefinitions definitions) {
         Semantic semantic = new Semantic(definitions);
-        Diagram.DiagramBuilder diagram = Diagram.builder();
+        // ids are interned once, all stages share the same instances and the diagram works on their handles
+        SymbolTable symbols = new SymbolTable();
+        Diagram.DiagramBuilder diagram = Diagram.builder().symbols(symbols);
 
         List<TProcess> processes = semantic.getProcesses();
         for (TProcess process : processes) {
@@ -41,30 +44,41 @@ public class BpmnToAlgoModelConverter {
             bpmnElements.getFlowNodes()
                     .stream()
                     .map(BpmnToAlgoModelConverter::toShape)
-                    .forEach(diagram::shape);
+                    .forEach(shape -> {
+                        symbols.intern(shape.getId());
+                        diagram.shape(shape);
+                    });
 
             bpmnElements.getSequenceFlows()
                     .stream()
-                    .map(seqFlow -> Edge.edge(seqFlow.getId(), getId(seqFlow.getSourceRef()), getId(seqFlow.getTargetRef())))
+                    .map(seqFlow -> Edge.edge(seqFlow.getId(), intern(symbols, getId(seqFlow.getSourceRef())),
+                            intern(symbols, getId(seqFlow.getTargetRef()))))
                     .forEach(diagram::edge);
         }
 
         return diagram.build();
     }
 
+    private static String intern(SymbolTable symbols, String id) {
+        return symbols.symbol(symbols.intern(id));
+    }
+
     // visible for testing
     static Shape toShape(TFlowElement flowNode) {
-        ShapeType shapeType = ACTIVITY;
-        boolean isSplitGateway = false;
-        if (flowNode instanceof TGateway) {
-            shapeType = GATEWAY;
-            isSplitGateway = ((TGateway) flowNode).getOutgoing().size() > 1;
-        } else if (flowNode instanceof TEvent) {
-            shapeType = EVENT;
-        } else if (flowNode instanceof TSubProcess) {
-            shapeType = SUB_PROCESS;
-        }
+        ShapeType shapeType = toShapeType(flowNode.getClass());
+        boolean isSplitGateway = shapeType == GATEWAY && ((TGateway) flowNode).getOutgoing().size() > 1;
         return new Shape(flowNode.getId(), flowNode.getName(), shapeType, isSplitGateway);
     }
 
+    static ShapeType toShapeType(Class<?> flowNodeType) {
+        if (TGateway.class.isAssignableFrom(flowNodeType)) {
+            return GATEWAY;
+        } else if (TEvent.class.isAssignableFrom(flowNodeType)) {
+            return EVENT;
+        } else if (TSubProcess.class.isAssignableFrom(flowNodeType)) {
+            return SUB_PROCESS;
+        }
+        return ACTIVITY;
+    }
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.converter;
+
+import static io.process.analytics.tools.bpmn.generator.model.ShapeType.*;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.ObjectFactory;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TFlowNode;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Edge;
+import io.process.analytics.tools.bpmn.generator.model.Shape;
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
+
+/**
+ * Build the algo model straight from the BPMN xml, without unmarshalling the whole definitions.
+ *
+ * Only the flow nodes and the sequence flows that are direct children of the processes are read, everything else
+ * (collaboration, extension elements, documentation, diagram interchange, content of sub-processes) is skipped. The
+ * resulting diagram is the same as the one built by {@link BpmnToAlgoModelConverter} from the unmarshalled definitions.
+ */
+public class StreamingBpmnToAlgoModelConverter {
+
+    private static final String BPMN_MODEL_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+
+    // depth of the elements in the xml document
+    private static final int ROOT_ELEMENT_DEPTH = 2;
+    private static final int FLOW_ELEMENT_DEPTH = 3;
+
+    private static final Map<String, ShapeType> FLOW_NODE_TYPES = initFlowNodeTypes();
+
+    private static final XMLInputFactory inputFactory = initInputFactory();
+
+    /**
+     * The flow node elements are the ones declared by the generated model, with the same shape type as when converting
+     * the unmarshalled definitions.
+     */
+    private static Map<String, ShapeType> initFlowNodeTypes() {
+        Map<String, ShapeType> types = new HashMap<>();
+        for (Method method : ObjectFactory.class.getMethods()) {
+            XmlElementDecl element = method.getAnnotation(XmlElementDecl.class);
+            if (element == null || !BPMN_MODEL_NAMESPACE.equals(element.namespace())) {
+                continue;
+            }
+            Class<?> type = method.getParameterTypes()[0];
+            if (TFlowNode.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+                types.put(element.name(), BpmnToAlgoModelConverter.toShapeType(type));
+            }
+        }
+        return types;
+    }
+
+    private static XMLInputFactory initInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    public Diagram toAlgoModel(String bpmn) {
+        return toAlgoModel(new StringReader(bpmn));
+    }
+
+    public Diagram toAlgoModel(Reader bpmn) {
+        try {
+            return readAndClose(inputFactory.createXMLStreamReader(bpmn));
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Unable to read the BPMN semantic", e);
+        }
+    }
+
+    /**
+     * The encoding is the one declared by the document. The stream itself is not closed.
+     */
+    public Diagram toAlgoModel(InputStream bpmn) {
+        try {
+            return readAndClose(inputFactory.createXMLStreamReader(bpmn));
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Unable to read the BPMN semantic", e);
+        }
+    }
+
+    private static Diagram readAndClose(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Diagram read(XMLStreamReader reader) throws XMLStreamException {
+        // ids are interned once, all stages share the same instances and the diagram works on their handles
+        SymbolTable symbols = new SymbolTable();
+        Diagram.DiagramBuilder diagram = Diagram.builder().symbols(symbols);
+
+        int depth = 0;
+        boolean inProcess = false;
+        FlowNode flowNode = null;
+        // interned after the flow nodes of the process, as done when converting the unmarshalled definitions
+        List<String[]> sequenceFlows = new ArrayList<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (!BPMN_MODEL_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (depth == ROOT_ELEMENT_DEPTH) {
+                    inProcess = "process".equals(name);
+                } else if (depth == FLOW_ELEMENT_DEPTH && inProcess) {
+                    if ("sequenceFlow".equals(name)) {
+                        sequenceFlows.add(new String[] { attribute(reader, "id"), attribute(reader, "sourceRef"),
+                                attribute(reader, "targetRef") });
+                    } else if (FLOW_NODE_TYPES.containsKey(name)) {
+                        flowNode = new FlowNode(attribute(reader, "id"), attribute(reader, "name"), FLOW_NODE_TYPES.get(name));
+                    }
+                } else if (depth == FLOW_ELEMENT_DEPTH + 1 && flowNode != null && "outgoing".equals(name)) {
+                    flowNode.outgoingCount++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == FLOW_ELEMENT_DEPTH && flowNode != null) {
+                    symbols.intern(flowNode.id);
+                    diagram.shape(flowNode.toShape());
+                    flowNode = null;
+                } else if (depth == ROOT_ELEMENT_DEPTH && inProcess) {
+                    for (String[] sequenceFlow : sequenceFlows) {
+                        diagram.edge(Edge.edge(sequenceFlow[0], intern(symbols, sequenceFlow[1]), intern(symbols, sequenceFlow[2])));
+                    }
+                    sequenceFlows.clear();
+                    inProcess = false;
+                }
+                depth--;
+            }
+        }
+        return diagram.build();
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private static String intern(SymbolTable symbols, String id) {
+        return symbols.symbol(symbols.intern(id));
+    }
+
+    private static class FlowNode {
+
+        private final String id;
+        private final String name;
+        private final ShapeType type;
+        private int outgoingCount;
+
+        FlowNode(String id, String name, ShapeType type) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+        }
+
+        Shape toShape() {
+            return new Shape(id, name, type, type == GATEWAY && outgoingCount > 1);
+        }
+    }
+
+}
@@ -12,7 +12,6 @@
  */
 package io.process.analytics.tools.bpmn.generator.converter.waypoint;
 
-import io.process.analytics.tools.bpmn.generator.model.Edge;
 import io.process.analytics.tools.bpmn.generator.model.Grid;
 import io.process.analytics.tools.bpmn.generator.model.Position;
 import lombok.RequiredArgsConstructor;
@@ -24,46 +23,23 @@ public class GridSearcher {
 
     private final Grid grid;
 
-    public Position getPositionFrom(Edge edge) {
-        return getPosition(edge, true);
-    }
-
-    public Position getPositionTo(Edge edge) {
-        return getPosition(edge, false);
-    }
-
-    private Position getPosition(Edge edge, boolean isFrom) {
-        String shapeId = isFrom && !edge.isReverted() || (!isFrom && edge.isReverted()) ? edge.getFrom() : edge.getTo();
-        return getPositionOfShape(shapeId);
-    }
-
-    private Position getPositionOfShape(String shapeId) {
-        return grid.getPositions()
-                .stream()
-                .filter(p -> shapeId.equals(p.getShape()))
-                .findFirst()
-                .get(); // always exist, otherwise error occur on flow node generation
+    /**
+     * @param handle handle of the shape id in the symbol table of the grid
+     */
+    public Position getPositionOfShape(int handle) {
+        return grid.getPosition(handle); // always exist, otherwise error occur on flow node generation
     }
 
     public boolean isShapeExistAtLeft(Position position) {
-        return grid.getPositions()
-                .stream()
-                .filter(p -> p.getY() == position.getY())
-                .anyMatch(p -> p.getX() == position.getX() - 1);
+        return grid.isFilled(position.getX() - 1, position.getY());
     }
 
     public boolean isShapeExistAtRight(final Position position) {
-        return grid.getPositions()
-                .stream()
-                .filter(p -> p.getY() == position.getY())
-                .anyMatch(p -> p.getX() == position.getX() + 1);
+        return grid.isFilled(position.getX() + 1, position.getY());
     }
 
     public boolean isShapeExistAbove(final Position positionFrom) {
-        return grid.getPositions()
-                .stream()
-                .filter(p -> p.getX() == positionFrom.getX())
-                .anyMatch(p -> p.getY() == positionFrom.getY() - 1);
+        return grid.isFilled(positionFrom.getX(), positionFrom.getY() - 1);
     }
 
     public BendConfiguration computeConfigurationToPassByEmptyRow(Position positionFrom, Position positionTo,
@@ -85,11 +61,7 @@ public class GridSearcher {
 
     private boolean hasElementsBetweenPositionsHorizontally(final int y, final int x1, final int x2) {
         log.debug("Searching for elements horizontally between positions. y={} x1={} x2={}", y, x1, x2);
-        return grid.getPositions()
-                .stream()
-                .filter(p -> p.getY() == y)
-                .filter(p -> p.getX() > Math.min(x1, x2))
-                .anyMatch(p -> p.getX() < Math.max(x1, x2));
+        return grid.hasPositionBetween(y, x1, x2);
     }
 
 }
@@ -15,9 +15,11 @@ package io.process.analytics.tools.bpmn.generator.converter.waypoint;
 import java.util.Collection;
 import java.util.List;
 
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
 import io.process.analytics.tools.bpmn.generator.model.Edge;
 import io.process.analytics.tools.bpmn.generator.model.Grid;
 import io.process.analytics.tools.bpmn.generator.model.Position;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
 import io.process.analytics.tools.bpmn.generator.model.display.DisplayFlowNode;
 import io.process.analytics.tools.bpmn.generator.model.display.DisplayPoint;
 import lombok.extern.log4j.Log4j2;
@@ -25,34 +27,57 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class WayPointsComputer {
 
-    private final Collection<DisplayFlowNode> flowNodes;
+    private final Diagram diagram;
+    // the grid is queried by the handles of the diagram when it shares its symbol table
+    private final SymbolTable gridSymbols;
+    // flow nodes by index of their shape in the diagram
+    private final DisplayFlowNode[] flowNodes;
     private final GridSearcher gridSearcher;
     private final WayPointsConverter wayPointsConverter = new WayPointsConverter();
     private final WayPointsPositioner wayPointsPositioner;
 
-    public WayPointsComputer(final Grid grid, final Collection<DisplayFlowNode> flowNodes) {
-        this.flowNodes = flowNodes;
+    public WayPointsComputer(final Grid grid, final Collection<DisplayFlowNode> flowNodes, final Diagram diagram) {
+        this.diagram = diagram;
+        gridSymbols = grid.getSymbols();
+        this.flowNodes = new DisplayFlowNode[diagram.getShapes().size()];
+        for (DisplayFlowNode flowNode : flowNodes) {
+            int shape = diagram.getShapeIndex(flowNode.bpmnElement);
+            if (shape >= 0 && this.flowNodes[shape] == null) {
+                this.flowNodes[shape] = flowNode;
+            }
+        }
         gridSearcher = new GridSearcher(grid);
         wayPointsPositioner = new WayPointsPositioner(gridSearcher);
     }
 
-    public List<DisplayPoint> compute(Edge edge) {
+    /**
+     * @param edgeIndex index of the edge in the iteration order of the edges of the diagram
+     */
+    public List<DisplayPoint> compute(Edge edge, int edgeIndex) {
         log.debug("Inferring waypoints of edge {}", edge);
-        Position positionFrom = gridSearcher.getPositionFrom(edge);
-        Position positionTo = gridSearcher.getPositionTo(edge);
+        // a reverted edge is drawn in its original direction
+        int from = edge.isReverted() ? diagram.getTargetHandle(edgeIndex) : diagram.getSourceHandle(edgeIndex);
+        int to = edge.isReverted() ? diagram.getSourceHandle(edgeIndex) : diagram.getTargetHandle(edgeIndex);
+        Position positionFrom = gridSearcher.getPositionOfShape(gridHandle(from));
+        Position positionTo = gridSearcher.getPositionOfShape(gridHandle(to));
 
         WayPointDescriptor wayPointDescriptor = wayPointsPositioner.computeWaypointDescriptor(positionFrom, positionTo);
-        DisplayFlowNode flowNodeFrom = getFlowNode(positionFrom.getShape());
-        DisplayFlowNode flowNodeTo = getFlowNode(positionTo.getShape());
+        DisplayFlowNode flowNodeFrom = getFlowNode(from);
+        DisplayFlowNode flowNodeTo = getFlowNode(to);
 
         return wayPointsConverter.toDisplayPoints(wayPointDescriptor, flowNodeFrom.dimension, flowNodeTo.dimension);
     }
 
-    private DisplayFlowNode getFlowNode(String flowNodeId) {
-        return flowNodes.stream()
-                .filter(f -> flowNodeId.equals(f.bpmnElementId))
-                .findFirst()
-                .get(); // always exist, otherwise error occur on flow node generation
+    private int gridHandle(int handle) {
+        if (gridSymbols == diagram.getSymbols()) {
+            return handle;
+        }
+        return gridSymbols.handle(diagram.getSymbols().symbol(handle));
+    }
+
+    private DisplayFlowNode getFlowNode(int handle) {
+        // always exist, otherwise error occur on flow node generation
+        return flowNodes[diagram.getShapeIndex(handle)];
     }
 
 }
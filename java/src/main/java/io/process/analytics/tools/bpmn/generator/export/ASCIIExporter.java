@@ -17,6 +17,9 @@ package io.process.analytics.tools.bpmn.generator.export;
 
 import static io.process.analytics.tools.bpmn.generator.internal.StringUtils.defaultIfNull;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -34,7 +37,30 @@ public class ASCIIExporter {
         return export(width, height, positions);
     }
 
+    /**
+     * Write the grid to the writer, row by row. The writer is flushed but not closed.
+     */
+    public void export(Grid grid, Writer output) {
+        try {
+            export(grid.width(), grid.height(), grid.getPositions(), output);
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to export to ASCII", e);
+        }
+    }
+
     public String export(int width, int height, List<Position> positions) {
+        StringBuilder content = new StringBuilder();
+        try {
+            export(width, height, positions, content);
+        } catch (IOException e) {
+            // never thrown when appending to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return content.toString();
+    }
+
+    private void export(int width, int height, List<Position> positions, Appendable content) throws IOException {
         char[][] charGrid = new char[height][width * CELL_WIDTH];
         for (char[] chars : charGrid) {
             Arrays.fill(chars, ' ');
@@ -44,19 +70,18 @@ public class ASCIIExporter {
             char[] name = defaultIfNull(position.getShapeName()).toCharArray();
             System.arraycopy(name, 0, charRow, 7 * position.getX(), Math.min(name.length, CELL_WIDTH));
         }
-        StringBuilder content = new StringBuilder("Diagram:\n");
+        content.append("Diagram:\n");
         content.append('+').append(horizontalBar(CELL_WIDTH * width)).append('+').append('\n');
         for (char[] chars : charGrid) {
-            content.append('|').append(chars).append('|').append('\n');
+            content.append('|').append(CharBuffer.wrap(chars)).append('|').append('\n');
         }
         content.append('+').append(horizontalBar(CELL_WIDTH * width)).append('+').append('\n');
-        return content.toString();
     }
 
-    private char[] horizontalBar(int size) {
+    private CharSequence horizontalBar(int size) {
         char[] chars = new char[size];
         Arrays.fill(chars, '-');
-        return chars;
+        return CharBuffer.wrap(chars);
     }
 
     public static String toAscii(Grid grid) {
@@ -33,10 +33,16 @@ public class BPMNExporter {
     }
 
     public TDefinitions export(TDefinitions originalBpmnDefinitions, Grid grid, Diagram diagram) {
+        return export(originalBpmnDefinitions, converter.convert(grid, diagram));
+    }
+
+    /**
+     * Export a display model already computed, for instance shared with other exporters.
+     */
+    public TDefinitions export(TDefinitions originalBpmnDefinitions, DisplayModel displayModel) {
         BPMNDiagramRichBuilder builder = new BPMNDiagramRichBuilder(originalBpmnDefinitions);
-        DisplayModel displayModel = converter.convert(grid, diagram);
-        displayModel.flowNodes.forEach(builder::addFlowNode);
-        displayModel.edges.forEach(builder::addEdge);
+        displayModel.flowNodes.forEach(flowNode -> builder.addFlowNode(flowNode, displayModel.bpmnElementId(flowNode)));
+        displayModel.edges.forEach(edge -> builder.addEdge(edge, displayModel.bpmnElementId(edge)));
         return builder.build();
     }
 
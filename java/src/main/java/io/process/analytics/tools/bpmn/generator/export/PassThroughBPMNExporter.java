@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.export;
+
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.function.Function;
+
+import io.process.analytics.tools.bpmn.generator.converter.AlgoToDisplayModelConverter;
+import io.process.analytics.tools.bpmn.generator.internal.BPMNDiagramInjector;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Export the layout into the original BPMN document, without unmarshalling and marshalling it: everything but the
+ * existing diagrams is kept as is.
+ */
+@RequiredArgsConstructor
+public class PassThroughBPMNExporter {
+
+    private final AlgoToDisplayModelConverter converter;
+    private final BPMNDiagramInjector injector;
+
+    public static PassThroughBPMNExporter defaultPassThroughBpmnExporter() {
+        return new PassThroughBPMNExporter(new AlgoToDisplayModelConverter(), new BPMNDiagramInjector());
+    }
+
+    public String export(String originalBpmn, Grid grid, Diagram diagram) {
+        StringWriter output = new StringWriter(originalBpmn.length() + 200 * diagram.getShapes().size());
+        export(originalBpmn, grid, diagram, output);
+        return output.toString();
+    }
+
+    public void export(String originalBpmn, Grid grid, Diagram diagram, Writer output) {
+        export(originalBpmn, converter.convert(grid, diagram), output);
+    }
+
+    /**
+     * Export a display model already computed, for instance shared with other exporters.
+     */
+    public String export(String originalBpmn, DisplayModel displayModel) {
+        StringWriter output = new StringWriter(originalBpmn.length() + 200 * displayModel.flowNodes.size());
+        export(originalBpmn, displayModel, output);
+        return output.toString();
+    }
+
+    public void export(String originalBpmn, DisplayModel displayModel, Writer output) {
+        injector.inject(originalBpmn, displayModel, output);
+    }
+
+    /**
+     * Export the layout while the original document is read: the document given to {@code layout} is copied as it is
+     * read, then the diagram of the returned display model is written. The document is not kept in memory.
+     */
+    public void export(Reader originalBpmn, Function<Reader, DisplayModel> layout, Writer output) {
+        BPMNDiagramInjector.Injection injection = injector.inject(originalBpmn, output);
+        injection.finish(layout.apply(injection.getReader()));
+    }
+
+}
@@ -17,7 +17,20 @@ package io.process.analytics.tools.bpmn.generator.export;
 
 import static io.process.analytics.tools.bpmn.generator.internal.StringUtils.defaultIfNull;
 
-import java.util.stream.Collectors;
+import java.io.FilterOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
 
 import io.process.analytics.tools.bpmn.generator.converter.AlgoToDisplayModelConverter;
 import io.process.analytics.tools.bpmn.generator.model.Diagram;
@@ -29,151 +42,435 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class SVGExporter {
 
+    public enum Style {
+        /** Each element carries its own presentation attributes. */
+        INLINE,
+        /**
+         * The presentation attributes are declared once in a style sheet, each element only refers to the class of its
+         * type. The target points of the edges are drawn by a marker.
+         */
+        COMPACT
+    }
+
+    public enum Rendering {
+        SEQUENTIAL,
+        /**
+         * The flow nodes and edges are rendered by chunks on the common fork join pool, the output is the same as the
+         * sequential one. Meant for diagrams of tens of thousands of elements.
+         */
+        PARALLEL
+    }
+
+    // chars written to the output at once
+    static final int BLOCK_SIZE = 8192;
+    // elements rendered by a single task in parallel rendering, whatever the size of the diagram
+    static final int CHUNK_SIZE = 256;
+    // chunks rendered ahead of the one being written, per thread of the pool
+    static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    // TODO make the colors configurable
+    private static final String COLOR_ACTIVITY_FILL = "#E3E3E3";
+    private static final String COLOR_ACTIVITY_STROKE = "#92ADC8";
+    private static final String COLOR_EVENT_FILL = "LightSalmon";
+    private static final String COLOR_EVENT_STROKE = "FireBrick";
+    private static final String COLOR_GATEWAY_FILL = "Gold";
+    private static final String COLOR_GATEWAY_STROKE = "GoldenRod";
+    private static final String COLOR_EDGE_STROKE = "Black";
+    private static final int EDGE_STROKE_WIDTH = 2;
+    private static final double EDGE_STROKE_OPACITY = 0.5;
+    private static final String COLOR_LABEL_FILL = "#374962";
+    private static final String LABEL_TEXT_ANCHOR = "middle";
+
     private final AlgoToDisplayModelConverter converter = new AlgoToDisplayModelConverter();
+    private final Style style;
+    private final Rendering rendering;
+
+    public SVGExporter() {
+        this(Style.INLINE);
+    }
+
+    public SVGExporter(Style style) {
+        this(style, Rendering.SEQUENTIAL);
+    }
+
+    public SVGExporter(Style style, Rendering rendering) {
+        this.style = style;
+        this.rendering = rendering;
+    }
 
     public String export(Grid grid, Diagram diagram) {
-        DisplayModel model = converter.convert(grid, diagram);
+        return export(converter.convert(grid, diagram));
+    }
+
+    /**
+     * Write the svg UTF-8 encoded. The stream is flushed but not closed.
+     */
+    public void export(Grid grid, Diagram diagram, OutputStream output) {
+        export(converter.convert(grid, diagram), output);
+    }
+
+    /**
+     * Write the svg gzip compressed, the content of a svgz file. The stream is flushed but not closed.
+     */
+    public void exportCompressed(Grid grid, Diagram diagram, OutputStream output) {
+        exportCompressed(converter.convert(grid, diagram), output);
+    }
 
+    /**
+     * Write the svg to the output by blocks of a few kilobytes, so that the memory used does not depend on the size of
+     * the diagram. The output is flushed when it is {@link Flushable}, it is not closed.
+     */
+    public void export(Grid grid, Diagram diagram, Appendable output) {
+        export(converter.convert(grid, diagram), output);
+    }
+
+    /**
+     * Export a display model already computed, for instance shared with other exporters.
+     */
+    public String export(DisplayModel model) {
+        StringBuilder output = new StringBuilder();
+        export(model, output);
+        return output.toString();
+    }
+
+    public void export(DisplayModel model, OutputStream output) {
+        export(model, new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    public void exportCompressed(DisplayModel model, OutputStream output) {
+        // closing the gzip stream releases its deflater, the output itself is kept open
+        try (GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(output), BLOCK_SIZE)) {
+            export(model, gzip);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to export to SVGZ", e);
+        }
+    }
+
+    public void export(DisplayModel model, Appendable output) {
+        try {
+            export(model, new BlockOutput(output));
+            if (output instanceof Flushable) {
+                ((Flushable) output).flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to export to SVG", e);
+        }
+    }
+
+    private void export(DisplayModel model, BlockOutput output) throws IOException {
         // TODO introduce a method to generate escaped double quote and avoid double quote escaping when writing xml
-        StringBuilder content = new StringBuilder();
+        // elements are appended to the content, written to the output once a block is complete
+        StringBuilder content = output.content;
         content.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"")
                 .append(model.width)
                 .append("\" height=\"")
                 .append(model.height).append("\">\n");
 
-        // TODO extract colors to constant or configurable field
-        final String colorActivityFill = "#E3E3E3";
-        final String colorActivityStroke = "#92ADC8";
-        final String colorEventFill = "LightSalmon";
-        final String colorEventStroke = "FireBrick";
-        final String colorGatewayFill = "Gold";
-        final String colorGatewayStroke = "GoldenRod";
-        final String colorEgeStroke = "Black";
-        final int edgeStrokeWidth = 2;
-        final double edgeStrokeOpacity = 0.5;
-
-        for (DisplayFlowNode flowNode : model.flowNodes) {
-            DisplayDimension flowNodeDimension = flowNode.dimension;
-            DisplayLabel label = flowNode.label;
-            DisplayDimension labelDimension = label.dimension;
-
-            final int strokeWidth = flowNode.strokeWidth;
-
-            if (flowNode.type == ShapeType.ACTIVITY) {
-                log.debug("Exporting activity {}", flowNode.bpmnElementId);
-                content.append("<rect")
-                        .append(" x=\"").append(flowNodeDimension.x).append("\"")
-                        .append(" y=\"").append(flowNodeDimension.y).append("\"")
-                        .append(" width=\"").append(flowNodeDimension.width).append("\"")
-                        .append(" height=\"").append(flowNodeDimension.height).append("\"")
-                        .append(" rx=\"").append(flowNode.rx).append("\"")
-                        .append(" fill=\"").append(colorActivityFill).append("\"")
-                        .append(" stroke=\"").append(colorActivityStroke).append("\"")
-                        .append(" stroke-width=\"").append(strokeWidth).append("\"")
-                        .append(" />\n");
+        // the flow nodes share the stroke width of the scale, the class ones are declared with the first of them
+        final int classStrokeWidth = model.flowNodes.isEmpty() ? 0 : model.flowNodes.get(0).strokeWidth;
+        if (style == Style.COMPACT) {
+            content.append("<style>")
+                    .append(".activity{fill:").append(COLOR_ACTIVITY_FILL)
+                    .append(";stroke:").append(COLOR_ACTIVITY_STROKE)
+                    .append(";stroke-width:").append(classStrokeWidth).append("}")
+                    .append(".event{fill:").append(COLOR_EVENT_FILL)
+                    .append(";stroke:").append(COLOR_EVENT_STROKE)
+                    .append(";stroke-width:").append(classStrokeWidth)
+                    .append(";pointer-events:all}")
+                    .append(".gateway{fill:").append(COLOR_GATEWAY_FILL)
+                    .append(";stroke:").append(COLOR_GATEWAY_STROKE)
+                    .append(";stroke-width:").append(classStrokeWidth).append("}")
+                    .append(".label{fill:").append(COLOR_LABEL_FILL)
+                    .append(";text-anchor:").append(LABEL_TEXT_ANCHOR).append("}")
+                    .append(".edge{fill:none;stroke:").append(COLOR_EDGE_STROKE)
+                    .append(";stroke-width:").append(EDGE_STROKE_WIDTH)
+                    .append(";stroke-opacity:").append(EDGE_STROKE_OPACITY)
+                    .append(";marker-end:url(#target)}")
+                    .append("</style>\n");
+            // the marker is centered on the end of the edge, it is drawn in the units of the diagram
+            int markerSize = 2 * (5 + EDGE_STROKE_WIDTH / 2);
+            content.append("<defs><marker id=\"target\" markerUnits=\"userSpaceOnUse\"")
+                    .append(" markerWidth=\"").append(markerSize).append("\"")
+                    .append(" markerHeight=\"").append(markerSize).append("\"")
+                    .append(" refX=\"").append(markerSize / 2).append("\"")
+                    .append(" refY=\"").append(markerSize / 2).append("\">")
+                    .append("<circle")
+                    .append(" cx=\"").append(markerSize / 2).append("\"")
+                    .append(" cy=\"").append(markerSize / 2).append("\"")
+                    .append(" r=\"5\"")
+                    .append(" stroke=\"").append(COLOR_EDGE_STROKE).append("\"")
+                    .append(" stroke-width=\"").append(EDGE_STROKE_WIDTH).append("\"")
+                    .append(" stroke-opacity=\"").append(EDGE_STROKE_OPACITY).append("\"")
+                    .append(" fill=\"").append(COLOR_EDGE_STROKE).append("\"")
+                    .append(" /></marker></defs>\n");
+        }
+
+        if (rendering == Rendering.PARALLEL) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            appendInParallel(model.flowNodes, (chunk, flowNode) -> appendFlowNode(chunk, model, flowNode, classStrokeWidth), output, pool);
+            appendInParallel(model.edges, this::appendEdge, output, pool);
+        } else {
+            for (DisplayFlowNode flowNode : model.flowNodes) {
+                appendFlowNode(content, model, flowNode, classStrokeWidth);
+                output.endElement();
             }
-            // draw circle (with an eclipse to eventually detect if shape is not squared)
-            else if (flowNode.type == ShapeType.EVENT) {
-                log.debug("Exporting event {}", flowNode.bpmnElementId);
-                int rx = flowNodeDimension.width / 2;
-                int ry = flowNodeDimension.height / 2;
-                int cx = flowNodeDimension.x + rx;
-                int cy = flowNodeDimension.y + ry;
-                content.append("<ellipse")
-                        .append(" cx=\"").append(cx).append("\"")
-                        .append(" cy=\"").append(cy).append("\"")
-                        .append(" rx=\"").append(rx).append("\"")
-                        .append(" ry=\"").append(ry).append("\"")
-                        .append(" fill=\"").append(colorEventFill).append("\"")
-                        .append(" stroke=\"").append(colorEventStroke).append("\"")
+            for (DisplayEdge edge : model.edges) {
+                appendEdge(content, edge);
+                output.endElement();
+            }
+        }
+
+        content.append("</svg>");
+        output.end();
+    }
+
+    private void appendFlowNode(StringBuilder content, DisplayModel model, DisplayFlowNode flowNode, int classStrokeWidth) {
+        final boolean compact = style == Style.COMPACT;
+        DisplayDimension flowNodeDimension = flowNode.dimension;
+        DisplayLabel label = flowNode.label;
+        DisplayDimension labelDimension = label.dimension;
+
+        final int strokeWidth = flowNode.strokeWidth;
+
+        if (flowNode.type == ShapeType.ACTIVITY) {
+            log.debug("Exporting activity {}", () -> model.bpmnElementId(flowNode));
+            content.append("<rect")
+                    .append(" x=\"").append(flowNodeDimension.x).append("\"")
+                    .append(" y=\"").append(flowNodeDimension.y).append("\"")
+                    .append(" width=\"").append(flowNodeDimension.width).append("\"")
+                    .append(" height=\"").append(flowNodeDimension.height).append("\"")
+                    .append(" rx=\"").append(flowNode.rx).append("\"");
+            if (compact) {
+                appendClass(content, "activity", strokeWidth, classStrokeWidth);
+            } else {
+                content.append(" fill=\"").append(COLOR_ACTIVITY_FILL).append("\"")
+                        .append(" stroke=\"").append(COLOR_ACTIVITY_STROKE).append("\"")
+                        .append(" stroke-width=\"").append(strokeWidth).append("\"");
+            }
+            content.append(" />\n");
+        }
+        // draw circle (with an eclipse to eventually detect if shape is not squared)
+        else if (flowNode.type == ShapeType.EVENT) {
+            log.debug("Exporting event {}", () -> model.bpmnElementId(flowNode));
+            int rx = flowNodeDimension.width / 2;
+            int ry = flowNodeDimension.height / 2;
+            int cx = flowNodeDimension.x + rx;
+            int cy = flowNodeDimension.y + ry;
+            content.append("<ellipse")
+                    .append(" cx=\"").append(cx).append("\"")
+                    .append(" cy=\"").append(cy).append("\"")
+                    .append(" rx=\"").append(rx).append("\"")
+                    .append(" ry=\"").append(ry).append("\"");
+            if (compact) {
+                appendClass(content, "event", strokeWidth, classStrokeWidth);
+            } else {
+                content.append(" fill=\"").append(COLOR_EVENT_FILL).append("\"")
+                        .append(" stroke=\"").append(COLOR_EVENT_STROKE).append("\"")
                         .append(" stroke-width=\"").append(strokeWidth).append("\"")
-                        .append(" pointer-events=\"all\"")
-                        .append(" />\n");
+                        .append(" pointer-events=\"all\"");
             }
-            // draw rhombus/diamond
-            else if (flowNode.type == ShapeType.GATEWAY) {
-                log.debug("Exporting gateway {}", flowNode.bpmnElementId);
-                int x = flowNodeDimension.x;
-                int y = flowNodeDimension.y;
-                int width = flowNodeDimension.width;
-                int height = flowNodeDimension.height;
-
-                int midWidth = width / 2;
-                int midHeight = height / 2;
-
-                content.append("<polygon")
-                        .append(" points=\"")
-                        .append(x + midWidth).append(",").append(y)
-                        .append(" ").append(x + width).append(",").append(y + midHeight)
-                        .append(" ").append(x + midWidth).append(",").append(y + height)
-                        .append(" ").append(x).append(",").append(y + midHeight)
-                        .append("\"")
-                        .append(" style=\"")
-                        .append("fill:").append(colorGatewayFill)
-                        .append(";stroke:").append(colorGatewayStroke)
+            content.append(" />\n");
+        }
+        // draw rhombus/diamond
+        else if (flowNode.type == ShapeType.GATEWAY) {
+            log.debug("Exporting gateway {}", () -> model.bpmnElementId(flowNode));
+            int x = flowNodeDimension.x;
+            int y = flowNodeDimension.y;
+            int width = flowNodeDimension.width;
+            int height = flowNodeDimension.height;
+
+            int midWidth = width / 2;
+            int midHeight = height / 2;
+
+            content.append("<polygon")
+                    .append(" points=\"")
+                    .append(x + midWidth).append(",").append(y)
+                    .append(" ").append(x + width).append(",").append(y + midHeight)
+                    .append(" ").append(x + midWidth).append(",").append(y + height)
+                    .append(" ").append(x).append(",").append(y + midHeight)
+                    .append("\"");
+            if (compact) {
+                appendClass(content, "gateway", strokeWidth, classStrokeWidth);
+            } else {
+                content.append(" style=\"")
+                        .append("fill:").append(COLOR_GATEWAY_FILL)
+                        .append(";stroke:").append(COLOR_GATEWAY_STROKE)
                         .append(";stroke-width:").append(strokeWidth)
-                        .append("\"")
-                        .append(" />\n");
+                        .append("\"");
             }
+            content.append(" />\n");
+        }
 
-            String labelText = defaultIfNull(label.text);
-            if (!labelText.isEmpty()) {
-                String labelFillColor = "#374962";
-                String labelTextAnchor = "middle";
-                content.append("<text")
-                        .append(" x=\"").append(labelDimension.x).append("\"")
-                        .append(" y=\"").append(labelDimension.y).append("\"")
-                        .append(" text-anchor=\"").append(labelTextAnchor).append("\"")
+        String labelText = defaultIfNull(label.text);
+        if (!labelText.isEmpty()) {
+            content.append("<text")
+                    .append(" x=\"").append(labelDimension.x).append("\"")
+                    .append(" y=\"").append(labelDimension.y).append("\"");
+            if (compact) {
+                content.append(" font-size=\"").append(label.fontSize).append("\"")
+                        .append(" class=\"label\"");
+            } else {
+                content.append(" text-anchor=\"").append(LABEL_TEXT_ANCHOR).append("\"")
                         .append(" font-size=\"").append(label.fontSize).append("\"")
-                        .append(" fill=\"").append(labelFillColor).append("\"")
-                        .append(">\n");
-                // handle multi-lines label text
-                boolean isFirstLabelTextLine = true;
-                for (String labelTextLine : labelText.split("\n")) {
-                    content.append("  <tspan")
-                            .append(" x=\"").append(labelDimension.x).append("\"");
-                    if (!isFirstLabelTextLine) {
-                        content.append(" dy=\"1.2em\"");
-                    }
-                    content.append(">")
-                            .append(labelTextLine)
-                            .append("</tspan>\n");
-                    isFirstLabelTextLine = false;
+                        .append(" fill=\"").append(COLOR_LABEL_FILL).append("\"");
+            }
+            content.append(">\n");
+            // handle multi-lines label text
+            boolean isFirstLabelTextLine = true;
+            for (String labelTextLine : labelText.split("\n")) {
+                content.append("  <tspan")
+                        .append(" x=\"").append(labelDimension.x).append("\"");
+                if (!isFirstLabelTextLine) {
+                    content.append(" dy=\"1.2em\"");
                 }
-                content.append("</text>\n");
+                content.append(">")
+                        .append(labelTextLine)
+                        .append("</tspan>\n");
+                isFirstLabelTextLine = false;
             }
+            content.append("</text>\n");
         }
+    }
 
-        for (DisplayEdge edge : model.edges) {
-            if (edge.wayPoints.size() >= 2) {
-                String points = edge.wayPoints.stream()
-                        .map(point -> point.x + "," + point.y)
-                        .collect(Collectors.joining(" "));
-
-                content.append("<polyline")
-                        .append(" points=\"").append(points).append("\"")
-                        .append(" stroke=\"").append(colorEgeStroke).append("\"")
-                        .append(" stroke-width=\"").append(edgeStrokeWidth).append("\"")
-                        .append(" stroke-opacity=\"").append(edgeStrokeOpacity).append("\"")
-                        .append(" fill=\"none\"")
-                        .append(" />\n");
-
-                // highlight target point
-                DisplayPoint targetPoint = edge.wayPoints.get(edge.wayPoints.size() - 1);
-                content.append("<circle")
-                        .append(" cx=\"").append(targetPoint.x).append("\"")
-                        .append(" cy=\"").append(targetPoint.y).append("\"")
-                        .append(" r=\"").append("5").append("\"")
-                        .append(" stroke=\"").append(colorEgeStroke).append("\"")
-                        .append(" stroke-width=\"").append(edgeStrokeWidth).append("\"")
-                        .append(" stroke-opacity=\"").append(edgeStrokeOpacity).append("\"")
-                        .append(" fill=\"").append(colorEgeStroke).append("\"")
-                        .append(" />\n");
+    private void appendEdge(StringBuilder content, DisplayEdge edge) {
+        if (edge.wayPoints.size() < 2) {
+            return;
+        }
+        final boolean compact = style == Style.COMPACT;
+        content.append("<polyline")
+                .append(" points=\"");
+        for (int i = 0; i < edge.wayPoints.size(); i++) {
+            DisplayPoint point = edge.wayPoints.get(i);
+            if (i > 0) {
+                content.append(' ');
             }
+            content.append(point.x).append(',').append(point.y);
         }
+        content.append("\"");
+        if (compact) {
+            // the target point is highlighted by the marker of the class
+            content.append(" class=\"edge\" />\n");
+        } else {
+            content.append(" stroke=\"").append(COLOR_EDGE_STROKE).append("\"")
+                    .append(" stroke-width=\"").append(EDGE_STROKE_WIDTH).append("\"")
+                    .append(" stroke-opacity=\"").append(EDGE_STROKE_OPACITY).append("\"")
+                    .append(" fill=\"none\"")
+                    .append(" />\n");
 
-        content.append("</svg>");
-        return content.toString();
+            // highlight target point
+            DisplayPoint targetPoint = edge.wayPoints.get(edge.wayPoints.size() - 1);
+            content.append("<circle")
+                    .append(" cx=\"").append(targetPoint.x).append("\"")
+                    .append(" cy=\"").append(targetPoint.y).append("\"")
+                    .append(" r=\"").append("5").append("\"")
+                    .append(" stroke=\"").append(COLOR_EDGE_STROKE).append("\"")
+                    .append(" stroke-width=\"").append(EDGE_STROKE_WIDTH).append("\"")
+                    .append(" stroke-opacity=\"").append(EDGE_STROKE_OPACITY).append("\"")
+                    .append(" fill=\"").append(COLOR_EDGE_STROKE).append("\"")
+                    .append(" />\n");
+        }
+    }
+
+    /**
+     * Render the elements by chunks of a fixed size on the pool, and append the chunks in order. At most
+     * {@link #CHUNKS_AHEAD_PER_THREAD} chunks per thread are rendered ahead of the one being written, so the memory used
+     * depends on the parallelism, not on the size of the diagram.
+     */
+    // visible for testing
+    static <T> void appendInParallel(List<T> elements, BiConsumer<StringBuilder, T> renderer, BlockOutput output,
+                                     ForkJoinPool pool) throws IOException {
+        int maxChunksAhead = CHUNKS_AHEAD_PER_THREAD * pool.getParallelism();
+        Deque<ForkJoinTask<StringBuilder>> chunks = new ArrayDeque<>();
+        for (int start = 0; start < elements.size(); start += CHUNK_SIZE) {
+            List<T> chunkElements = elements.subList(start, Math.min(elements.size(), start + CHUNK_SIZE));
+            chunks.add(pool.submit(() -> {
+                StringBuilder chunk = new StringBuilder();
+                for (T element : chunkElements) {
+                    renderer.accept(chunk, element);
+                }
+                return chunk;
+            }));
+            if (chunks.size() > maxChunksAhead) {
+                output.append(chunks.remove().join());
+            }
+        }
+        while (!chunks.isEmpty()) {
+            // join rethrows the rendering errors as they are
+            output.append(chunks.remove().join());
+        }
+    }
+
+    private static void appendClass(StringBuilder content, String className, int strokeWidth, int classStrokeWidth) {
+        content.append(" class=\"").append(className).append("\"");
+        if (strokeWidth != classStrokeWidth) {
+            content.append(" style=\"stroke-width:").append(strokeWidth).append("\"");
+        }
+    }
+
+    // lets the gzip stream be closed without closing the output
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // visible for testing
+    static class BlockOutput {
+
+        private final Appendable output;
+        // the output itself when it is a StringBuilder, nothing to copy then
+        private final StringBuilder content;
+        // chars of the content, reused from one block to the next
+        private char[] chars = new char[0];
+
+        BlockOutput(Appendable output) {
+            this.output = output;
+            this.content = output instanceof StringBuilder ? (StringBuilder) output : new StringBuilder(2 * BLOCK_SIZE);
+        }
+
+        void append(CharSequence chunk) throws IOException {
+            content.append(chunk);
+            endElement();
+        }
+
+        void endElement() throws IOException {
+            if (content.length() >= BLOCK_SIZE) {
+                write();
+            }
+        }
+
+        void end() throws IOException {
+            write();
+        }
+
+        private void write() throws IOException {
+            if (content == output) {
+                return;
+            }
+            if (output instanceof Writer) {
+                // Writer#append would copy the content to a String first
+                int length = content.length();
+                if (chars.length < length) {
+                    chars = new char[length];
+                }
+                content.getChars(0, length, chars, 0);
+                ((Writer) output).write(chars, 0, length);
+            } else {
+                output.append(content);
+            }
+            content.setLength(0);
+        }
     }
 
 }
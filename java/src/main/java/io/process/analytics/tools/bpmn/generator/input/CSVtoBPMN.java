@@ -14,29 +14,66 @@
  */
 package io.process.analytics.tools.bpmn.generator.input;
 
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
 import io.process.analytics.tools.bpmn.generator.internal.Semantic;
 import io.process.analytics.tools.bpmn.generator.internal.generated.model.*;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static io.process.analytics.tools.bpmn.generator.internal.Semantic.addFlowNodes;
 import static io.process.analytics.tools.bpmn.generator.internal.Semantic.addSequenceFlows;
 
+/**
+ * Build the BPMN semantic of a process from node and edge CSV files, see {@link CsvProcess} for the expected columns.
+ */
 public class CSVtoBPMN {
 
-    // map original flow element id with the values we are using
-    // id cannot be numeric, in that case we map the id with a generated one, letting edge reference element ids with the values we are using for BPMN
-    private final Map<String, String> mappingShapeId = new HashMap<>();
+    private final FileInput fileInput;
+    private final CsvParsing parsing;
+
+    public CSVtoBPMN() {
+        this(FileInput.BUFFERED);
+    }
+
+    /**
+     * @param fileInput how the files are opened by {@link #readFromCSV(Path, Path)}
+     */
+    public CSVtoBPMN(FileInput fileInput) {
+        this(fileInput, CsvParsing.SEQUENTIAL);
+    }
 
-    // map flow element id with its incoming and outgoing edges
-    private final Map<String, EdgeRelation> shapeRelations = new HashMap<>();
+    public CSVtoBPMN(FileInput fileInput, CsvParsing parsing) {
+        this.fileInput = fileInput;
+        this.parsing = parsing;
+    }
+
+    public TDefinitions readFromCSV(Path nodes, Path edges) throws IOException {
+        try (Reader nodesReader = fileInput.newReader(nodes, StandardCharsets.UTF_8);
+             Reader edgesReader = fileInput.newReader(edges, StandardCharsets.UTF_8)) {
+            return readFromCSV(nodesReader, edgesReader);
+        }
+    }
 
     public TDefinitions readFromCSV(String nodes, String edges) {
+        return toDefinitions(CsvProcess.read(nodes, edges, parsing));
+    }
+
+    /**
+     * Read the nodes then the edges. The readers are not closed.
+     */
+    public TDefinitions readFromCSV(Reader nodes, Reader edges) throws IOException {
+        return toDefinitions(CsvProcess.read(nodes, edges, parsing));
+    }
+
+    private static TDefinitions toDefinitions(CsvProcess csvProcess) {
+
         TProcess process = new TProcess();
         process.setId("process_1");
         TDefinitions definitions = new TDefinitions();
@@ -45,71 +82,62 @@ public class CSVtoBPMN {
         Semantic semantic = new Semantic(definitions);
         semantic.add(process);
 
-        List<TFlowNode> flowNodeElements = getFlowNodeElements(nodes);
+        // flow element of each handle, referenced by the sequence flows
+        List<TFlowNode> shapes = new ArrayList<>(csvProcess.mappingShapeId.size());
+        List<TFlowNode> flowNodeElements = getFlowNodeElements(csvProcess, shapes);
         addFlowNodes(process, flowNodeElements);
-        addSequenceFlows(process, getEdgeElements(edges));
-        assignIncomingAndOutgoingReferences(flowNodeElements);
+        addSequenceFlows(process, getEdgeElements(csvProcess, shapes));
+        assignIncomingAndOutgoingReferences(csvProcess, flowNodeElements);
 
         return definitions;
     }
 
-    private List<TFlowNode> getFlowNodeElements(String nodes) {
-        String[] lines = toLinesWithoutHeader(nodes);
-        List<TFlowNode> flowElements = new ArrayList<>();
-        for (String line : lines) {
-            if (line == null) {
-                continue;
-            }
-            String[] node = line.split(",");
-            String type = removeEnclosingDoubleQuote(node[3]);
-            TFlowNode flowNode;
-            switch (type) {
-                case "start_event":
-                    flowNode = new TStartEvent();
-                    break;
-                case "end_event":
-                    flowNode = new TEndEvent();
-                    break;
-                case "gateway":
-                    flowNode = new TParallelGateway();
-                    break;
-                case "parallel_gateway":
-                    flowNode = new TParallelGateway();
-                    break;
-                case "exclusive_gateway":
-                    flowNode = new TExclusiveGateway();
-                    break;
-                case "inclusive_gateway":
-                    flowNode = new TInclusiveGateway();
-                    break;
-                case "user_task":
-                    flowNode = new TUserTask();
-                    break;
-                case "service_task":
-                    flowNode = new TServiceTask();
-                    break;
-                case "task":
-                default:
-                    flowNode = new TTask();
-            }
-            flowNode.setName(removeEnclosingDoubleQuote(node[2]));
+    private static List<TFlowNode> getFlowNodeElements(CsvProcess csvProcess, List<TFlowNode> shapes) {
+        List<TFlowNode> flowElements = new ArrayList<>(csvProcess.nodeIds.size());
+        for (int i = 0; i < csvProcess.nodeIds.size(); i++) {
+            TFlowNode flowNode = newFlowNode(csvProcess.nodeTypes.get(i));
+            flowNode.setName(csvProcess.nodeNames.get(i));
+            flowNode.setId(csvProcess.nodeIds.get(i));
+            flowElements.add(flowNode);
 
-            String originalId = node[1];
-            String bpmnId = originalId;
-            if (isNumeric(originalId)) {
-                bpmnId = "bpmnElement_" + originalId;
+            int handle = csvProcess.nodeHandles.get(i);
+            if (handle == shapes.size()) {
+                shapes.add(flowNode);
+            } else {
+                shapes.set(handle, flowNode);
             }
-            this.mappingShapeId.put(originalId, bpmnId);
-
-            flowNode.setId(bpmnId);
-            flowElements.add(flowNode);
         }
         return flowElements;
     }
 
-    private void assignIncomingAndOutgoingReferences(List<TFlowNode> flowNodeElements) {
-        for (TFlowNode flowNode : flowNodeElements) {
-            EdgeRelation edgeRelation = this.shapeRelations.get(flowNode.getId());
+    private static TFlowNode newFlowNode(CsvProcess.NodeType type) {
+        switch (type) {
+            case START_EVENT:
+                return new TStartEvent();
+            case END_EVENT:
+                return new TEndEvent();
+            case GATEWAY:
+            case PARALLEL_GATEWAY:
+                return new TParallelGateway();
+            case EXCLUSIVE_GATEWAY:
+                return new TExclusiveGateway();
+            case INCLUSIVE_GATEWAY:
+                return new TInclusiveGateway();
+            case USER_TASK:
+                return new TUserTask();
+            case SERVICE_TASK:
+                return new TServiceTask();
+            case TASK:
+                return new TTask();
+            default:
+                throw new IllegalStateException("Unexpected node type: " + type);
+        }
+    }
+
+    private static void assignIncomingAndOutgoingReferences(CsvProcess csvProcess, List<TFlowNode> flowNodeElements) {
+        for (int i = 0; i < flowNodeElements.size(); i++) {
+            TFlowNode flowNode = flowNodeElements.get(i);
+            CsvProcess.EdgeRelation edgeRelation = csvProcess.shapeRelations.get(csvProcess.nodeHandles.get(i));
             edgeRelation.incoming.stream().map(CSVtoBPMN::bpmnElementQName).forEach(flowNode.getIncoming()::add);
             edgeRelation.outgoing.stream().map(CSVtoBPMN::bpmnElementQName).forEach(flowNode.getOutgoing()::add);
         }
@@ -121,79 +149,26 @@ public class CSVtoBPMN {
         // return new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", bpmnElement, XMLConstants.DEFAULT_NS_PREFIX); // <semantic:incoming>semantic:sequenceFlow_1</semantic:incoming>
     }
 
-    private static String removeEnclosingDoubleQuote(String s) {
-        return s.replaceAll("^\"|\"$", "");
-    }
-
-    private String[] toLinesWithoutHeader(String fileContent) {
-        String[] lines = fileContent.split("\n");
-        lines[0] = null;
-        return lines;
-    }
-
-    private List<TSequenceFlow> getEdgeElements(String edges) {
-        String[] lines = toLinesWithoutHeader(edges);
-        List<TSequenceFlow> flowElements = new ArrayList<>();
-        for (String line : lines) {
-            if(line == null){
-                continue;
-            }
-            String[] edge = line.split(",");
+    private static List<TSequenceFlow> getEdgeElements(CsvProcess csvProcess, List<TFlowNode> shapes) {
+        List<TSequenceFlow> flowElements = new ArrayList<>(csvProcess.edgeIds.size());
+        for (int i = 0; i < csvProcess.edgeIds.size(); i++) {
             TSequenceFlow tSequenceFlow = new TSequenceFlow();
-
-            TUserTask sourceRef = new TUserTask();
-            tSequenceFlow.setSourceRef(sourceRef);
-            String sourceRefId = this.mappingShapeId.getOrDefault(edge[2], edge[2]);
-            sourceRef.setId(sourceRefId);
-
-            TUserTask targetRef = new TUserTask();
-            tSequenceFlow.setTargetRef(targetRef);
-            String targetRefId = this.mappingShapeId.getOrDefault(edge[3], edge[3]);
-            targetRef.setId(targetRefId);
-
-            String sequenceFlowId = edge[1];
-            if (isNumeric(sequenceFlowId)) {
-                sequenceFlowId = "sequenceFlow_" + sequenceFlowId;
-            }
-            tSequenceFlow.setId(sequenceFlowId);
+            tSequenceFlow.setSourceRef(flowNode(shapes, csvProcess.edgeSourceHandles.get(i), csvProcess.edgeSourceIds.get(i)));
+            tSequenceFlow.setTargetRef(flowNode(shapes, csvProcess.edgeTargetHandles.get(i), csvProcess.edgeTargetIds.get(i)));
+            tSequenceFlow.setId(csvProcess.edgeIds.get(i));
             flowElements.add(tSequenceFlow);
-
-            // prepare incoming/outgoing management
-            getEdgeRelation(sourceRefId).outgoing.add(sequenceFlowId);
-            getEdgeRelation(targetRefId).incoming.add(sequenceFlowId);
         }
         return flowElements;
     }
 
-    private EdgeRelation getEdgeRelation(String shapeId) {
-        EdgeRelation edgeRelation = this.shapeRelations.get(shapeId);
-        if (edgeRelation == null) {
-            edgeRelation= new EdgeRelation();
-            this.shapeRelations.put(shapeId, edgeRelation);
-        }
-        return edgeRelation;
-    }
-
-    // TODO not optimal for performance, see https://www.baeldung.com/java-check-string-number
-    // bpmn element id cannot be numeric
-    private static boolean isNumeric(String s) {
-        if (s == null) {
-            return false;
-        }
-        try {
-            Double.parseDouble(s);
-        } catch (NumberFormatException nfe) {
-            return false;
+    private static TFlowNode flowNode(List<TFlowNode> shapes, int handle, String id) {
+        if (handle != -1) {
+            return shapes.get(handle);
         }
-        return true;
-    }
-
-    private static class EdgeRelation {
-
-        public final List<String> incoming = new ArrayList<>();
-        public final List<String> outgoing = new ArrayList<>();;
-
+        // not part of the process, only its id is written as reference
+        TFlowNode flowNode = new TTask();
+        flowNode.setId(id);
+        return flowNode;
     }
 
 }
-
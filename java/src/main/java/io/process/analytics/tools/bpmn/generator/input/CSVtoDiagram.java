@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static io.process.analytics.tools.bpmn.generator.model.ShapeType.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Edge;
+import io.process.analytics.tools.bpmn.generator.model.Shape;
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
+
+/**
+ * Build the algo model of a process straight from node and edge CSV files, without going through the BPMN semantic.
+ *
+ * The diagram is the one {@link io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter} produces
+ * from the {@link CSVtoBPMN} definitions, so it can be used for all exports that do not write BPMN.
+ */
+public class CSVtoDiagram {
+
+    private final FileInput fileInput;
+    private final CsvParsing parsing;
+
+    public CSVtoDiagram() {
+        this(FileInput.BUFFERED);
+    }
+
+    /**
+     * @param fileInput how the files are opened by {@link #readFromCSV(Path, Path)}
+     */
+    public CSVtoDiagram(FileInput fileInput) {
+        this(fileInput, CsvParsing.SEQUENTIAL);
+    }
+
+    public CSVtoDiagram(FileInput fileInput, CsvParsing parsing) {
+        this.fileInput = fileInput;
+        this.parsing = parsing;
+    }
+
+    public Diagram readFromCSV(Path nodes, Path edges) throws IOException {
+        try (Reader nodesReader = fileInput.newReader(nodes, StandardCharsets.UTF_8);
+             Reader edgesReader = fileInput.newReader(edges, StandardCharsets.UTF_8)) {
+            return readFromCSV(nodesReader, edgesReader);
+        }
+    }
+
+    public Diagram readFromCSV(String nodes, String edges) {
+        return toDiagram(CsvProcess.read(nodes, edges, parsing));
+    }
+
+    /**
+     * Read the nodes then the edges. The readers are not closed.
+     */
+    public Diagram readFromCSV(Reader nodes, Reader edges) throws IOException {
+        return toDiagram(CsvProcess.read(nodes, edges, parsing));
+    }
+
+    private static Diagram toDiagram(CsvProcess csvProcess) {
+
+        // ids are interned once, all stages share the same instances and the diagram works on their handles
+        SymbolTable symbols = new SymbolTable();
+        Diagram.DiagramBuilder diagram = Diagram.builder().symbols(symbols);
+        for (int i = 0; i < csvProcess.nodeIds.size(); i++) {
+            String id = csvProcess.nodeIds.get(i);
+            // duplicated ids share the sequence flows of their handle
+            int outgoing = csvProcess.shapeRelations.get(csvProcess.nodeHandles.get(i)).outgoing.size();
+            ShapeType shapeType = csvProcess.nodeTypes.get(i).shapeType();
+            symbols.intern(id);
+            diagram.shape(new Shape(id, csvProcess.nodeNames.get(i), shapeType, shapeType == GATEWAY && outgoing > 1));
+        }
+        for (int i = 0; i < csvProcess.edgeIds.size(); i++) {
+            diagram.edge(Edge.edge(csvProcess.edgeIds.get(i), intern(symbols, csvProcess.edgeSourceIds.get(i)),
+                    intern(symbols, csvProcess.edgeTargetIds.get(i))));
+        }
+        return diagram.build();
+    }
+
+    private static String intern(SymbolTable symbols, String id) {
+        return symbols.symbol(symbols.intern(id));
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+/**
+ * How the records of the node and edge CSV files are parsed.
+ */
+public enum CsvParsing {
+
+    /** Record by record, as the content is read. */
+    SEQUENTIAL,
+    /**
+     * The whole content is read, then cut into chunks at line boundaries parsed on the common fork join pool. The result
+     * is the same as the sequential one, meant for files of millions of records.
+     */
+    PARALLEL
+
+}
@@ -0,0 +1,639 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Flow nodes and sequence flows read from the node and edge CSV files, with the ids to use in BPMN. Nothing depends on
+ * the BPMN model here, the callers build either the BPMN semantic or the algo model from the rows.
+ *
+ * The columns are found by their header name: id, label and type for the nodes, id, from and to for the edges. The
+ * names used by the bupaR exports (from_id, node, to_id) are also supported, and the columns are taken by position when
+ * the header does not name them.
+ *
+ * The records are parsed into rows, chunk by chunk, then the rows are added to the process in the order of the files:
+ * this is where the ids are interned and the incoming/outgoing edges are recorded. When parsing in parallel, the
+ * content is cut into chunks at line boundaries, so the process is the same as the one read sequentially.
+ */
+@Log4j2
+class CsvProcess {
+
+    private static final Column NODE_ID = new Column(1, "id", "from_id");
+    private static final Column NODE_LABEL = new Column(2, "label", "node");
+    private static final Column NODE_TYPE = new Column(3, "type");
+    private static final Column EDGE_ID = new Column(1, "id");
+    private static final Column EDGE_SOURCE = new Column(2, "from", "from_id");
+    private static final Column EDGE_TARGET = new Column(3, "to", "to_id");
+
+    // not worth dispatching smaller chunks on other threads
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    // several chunks per thread, so that the threads finishing first can take the remaining ones
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // states of the scan, as in CsvReader
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    // a double quote in a quoted field, either closing it or escaped by the next one
+    private static final int QUOTE = 3;
+
+    // original flow element ids, interned once: the values below are indexed by handle
+    private final SymbolTable shapeIds = new SymbolTable();
+
+    // map original flow element id with the values we are using
+    // id cannot be numeric, in that case we map the id with a generated one, letting edge reference element ids with the values we are using for BPMN
+    final List<String> mappingShapeId = new ArrayList<>();
+
+    // map flow element id with its incoming and outgoing edges
+    final List<EdgeRelation> shapeRelations = new ArrayList<>();
+
+    // one entry per node row
+    final List<String> nodeIds = new ArrayList<>();
+    final List<String> nodeNames = new ArrayList<>();
+    final List<NodeType> nodeTypes = new ArrayList<>();
+    final IntList nodeHandles = new IntList();
+
+    // one entry per edge row, the handles are -1 for ids not found in the nodes
+    final List<String> edgeIds = new ArrayList<>();
+    final List<String> edgeSourceIds = new ArrayList<>();
+    final List<String> edgeTargetIds = new ArrayList<>();
+    final IntList edgeSourceHandles = new IntList();
+    final IntList edgeTargetHandles = new IntList();
+
+    /**
+     * Read the nodes then the edges. The readers are not closed.
+     */
+    static CsvProcess read(Reader nodes, Reader edges, CsvParsing parsing) throws IOException {
+        if (parsing == CsvParsing.PARALLEL) {
+            return readInParallel(content(nodes), content(edges), ForkJoinPool.commonPool());
+        }
+        return read(nodes, edges);
+    }
+
+    static CsvProcess read(String nodes, String edges, CsvParsing parsing) {
+        if (parsing == CsvParsing.PARALLEL) {
+            return readInParallel(nodes, edges, ForkJoinPool.commonPool());
+        }
+        try {
+            return read(new StringReader(nodes), new StringReader(edges));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the CSV content", e);
+        }
+    }
+
+    /**
+     * Read the nodes then the edges, record by record. The readers are not closed.
+     */
+    static CsvProcess read(Reader nodes, Reader edges) throws IOException {
+        CsvProcess process = new CsvProcess();
+        CsvReader nodesCsv = new CsvReader(nodes);
+        if (nodesCsv.next()) {
+            NodeRows rows = new NodeRows(nodesCsv);
+            rows.read(nodesCsv);
+            process.add(rows);
+        }
+        CsvReader edgesCsv = new CsvReader(edges);
+        if (edgesCsv.next()) {
+            EdgeRows rows = new EdgeRows(edgesCsv, process.shapeIds);
+            rows.read(edgesCsv);
+            process.add(rows);
+        }
+        return process;
+    }
+
+    private static CsvProcess readInParallel(String nodes, String edges, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        return readInParallel(nodes, edges, pool, chunkSize(nodes, parallelism), chunkSize(edges, parallelism));
+    }
+
+    // visible for testing
+    static CsvProcess readInParallel(String nodes, String edges, ExecutorService pool, int nodesChunkSize, int edgesChunkSize) {
+        Chunks nodesChunks = split(nodes, nodesChunkSize, pool);
+        Chunks edgesChunks = split(edges, edgesChunkSize, pool);
+        if (nodesChunks == null || edgesChunks == null) {
+            // the records cannot be found without reading the content from its start
+            log.debug("Double quote in an unquoted field, reading the CSV content sequentially");
+            return read(nodes, edges, CsvParsing.SEQUENTIAL);
+        }
+        CsvProcess process = new CsvProcess();
+        CsvReader nodesHeader = header(nodes);
+        if (nodesHeader != null) {
+            for (NodeRows rows : readChunks(nodes, nodesChunks, pool, () -> new NodeRows(nodesHeader))) {
+                process.add(rows);
+            }
+        }
+        // the node ids are not modified anymore, the edge chunks look their handles up concurrently
+        CsvReader edgesHeader = header(edges);
+        if (edgesHeader != null) {
+            for (EdgeRows rows : readChunks(edges, edgesChunks, pool, () -> new EdgeRows(edgesHeader, process.shapeIds))) {
+                process.add(rows);
+            }
+        }
+        return process;
+    }
+
+    private void add(NodeRows rows) {
+        for (int i = 0; i < rows.originalIds.size(); i++) {
+            String bpmnId = rows.bpmnIds.get(i);
+            int handle = shapeIds.intern(rows.originalIds.get(i));
+            if (handle == mappingShapeId.size()) {
+                mappingShapeId.add(bpmnId);
+                shapeRelations.add(new EdgeRelation());
+            } else {
+                mappingShapeId.set(handle, bpmnId);
+            }
+
+            nodeIds.add(bpmnId);
+            nodeNames.add(rows.names.get(i));
+            nodeTypes.add(rows.types.get(i));
+            nodeHandles.add(handle);
+        }
+    }
+
+    private void add(EdgeRows rows) {
+        for (int i = 0; i < rows.ids.size(); i++) {
+            String sequenceFlowId = rows.ids.get(i);
+            int sourceHandle = rows.sourceHandles.get(i);
+            int targetHandle = rows.targetHandles.get(i);
+            edgeIds.add(sequenceFlowId);
+            edgeSourceIds.add(sourceHandle == -1 ? rows.sourceIds.get(i) : mappingShapeId.get(sourceHandle));
+            edgeTargetIds.add(targetHandle == -1 ? rows.targetIds.get(i) : mappingShapeId.get(targetHandle));
+            edgeSourceHandles.add(sourceHandle);
+            edgeTargetHandles.add(targetHandle);
+
+            // prepare incoming/outgoing management, edges to unknown elements are not referenced
+            if (sourceHandle != -1) {
+                shapeRelations.get(sourceHandle).outgoing.add(sequenceFlowId);
+            }
+            if (targetHandle != -1) {
+                shapeRelations.get(targetHandle).incoming.add(sequenceFlowId);
+            }
+        }
+    }
+
+    /*
+       Chunks
+     */
+
+    private static int chunkSize(String content, int parallelism) {
+        return Math.max(MIN_CHUNK_SIZE, content.length() / (parallelism * CHUNKS_PER_THREAD));
+    }
+
+    // the first record, null when there is none
+    private static CsvReader header(String content) {
+        CsvReader header = new CsvReader(content, 0, content.length(), 0);
+        try {
+            return header.next() ? header : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the CSV content", e);
+        }
+    }
+
+    private static <T extends Rows> List<T> readChunks(String content, Chunks chunks, ExecutorService pool, Supplier<T> newRows) {
+        List<Callable<T>> tasks = new ArrayList<>(chunks.starts.length);
+        for (int i = 0; i < chunks.starts.length; i++) {
+            int start = chunks.starts[i];
+            int end = i + 1 < chunks.starts.length ? chunks.starts[i + 1] : content.length();
+            int linesBefore = chunks.linesBefore[i];
+            boolean firstChunk = i == 0;
+            tasks.add(() -> {
+                CsvReader csv = new CsvReader(content, start, end, linesBefore);
+                if (firstChunk) {
+                    // skip the header
+                    csv.next();
+                }
+                T rows = newRows.get();
+                rows.read(csv);
+                return rows;
+            });
+        }
+        return invokeAll(pool, tasks);
+    }
+
+    /**
+     * Cut the content at the line breaks following each chunk size, then keep the cuts that are at the start of a
+     * record, not inside a quoted field.
+     *
+     * Whether a line break is inside a quoted field depends on all the content before it, so each part between two cuts
+     * is scanned in parallel twice: once starting at a record, once starting inside a quoted field. The scans are then
+     * chained from the start of the content, the end state of a part telling which scan of the next part applies.
+     *
+     * @return null when a double quote is in the middle of an unquoted field: it is kept as is when parsing, but the
+     * quoted fields cannot be told apart anymore from a part of the content, the content must be read sequentially
+     */
+    static Chunks split(String content, int chunkSize, ExecutorService pool) {
+        List<Integer> candidates = new ArrayList<>();
+        candidates.add(0);
+        int start = 0;
+        while (content.length() - start > chunkSize) {
+            int lineEnd = content.indexOf('\n', start + chunkSize);
+            if (lineEnd == -1 || lineEnd + 1 == content.length()) {
+                break;
+            }
+            start = lineEnd + 1;
+            candidates.add(start);
+        }
+        if (candidates.size() == 1) {
+            // read as a whole, as sequentially
+            return new Chunks(new int[] { 0 }, new int[] { 0 }, 1);
+        }
+
+        List<Callable<Scan[]>> tasks = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            int from = candidates.get(i);
+            int to = i + 1 < candidates.size() ? candidates.get(i + 1) : content.length();
+            tasks.add(() -> new Scan[] { scan(content, from, to, FIELD_START), scan(content, from, to, QUOTED) });
+        }
+        List<Scan[]> scans = invokeAll(pool, tasks);
+
+        int[] starts = new int[candidates.size()];
+        int[] linesBefore = new int[candidates.size()];
+        int chunkCount = 0;
+        int state = FIELD_START;
+        int lines = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (state == FIELD_START) {
+                starts[chunkCount] = candidates.get(i);
+                linesBefore[chunkCount] = lines;
+                chunkCount++;
+            }
+            Scan scan = scans.get(i)[state == FIELD_START ? 0 : 1];
+            if (scan.strayQuote) {
+                return null;
+            }
+            lines += scan.lines;
+            state = scan.endState;
+        }
+        return new Chunks(starts, linesBefore, chunkCount);
+    }
+
+    private static Scan scan(String content, int from, int to, int startState) {
+        int state = startState;
+        int lines = 0;
+        char previous = '\n';
+        for (int i = from; i < to; i++) {
+            char c = content.charAt(i);
+            if (state == QUOTED) {
+                if (c == '"') {
+                    state = QUOTE;
+                } else if (c == '\n') {
+                    lines++;
+                }
+            } else if (c == ',') {
+                state = FIELD_START;
+            } else if (c == '\n' || c == '\r') {
+                // a LF right after a CR is part of the same line break
+                if (c == '\r' || previous != '\r') {
+                    lines++;
+                }
+                state = FIELD_START;
+            } else if (c == '"') {
+                if (state == UNQUOTED) {
+                    return new Scan(state, lines, true);
+                }
+                // opening a quoted field, or escaped in it
+                state = QUOTED;
+            } else {
+                state = UNQUOTED;
+            }
+            previous = c;
+        }
+        return new Scan(state, lines, false);
+    }
+
+    // results in the order of the tasks, the errors of the tasks are thrown as is
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the CSV content", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // the fork join pool may throw a copy of the error made in the calling thread, with the error as cause
+            if (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException("Unable to read the CSV content", (IOException) cause);
+            }
+            throw new IllegalStateException("Unable to read the CSV content", cause);
+        }
+    }
+
+    private static String content(Reader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+
+    private static String field(CsvReader csv, int column) {
+        if (column >= csv.size()) {
+            throw new IllegalArgumentException("Line " + csv.lineNumber() + " has " + csv.size() + " fields, expected at least " + (column + 1));
+        }
+        return csv.get(column);
+    }
+
+    // bpmn element id cannot be numeric
+    // same as checking that Double#parseDouble does not fail, for the decimal notation, without relying on its exception
+    static boolean isNumeric(String s) {
+        if (s == null) {
+            return false;
+        }
+        String value = s.trim();
+        int length = value.length();
+        int i = 0;
+        if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            i++;
+        }
+        if (value.startsWith("NaN", i) || value.startsWith("Infinity", i)) {
+            return value.length() - i == (value.charAt(i) == 'N' ? 3 : 8);
+        }
+        int digits = 0;
+        for (; i < length && isDigit(value.charAt(i)); i++) {
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            for (i++; i < length && isDigit(value.charAt(i)); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < length && isDigit(value.charAt(i)); i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < length && "fFdD".indexOf(value.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == length;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // records found in parallel, each chunk starts at a record
+    static class Chunks {
+
+        final int[] starts;
+        // lines of the content before each start
+        final int[] linesBefore;
+
+        Chunks(int[] starts, int[] linesBefore, int count) {
+            this.starts = Arrays.copyOf(starts, count);
+            this.linesBefore = Arrays.copyOf(linesBefore, count);
+        }
+    }
+
+    // result of the scan of the content between two cuts, for one start state
+    private static class Scan {
+
+        private final int endState;
+        private final int lines;
+        private final boolean strayQuote;
+
+        Scan(int endState, int lines, boolean strayQuote) {
+            this.endState = endState;
+            this.lines = lines;
+            this.strayQuote = strayQuote;
+        }
+    }
+
+    // records of a chunk, parsed without touching the process
+    private abstract static class Rows {
+
+        void read(CsvReader csv) throws IOException {
+            while (csv.next()) {
+                add(csv);
+            }
+        }
+
+        abstract void add(CsvReader csv);
+    }
+
+    private static class NodeRows extends Rows {
+
+        private final int idColumn;
+        private final int labelColumn;
+        private final int typeColumn;
+        private final List<String> originalIds = new ArrayList<>();
+        private final List<String> bpmnIds = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<NodeType> types = new ArrayList<>();
+
+        NodeRows(CsvReader header) {
+            idColumn = NODE_ID.index(header);
+            labelColumn = NODE_LABEL.index(header);
+            typeColumn = NODE_TYPE.index(header);
+        }
+
+        @Override
+        void add(CsvReader nodes) {
+            String originalId = field(nodes, idColumn);
+            String bpmnId = originalId;
+            if (isNumeric(originalId)) {
+                bpmnId = "bpmnElement_" + originalId;
+            }
+            originalIds.add(originalId);
+            bpmnIds.add(bpmnId);
+            names.add(field(nodes, labelColumn));
+            types.add(NodeType.of(field(nodes, typeColumn)));
+        }
+    }
+
+    private static class EdgeRows extends Rows {
+
+        private final int idColumn;
+        private final int sourceColumn;
+        private final int targetColumn;
+        // only read here
+        private final SymbolTable shapeIds;
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> sourceIds = new ArrayList<>();
+        private final List<String> targetIds = new ArrayList<>();
+        private final IntList sourceHandles = new IntList();
+        private final IntList targetHandles = new IntList();
+
+        EdgeRows(CsvReader header, SymbolTable shapeIds) {
+            idColumn = EDGE_ID.index(header);
+            sourceColumn = EDGE_SOURCE.index(header);
+            targetColumn = EDGE_TARGET.index(header);
+            this.shapeIds = shapeIds;
+        }
+
+        @Override
+        void add(CsvReader edges) {
+            String sourceId = field(edges, sourceColumn);
+            String targetId = field(edges, targetColumn);
+            String sequenceFlowId = field(edges, idColumn);
+            if (isNumeric(sequenceFlowId)) {
+                sequenceFlowId = "sequenceFlow_" + sequenceFlowId;
+            }
+            ids.add(sequenceFlowId);
+            sourceIds.add(sourceId);
+            targetIds.add(targetId);
+            sourceHandles.add(shapeIds.handle(sourceId));
+            targetHandles.add(shapeIds.handle(targetId));
+        }
+    }
+
+    /**
+     * Type of a node row, with the shape type of its flow node in the algo model. Both the BPMN semantic and the algo
+     * model are built from it, so that they always agree.
+     */
+    enum NodeType {
+        START_EVENT("start_event", ShapeType.EVENT),
+        END_EVENT("end_event", ShapeType.EVENT),
+        // parallel, as the generic gateway has no BPMN element
+        GATEWAY("gateway", ShapeType.GATEWAY),
+        PARALLEL_GATEWAY("parallel_gateway", ShapeType.GATEWAY),
+        EXCLUSIVE_GATEWAY("exclusive_gateway", ShapeType.GATEWAY),
+        INCLUSIVE_GATEWAY("inclusive_gateway", ShapeType.GATEWAY),
+        USER_TASK("user_task", ShapeType.ACTIVITY),
+        SERVICE_TASK("service_task", ShapeType.ACTIVITY),
+        // also the type of the unknown values
+        TASK("task", ShapeType.ACTIVITY);
+
+        private static final Map<String, NodeType> BY_VALUE = new HashMap<>();
+
+        static {
+            for (NodeType type : values()) {
+                BY_VALUE.put(type.value, type);
+            }
+        }
+
+        private final String value;
+        private final ShapeType shapeType;
+
+        NodeType(String value, ShapeType shapeType) {
+            this.value = value;
+            this.shapeType = shapeType;
+        }
+
+        ShapeType shapeType() {
+            return shapeType;
+        }
+
+        static NodeType of(String value) {
+            return BY_VALUE.getOrDefault(value, TASK);
+        }
+    }
+
+    // growable int array, the handles are stored without boxing
+    static class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    static class EdgeRelation {
+
+        final List<String> incoming = new ArrayList<>();
+        final List<String> outgoing = new ArrayList<>();
+
+    }
+
+    // column of a CSV file, found by its name in the header, or by its default index
+    private static class Column {
+
+        private final int defaultIndex;
+        private final String[] names;
+
+        Column(int defaultIndex, String... names) {
+            this.defaultIndex = defaultIndex;
+            this.names = names;
+        }
+
+        int index(CsvReader header) {
+            for (String name : names) {
+                for (int i = 0; i < header.size(); i++) {
+                    if (name.equalsIgnoreCase(header.get(i).trim())) {
+                        return i;
+                    }
+                }
+            }
+            return defaultIndex;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Read RFC 4180 CSV content record by record, as written by the R {@code write.csv} function.
+ *
+ * Fields are separated by commas and may be enclosed in double quotes, a double quote being escaped by another double
+ * quote. Quoted fields may contain commas and line breaks. Records end with LF, CRLF or CR; blank lines are skipped.
+ *
+ * The chars of the current record are kept in a buffer reused from one record to the next, strings are only created
+ * for the fields that are read.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int END_OF_INPUT = -1;
+
+    private final Reader reader;
+    // content read in place instead of the reader, between the current position and the end
+    private final String content;
+    private int contentPosition;
+    private final int contentEnd;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    // a LF right after a CR is part of the same line break
+    private boolean afterCarriageReturn;
+
+    // unescaped chars of the fields of the current record, and the end of each field in this array
+    private char[] record = new char[256];
+    private int recordLength;
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+
+    // lines read so far, and the one where the current record starts
+    private int lineNumber;
+    private int recordLineNumber;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+        this.content = null;
+        this.contentEnd = 0;
+    }
+
+    /**
+     * Read the chars of the content between start and end.
+     *
+     * @param linesBefore the number of lines of the content before start, for the line numbers to be the ones of the
+     *                    whole content
+     */
+    CsvReader(String content, int start, int end, int linesBefore) {
+        this.reader = null;
+        this.content = content;
+        this.contentPosition = start;
+        this.contentEnd = end;
+        this.lineNumber = linesBefore;
+    }
+
+    /**
+     * Read the next non blank record.
+     *
+     * @return false when there is no more record
+     */
+    public boolean next() throws IOException {
+        while (readRecord()) {
+            if (fieldCount > 1 || recordLength > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of fields of the current record
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    public String get(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException("Line " + recordLineNumber + " has " + fieldCount + " fields, no field at index " + field);
+        }
+        int start = field == 0 ? 0 : fieldEnds[field - 1];
+        return new String(record, start, fieldEnds[field] - start);
+    }
+
+    /**
+     * @return the line where the current record starts, starting at 1
+     */
+    public int lineNumber() {
+        return recordLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private boolean readRecord() throws IOException {
+        recordLength = 0;
+        fieldCount = 0;
+        int c = read();
+        if (afterCarriageReturn && c == '\n') {
+            c = read();
+        }
+        afterCarriageReturn = false;
+        if (c == END_OF_INPUT) {
+            return false;
+        }
+        recordLineNumber = ++lineNumber;
+        while (true) {
+            if (c == '"') {
+                c = readQuoted();
+            }
+            // unquoted field, or what is left after the closing quote
+            while (c != ',' && c != '\n' && c != '\r' && c != END_OF_INPUT) {
+                append((char) c);
+                c = read();
+            }
+            endField();
+            if (c != ',') {
+                afterCarriageReturn = c == '\r';
+                return true;
+            }
+            c = read();
+        }
+    }
+
+    // return the char following the closing quote
+    private int readQuoted() throws IOException {
+        int startLine = lineNumber;
+        while (true) {
+            int c = read();
+            if (c == END_OF_INPUT) {
+                throw new IllegalArgumentException("Unterminated quoted field starting at line " + startLine);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c;
+                }
+            } else if (c == '\n') {
+                lineNumber++;
+            }
+            append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = fill();
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return END_OF_INPUT;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private int fill() throws IOException {
+        if (reader != null) {
+            return reader.read(buffer);
+        }
+        int length = Math.min(buffer.length, contentEnd - contentPosition);
+        content.getChars(contentPosition, contentPosition + length, buffer, 0);
+        contentPosition += length;
+        return length;
+    }
+
+    private void append(char c) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[recordLength++] = c;
+    }
+
+    private void endField() {
+        if (fieldCount == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+        }
+        fieldEnds[fieldCount++] = recordLength;
+    }
+
+}
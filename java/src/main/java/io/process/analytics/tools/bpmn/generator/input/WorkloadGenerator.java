@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static io.process.analytics.tools.bpmn.generator.internal.Semantic.addFlowNodes;
+import static io.process.analytics.tools.bpmn.generator.internal.Semantic.addSequenceFlows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+import io.process.analytics.tools.bpmn.generator.internal.Semantic;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.*;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Generate reproducible process models of a given size, to be used as inputs of scaling tests and benchmarks.
+ *
+ * The process is a start event, a sequence of blocks and an end event. A block is a task, a split gateway whose branches
+ * are sequences of blocks followed by the matching join gateway, or a loop: an exclusive join gateway, a sequence of
+ * blocks and an exclusive split gateway going back to the join.
+ *
+ * The same configuration, seed included, always generates the same model, either as BPMN semantic or as the node/edge
+ * CSV pair read by {@link CSVtoBPMN}. Both use the ids produced by {@link CSVtoBPMN}.
+ */
+@Builder(toBuilder = true)
+@ToString
+public class WorkloadGenerator {
+
+    private static final String[] TASK_TYPES = { "task", "user_task", "service_task" };
+    private static final String[] GATEWAY_TYPES = { "parallel_gateway", "exclusive_gateway" };
+    private static final double SPLIT_PROBABILITY = 0.3;
+    private static final int BRANCH_LENGTH = 4;
+
+    @Builder.Default
+    private final long seed = 0;
+    /** exact number of flow nodes, start and end events included */
+    @Builder.Default
+    private final int nodeCount = 1000;
+    /** maximum number of branches of a split gateway */
+    @Builder.Default
+    private final int fanOut = 3;
+    /** maximum number of nested blocks */
+    @Builder.Default
+    private final int nestingDepth = 2;
+    /** probability for a block to be a loop */
+    @Builder.Default
+    private final double cycleDensity = 0.05;
+    /** number of characters of the flow node names */
+    @Builder.Default
+    private final int labelLength = 12;
+
+    public TDefinitions generateDefinitions() {
+        Model model = generate();
+
+        List<TFlowNode> flowNodes = new ArrayList<>(model.types.size());
+        for (int node = 0; node < model.types.size(); node++) {
+            TFlowNode flowNode = newFlowNode(model.types.get(node));
+            flowNode.setId(flowNodeId(node));
+            flowNode.setName(model.labels.get(node));
+            flowNodes.add(flowNode);
+        }
+        List<TSequenceFlow> sequenceFlows = new ArrayList<>(model.edges.size());
+        for (int edge = 0; edge < model.edges.size(); edge++) {
+            TSequenceFlow sequenceFlow = new TSequenceFlow();
+            sequenceFlow.setId(sequenceFlowId(edge));
+            TFlowNode source = flowNodes.get(model.edges.get(edge)[0]);
+            TFlowNode target = flowNodes.get(model.edges.get(edge)[1]);
+            sequenceFlow.setSourceRef(source);
+            sequenceFlow.setTargetRef(target);
+            source.getOutgoing().add(new QName(XMLConstants.NULL_NS_URI, sequenceFlow.getId(), XMLConstants.DEFAULT_NS_PREFIX));
+            target.getIncoming().add(new QName(XMLConstants.NULL_NS_URI, sequenceFlow.getId(), XMLConstants.DEFAULT_NS_PREFIX));
+            sequenceFlows.add(sequenceFlow);
+        }
+
+        TProcess process = new TProcess();
+        process.setId("process_1");
+        TDefinitions definitions = new TDefinitions();
+        definitions.setId("definitions_1");
+        definitions.setTargetNamespace(XMLConstants.NULL_NS_URI);
+        new Semantic(definitions).add(process);
+        addFlowNodes(process, flowNodes);
+        addSequenceFlows(process, sequenceFlows);
+        return definitions;
+    }
+
+    public Csv generateCsv() {
+        Model model = generate();
+
+        StringBuilder nodes = new StringBuilder("\"\",\"id\",\"label\",\"type\"\n");
+        for (int node = 0; node < model.types.size(); node++) {
+            int id = node + 1;
+            nodes.append('"').append(id).append("\",").append(id)
+                    .append(",\"").append(model.labels.get(node))
+                    .append("\",\"").append(model.types.get(node)).append("\"\n");
+        }
+        StringBuilder edges = new StringBuilder("\"\",\"id\",\"from\",\"to\"\n");
+        for (int edge = 0; edge < model.edges.size(); edge++) {
+            int id = edge + 1;
+            edges.append('"').append(id).append("\",").append(id)
+                    .append(',').append(model.edges.get(edge)[0] + 1)
+                    .append(',').append(model.edges.get(edge)[1] + 1).append('\n');
+        }
+        return new Csv(nodes.toString(), edges.toString());
+    }
+
+    private Model generate() {
+        if (nodeCount < 2) {
+            throw new IllegalArgumentException("The node count must be at least 2, was " + nodeCount);
+        }
+        if (fanOut < 2) {
+            throw new IllegalArgumentException("The fan-out must be at least 2, was " + fanOut);
+        }
+        if (nestingDepth < 0 || cycleDensity < 0 || cycleDensity > 1 || labelLength < 1) {
+            throw new IllegalArgumentException("Invalid generator configuration: " + this);
+        }
+        Model model = new Model(new Random(seed));
+        int start = model.add("start_event");
+        int last = model.sequence(start, nodeCount - 1, 0);
+        model.link(last, model.add("end_event"));
+        return model;
+    }
+
+    // same ids as the ones computed by CSVtoBPMN for numeric ids
+    private static String flowNodeId(int node) {
+        return "bpmnElement_" + (node + 1);
+    }
+
+    private static String sequenceFlowId(int edge) {
+        return "sequenceFlow_" + (edge + 1);
+    }
+
+    private static TFlowNode newFlowNode(String type) {
+        switch (type) {
+            case "start_event":
+                return new TStartEvent();
+            case "end_event":
+                return new TEndEvent();
+            case "parallel_gateway":
+                return new TParallelGateway();
+            case "exclusive_gateway":
+                return new TExclusiveGateway();
+            case "user_task":
+                return new TUserTask();
+            case "service_task":
+                return new TServiceTask();
+            case "task":
+            default:
+                return new TTask();
+        }
+    }
+
+    /**
+     * Node/edge CSV files content, in the format read by {@link CSVtoBPMN#readFromCSV(String, String)}
+     */
+    @RequiredArgsConstructor
+    public static class Csv {
+        public final String nodes;
+        public final String edges;
+    }
+
+    private class Model {
+
+        private final Random random;
+        private final List<String> types = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+        // source and target node indexes
+        private final List<int[]> edges = new ArrayList<>();
+
+        Model(Random random) {
+            this.random = random;
+        }
+
+        int add(String type) {
+            types.add(type);
+            labels.add(label());
+            return types.size() - 1;
+        }
+
+        int link(int source, int target) {
+            edges.add(new int[] { source, target });
+            return target;
+        }
+
+        // blocks after 'previous' until there are 'limit' nodes, return the last node of the sequence
+        int sequence(int previous, int limit, int depth) {
+            while (types.size() < limit) {
+                previous = block(previous, limit, depth);
+            }
+            return previous;
+        }
+
+        private int block(int previous, int limit, int depth) {
+            int remaining = limit - types.size();
+            if (depth < nestingDepth && remaining >= 3 && random.nextDouble() < cycleDensity) {
+                return loop(previous, limit, depth);
+            }
+            int branches = 2 + random.nextInt(fanOut - 1);
+            if (depth < nestingDepth && remaining >= branches + 2 && random.nextDouble() < SPLIT_PROBABILITY) {
+                return split(previous, limit, depth, branches);
+            }
+            return link(previous, add(TASK_TYPES[random.nextInt(TASK_TYPES.length)]));
+        }
+
+        private int split(int previous, int limit, int depth, int branches) {
+            String type = GATEWAY_TYPES[random.nextInt(GATEWAY_TYPES.length)];
+            int split = link(previous, add(type));
+            int[] branchEnds = new int[branches];
+            for (int i = 0; i < branches; i++) {
+                // keep a node for each next branch and for the join
+                int available = limit - types.size() - (branches - i - 1) - 1;
+                branchEnds[i] = sequence(split, types.size() + branchLength(depth, available), depth + 1);
+            }
+            int join = add(type);
+            for (int branchEnd : branchEnds) {
+                link(branchEnd, join);
+            }
+            return join;
+        }
+
+        private int loop(int previous, int limit, int depth) {
+            int join = link(previous, add("exclusive_gateway"));
+            int available = limit - types.size() - 1;
+            int last = sequence(join, types.size() + branchLength(depth, available), depth + 1);
+            int split = link(last, add("exclusive_gateway"));
+            link(split, join);
+            return split;
+        }
+
+        // nested blocks need longer branches
+        private int branchLength(int depth, int available) {
+            long bound = BRANCH_LENGTH;
+            for (int level = depth + 1; level < nestingDepth && bound < available; level++) {
+                bound *= fanOut + 2;
+            }
+            return 1 + random.nextInt((int) Math.min(bound, available));
+        }
+
+        private String label() {
+            char[] label = new char[labelLength];
+            for (int i = 0; i < labelLength; i++) {
+                label[i] = i > 0 && i < labelLength - 1 && random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26));
+            }
+            label[0] = Character.toUpperCase(label[0]);
+            return new String(label);
+        }
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import static io.process.analytics.tools.bpmn.generator.internal.BPMNDiagramRichBuilder.labelDimension;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayDimension;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayEdge;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayFlowNode;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayPoint;
+
+/**
+ * Copy a BPMN document as is, except its BPMNDiagram elements that are replaced by the diagram of a display model.
+ *
+ * The document is copied character by character, so the semantic part, vendor extensions, namespace prefixes,
+ * comments and formatting are kept. Only the markup is scanned to find the BPMNDiagram elements and the end of the
+ * definitions, the new diagram is written with a StAX writer. The document is supposed to be well-formed.
+ *
+ * The document can be copied while it is read, see {@link #inject(Reader, Writer)}: only the markup being scanned and
+ * the end of the document after the definitions are kept in memory, the existing diagrams being dropped as they are
+ * read.
+ */
+public class BPMNDiagramInjector {
+
+    private static final String MODEL_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+    private static final String BPMNDI_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/DI";
+    private static final String DC_NAMESPACE = "http://www.omg.org/spec/DD/20100524/DC";
+    private static final String DI_NAMESPACE = "http://www.omg.org/spec/DD/20100524/DI";
+
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    public void inject(String bpmn, DisplayModel displayModel, Writer output) {
+        try {
+            Injection injection = new Injection(bpmn, new MarkupScanner(bpmn), null, output);
+            injection.scan();
+            injection.finish(displayModel);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the BPMN diagram", e);
+        }
+    }
+
+    /**
+     * Start copying a document while it is read: the document is read from {@link Injection#getReader()}, what is read
+     * being written to the output, then the diagram is written by {@link Injection#finish(DisplayModel)}.
+     *
+     * The output is written as the document is read, so it is left incomplete if reading the document fails.
+     */
+    public Injection inject(Reader bpmn, Writer output) {
+        StringBuilder pending = new StringBuilder();
+        return new Injection(pending, new MarkupScanner(pending), bpmn, output);
+    }
+
+    public static class Injection {
+
+        // the whole document, or the chars read and not yet written nor dropped when copying while reading
+        private final CharSequence bpmn;
+        private final MarkupScanner scanner;
+        private final Reader reader;
+        private final Writer output;
+        // position of the first char neither written nor dropped
+        private int copied;
+        private int depth;
+        // depth in the diagram being dropped, 0 when not dropping
+        private int droppedDepth;
+        // the end tag of the definitions is reached: the rest of the document is written after the diagram
+        private boolean rootEnded;
+        // namespace uri by prefix, declared on the definitions
+        private Map<String, String> rootNamespaces = new HashMap<>();
+        private String planeElementId;
+        private String processId;
+        private String indentation;
+
+        private Injection(CharSequence bpmn, MarkupScanner scanner, Reader reader, Writer output) {
+            this.bpmn = bpmn;
+            this.scanner = scanner;
+            this.reader = reader == null ? null : new CopyingReader(reader);
+            this.output = output;
+        }
+
+        /**
+         * @return the document, what is read from it being copied
+         */
+        public Reader getReader() {
+            return reader;
+        }
+
+        /**
+         * Read the rest of the document, then write the diagram and the end of the document.
+         */
+        public void finish(DisplayModel displayModel) {
+            try {
+                if (reader != null) {
+                    char[] buffer = new char[8192];
+                    while (reader.read(buffer) != -1) {
+                        // copied while read
+                    }
+                }
+                scanner.complete();
+                scan();
+                if (rootEnded) {
+                    writeDiagram(displayModel);
+                }
+                output.append(bpmn, copied, bpmn.length());
+                output.flush();
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException("Unable to write the BPMN diagram", e);
+            }
+        }
+
+        private void read(char[] chars, int offset, int length) throws IOException {
+            StringBuilder pending = (StringBuilder) bpmn;
+            pending.append(chars, offset, length);
+            scan();
+            // drop what is written, but the end of the document
+            pending.delete(0, copied);
+            scanner.shift(copied);
+            copied = 0;
+        }
+
+        private void scan() throws IOException {
+            MarkupScanner.Tag tag;
+            while (!rootEnded && (tag = scanner.next()) != null) {
+                if (droppedDepth > 0) {
+                    if (tag.isEnd) {
+                        droppedDepth--;
+                    } else if (!tag.isEmpty) {
+                        droppedDepth++;
+                    }
+                    copied = tag.end;
+                    continue;
+                }
+                if (tag.isEnd) {
+                    if (depth == 1) {
+                        write(whitespaceStart(tag.begin, copied));
+                        rootEnded = true;
+                    }
+                    depth--;
+                    continue;
+                }
+                depth++;
+                if (depth == 1) {
+                    rootNamespaces = tag.namespaces();
+                } else if (depth == 2) {
+                    if (indentation == null) {
+                        indentation = indentationOf(tag.begin);
+                    }
+                    String namespace = tag.namespace(rootNamespaces);
+                    if (BPMNDI_NAMESPACE.equals(namespace) && "BPMNDiagram".equals(tag.localName)) {
+                        // drop the existing diagram and its indentation
+                        write(whitespaceStart(tag.begin, copied));
+                        copied = tag.end;
+                        droppedDepth = tag.isEmpty ? 0 : 1;
+                        depth--;
+                        continue;
+                    }
+                    if (MODEL_NAMESPACE.equals(namespace)) {
+                        if ("collaboration".equals(tag.localName) && planeElementId == null) {
+                            planeElementId = tag.attributes.get("id");
+                        } else if ("process".equals(tag.localName) && processId == null) {
+                            processId = tag.attributes.get("id");
+                        }
+                    }
+                }
+                if (tag.isEmpty) {
+                    depth--;
+                }
+            }
+            // the whitespace before the next tag is kept, it is dropped with a diagram or moved after the new one
+            if (droppedDepth == 0 && !rootEnded) {
+                write(whitespaceStart(scanner.position(), copied));
+            }
+        }
+
+        private void write(int end) throws IOException {
+            if (end > copied) {
+                output.append(bpmn, copied, end);
+                copied = end;
+            }
+        }
+
+        private int whitespaceStart(int position, int lowerBound) {
+            while (position > lowerBound && Character.isWhitespace(bpmn.charAt(position - 1))) {
+                position--;
+            }
+            return position;
+        }
+
+        private String indentationOf(int position) {
+            int lineStart = position;
+            while (lineStart > 0 && (bpmn.charAt(lineStart - 1) == ' ' || bpmn.charAt(lineStart - 1) == '\t')) {
+                lineStart--;
+            }
+            return lineStart > 0 && bpmn.charAt(lineStart - 1) == '\n' ? bpmn.subSequence(lineStart, position).toString() : "  ";
+        }
+
+        // same content as BPMNDiagramRichBuilder
+        private void writeDiagram(DisplayModel displayModel) throws XMLStreamException {
+            DiagramWriter writer = new DiagramWriter(outputFactory.createXMLStreamWriter(output),
+                    indentation == null ? "  " : indentation);
+            String bpmndi = writer.prefix(BPMNDI_NAMESPACE, "bpmndi", rootNamespaces);
+            String dc = writer.prefix(DC_NAMESPACE, "dc", rootNamespaces);
+            String di = writer.prefix(DI_NAMESPACE, "di", rootNamespaces);
+
+            writer.start(1, bpmndi, "BPMNDiagram", BPMNDI_NAMESPACE);
+            writer.declareNamespaces();
+            writer.attribute("id", "BPMNDiagram_1");
+            writer.start(2, bpmndi, "BPMNPlane", BPMNDI_NAMESPACE);
+            writer.attribute("id", "BPMNPlane_1");
+            writer.attribute("bpmnElement", planeElementId != null ? planeElementId : processId);
+
+            for (DisplayFlowNode flowNode : displayModel.flowNodes) {
+                writer.start(3, bpmndi, "BPMNShape", BPMNDI_NAMESPACE);
+                String bpmnElementId = displayModel.bpmnElementId(flowNode);
+                writer.attribute("id", "BPMNShape_" + bpmnElementId);
+                writer.attribute("bpmnElement", bpmnElementId);
+                writer.bounds(4, dc, flowNode.dimension);
+                if (!ShapeType.ACTIVITY.equals(flowNode.type)) {
+                    writer.start(4, bpmndi, "BPMNLabel", BPMNDI_NAMESPACE);
+                    writer.bounds(5, dc, labelDimension(flowNode));
+                    writer.end(4);
+                }
+                writer.end(3);
+            }
+            for (DisplayEdge edge : displayModel.edges) {
+                writer.start(3, bpmndi, "BPMNEdge", BPMNDI_NAMESPACE);
+                String bpmnElementId = displayModel.bpmnElementId(edge);
+                writer.attribute("id", "BPMNEdge_" + bpmnElementId);
+                writer.attribute("bpmnElement", bpmnElementId);
+                for (DisplayPoint wayPoint : edge.wayPoints) {
+                    writer.empty(4, di, "waypoint", DI_NAMESPACE);
+                    writer.attribute("x", wayPoint.x);
+                    writer.attribute("y", wayPoint.y);
+                }
+                writer.end(3);
+            }
+            writer.end(2);
+            writer.end(1);
+            writer.close();
+        }
+
+        /**
+         * Copies the chars read. It is not closed by the parser: the rest of the document is read by
+         * {@link #finish(DisplayModel)}.
+         */
+        private class CopyingReader extends FilterReader {
+
+            CopyingReader(Reader in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                char[] c = new char[1];
+                return read(c, 0, 1) == -1 ? -1 : c[0];
+            }
+
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                int read = super.read(chars, offset, length);
+                if (read > 0) {
+                    Injection.this.read(chars, offset, read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                char[] skipped = new char[(int) Math.min(n, 8192)];
+                int read = read(skipped, 0, skipped.length);
+                return Math.max(read, 0);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void mark(int readAheadLimit) throws IOException {
+                throw new IOException("mark() not supported");
+            }
+
+            @Override
+            public void reset() throws IOException {
+                throw new IOException("reset() not supported");
+            }
+
+            @Override
+            public void close() {
+                // the document is closed by its owner
+            }
+        }
+    }
+
+    private static class DiagramWriter {
+
+        private final XMLStreamWriter writer;
+        private final String indentation;
+        // namespaces not declared on the definitions, declared on the BPMNDiagram element
+        private final Map<String, String> namespacesToDeclare = new LinkedHashMap<>();
+        private boolean hasChildren;
+
+        DiagramWriter(XMLStreamWriter writer, String indentation) {
+            this.writer = writer;
+            this.indentation = indentation;
+        }
+
+        String prefix(String namespace, String preferredPrefix, Map<String, String> declaredNamespaces) {
+            for (Map.Entry<String, String> declared : declaredNamespaces.entrySet()) {
+                if (!declared.getKey().isEmpty() && declared.getValue().equals(namespace)) {
+                    return declared.getKey();
+                }
+            }
+            namespacesToDeclare.put(preferredPrefix, namespace);
+            return preferredPrefix;
+        }
+
+        void declareNamespaces() throws XMLStreamException {
+            for (Map.Entry<String, String> namespace : namespacesToDeclare.entrySet()) {
+                writer.writeNamespace(namespace.getKey(), namespace.getValue());
+            }
+        }
+
+        void start(int level, String prefix, String localName, String namespace) throws XMLStreamException {
+            indent(level);
+            writer.writeStartElement(prefix, localName, namespace);
+            hasChildren = false;
+        }
+
+        void empty(int level, String prefix, String localName, String namespace) throws XMLStreamException {
+            indent(level);
+            writer.writeEmptyElement(prefix, localName, namespace);
+            hasChildren = true;
+        }
+
+        void end(int level) throws XMLStreamException {
+            if (hasChildren) {
+                indent(level);
+            }
+            writer.writeEndElement();
+            hasChildren = true;
+        }
+
+        void attribute(String name, String value) throws XMLStreamException {
+            writer.writeAttribute(name, value);
+        }
+
+        // decimal values, as the JAXB marshaller does
+        void attribute(String name, int value) throws XMLStreamException {
+            writer.writeAttribute(name, String.valueOf((double) value));
+        }
+
+        void bounds(int level, String prefix, DisplayDimension dimension) throws XMLStreamException {
+            empty(level, prefix, "Bounds", DC_NAMESPACE);
+            attribute("x", dimension.x);
+            attribute("y", dimension.y);
+            attribute("width", dimension.width);
+            attribute("height", dimension.height);
+        }
+
+        void close() throws XMLStreamException {
+            writer.flush();
+            writer.close();
+        }
+
+        private void indent(int level) throws XMLStreamException {
+            StringBuilder indent = new StringBuilder("\n");
+            for (int i = 0; i < level; i++) {
+                indent.append(indentation);
+            }
+            writer.writeCharacters(indent.toString());
+        }
+    }
+
+}
@@ -57,9 +57,8 @@ public class BPMNDiagramRichBuilder {
         return bpmnDiagram;
     }
 
-    public void addFlowNode(DisplayFlowNode flowNode) {
+    public void addFlowNode(DisplayFlowNode flowNode, String bpmnElementId) {
         BPMNShape bpmnShape = new BPMNShape();
-        String bpmnElementId = flowNode.bpmnElementId;
         bpmnShape.setId("BPMNShape_" + bpmnElementId);
         putBpmnElement(bpmnShape, bpmnElementId);
 
@@ -69,14 +68,7 @@ public class BPMNDiagramRichBuilder {
         ShapeType shapeType = flowNode.type;
         if (!ShapeType.ACTIVITY.equals(shapeType)) {
             BPMNLabel label = new BPMNLabel();
-            DisplayDimension labelDimension = flowNode.label.dimension;
-
-            // For event adjust positions
-            if(ShapeType.EVENT == shapeType) {
-                labelDimension = new DisplayDimension( flowNode.dimension.x, labelDimension.y, labelDimension.width, labelDimension.height);
-            }
-
-            label.setBounds(bounds(labelDimension));
+            label.setBounds(bounds(labelDimension(flowNode)));
             // TODO add label style?
             bpmnShape.setBPMNLabel(label);
         }
@@ -84,9 +76,18 @@ public class BPMNDiagramRichBuilder {
         bpmnShapes.add(bpmnShape);
     }
 
-    public void addEdge(DisplayEdge edge) {
+    static DisplayDimension labelDimension(DisplayFlowNode flowNode) {
+        DisplayDimension labelDimension = flowNode.label.dimension;
+
+        // For event adjust positions
+        if(ShapeType.EVENT == flowNode.type) {
+            labelDimension = new DisplayDimension( flowNode.dimension.x, labelDimension.y, labelDimension.width, labelDimension.height);
+        }
+        return labelDimension;
+    }
+
+    public void addEdge(DisplayEdge edge, String bpmnElementId) {
         BPMNEdge bpmnEdge = new BPMNEdge();
-        String bpmnElementId = edge.bpmnElementId;
         bpmnEdge.setId("BPMNEdge_" + bpmnElementId);
         putBpmnElement(bpmnEdge, bpmnElementId);
 
@@ -16,35 +16,56 @@
 package io.process.analytics.tools.bpmn.generator.internal;
 
 import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.createParents;
-import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
 
 import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
 
 public class BpmnInOut {
 
     private final XmlParser xmlParser;
+    private final FileInput fileInput;
 
     public static BpmnInOut defaultBpmnInOut() {
         return new BpmnInOut(new XmlParser());
     }
 
     public BpmnInOut(XmlParser xmlParser) {
+        this(xmlParser, FileInput.BUFFERED);
+    }
+
+    public BpmnInOut(XmlParser xmlParser, FileInput fileInput) {
         this.xmlParser = xmlParser;
+        this.fileInput = fileInput;
     }
 
     public TDefinitions readFromBpmn(String xml) {
         return xmlParser.unmarshall(xml);
     }
 
+    public TDefinitions readFromBpmn(Reader xml) {
+        return xmlParser.unmarshall(xml);
+    }
+
+    public TDefinitions readFromBpmn(InputStream xml) {
+        return xmlParser.unmarshall(xml);
+    }
+
     public TDefinitions readFromBpmn(File bpmn) {
-        try {
-            String xml = fileContent(bpmn);
+        return readFromBpmn(bpmn.toPath());
+    }
+
+    public TDefinitions readFromBpmn(Path bpmn) {
+        try (InputStream xml = fileInput.newInputStream(bpmn)) {
             return readFromBpmn(xml);
         } catch (IOException e) {
-            throw new RuntimeException("Error while reading file " + bpmn.getName(), e);
+            throw new RuntimeException("Error while reading file " + bpmn.getFileName(), e);
         }
     }
 
@@ -52,4 +73,12 @@ public class BpmnInOut {
         return xmlParser.marshal(definitions);
     }
 
+    public void writeToBpmn(TDefinitions definitions, OutputStream output) {
+        xmlParser.marshal(definitions, output);
+    }
+
+    public void writeToBpmn(TDefinitions definitions, Writer output) {
+        xmlParser.marshal(definitions, output);
+    }
+
 }
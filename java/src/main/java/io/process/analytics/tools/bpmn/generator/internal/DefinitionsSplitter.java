@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.bind.annotation.XmlIDREF;
+
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.ObjectFactory;
+
+/**
+ * Cut a BPMN document at the process elements, so that the processes can be unmarshalled independently of each other.
+ *
+ * Each process is copied in a document of its own, made of the start tag of the original definitions (keeping the
+ * namespace declarations), the process and the end tag of the definitions. What is left is the skeleton: the original
+ * document where each process is replaced by its start tag, as an empty element. Only the markup is scanned, so the
+ * positions in the document are exact.
+ *
+ * An IDREF is only resolved within the document it is unmarshalled from, so the document is not cut when a reference
+ * of a part is the id of an element of another part. The IDREF attributes and elements are the ones of the generated
+ * model.
+ */
+class DefinitionsSplitter {
+
+    private static final String MODEL_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+
+    // IDREF attribute names by element name, and names of the elements whose content is an IDREF
+    private static final Map<String, Set<String>> IDREF_ATTRIBUTES = new HashMap<>();
+    private static final Set<String> IDREF_ELEMENTS = new HashSet<>();
+
+    static {
+        Set<Class<?>> visited = new HashSet<>();
+        for (Method method : ObjectFactory.class.getMethods()) {
+            XmlElementDecl element = method.getAnnotation(XmlElementDecl.class);
+            if (element == null || !MODEL_NAMESPACE.equals(element.namespace())) {
+                continue;
+            }
+            if (method.isAnnotationPresent(XmlIDREF.class)) {
+                IDREF_ELEMENTS.add(element.name());
+            } else {
+                addReferences(element.name(), method.getParameterTypes()[0], visited);
+            }
+        }
+    }
+
+    // the references of the elements of the type, and of their local elements
+    private static void addReferences(String elementName, Class<?> type, Set<Class<?>> visited) {
+        boolean visitLocalElements = visited.add(type);
+        for (Class<?> c = type; c != null && c.getPackage() == ObjectFactory.class.getPackage(); c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                XmlAttribute attribute = field.getAnnotation(XmlAttribute.class);
+                XmlElement element = field.getAnnotation(XmlElement.class);
+                String localName = element == null || "##default".equals(element.name()) ? field.getName() : element.name();
+                if (field.isAnnotationPresent(XmlIDREF.class)) {
+                    if (attribute != null) {
+                        IDREF_ATTRIBUTES.computeIfAbsent(elementName, name -> new HashSet<>()).add(attribute.name());
+                    } else {
+                        IDREF_ELEMENTS.add(localName);
+                    }
+                } else if (element != null && visitLocalElements) {
+                    Class<?> elementType = elementType(field);
+                    if (elementType.getPackage() == ObjectFactory.class.getPackage()) {
+                        addReferences(localName, elementType, visited);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Class<?> elementType(Field field) {
+        Type type = field.getGenericType();
+        if (type instanceof ParameterizedType) {
+            Type item = ((ParameterizedType) type).getActualTypeArguments()[0];
+            return item instanceof Class ? (Class<?>) item : Object.class;
+        }
+        return field.getType();
+    }
+
+    /**
+     * @return null when the document has no process to cut, declares a document type whose entities the processes
+     * may use, or has references between its parts
+     */
+    static Split split(String xml) {
+        MarkupScanner scanner = new MarkupScanner(xml);
+        MarkupScanner.Tag root = scanner.next();
+        if (root == null || root.isEnd || root.isEmpty || xml.lastIndexOf("<!DOCTYPE", root.begin) != -1) {
+            return null;
+        }
+        Map<String, String> rootNamespaces = root.namespaces();
+        String rootStart = xml.substring(root.begin, root.end);
+        String rootEnd = "</" + (root.prefix.isEmpty() ? "" : root.prefix + ":") + root.localName + ">";
+
+        StringBuilder skeleton = new StringBuilder(xml.length());
+        List<String> processes = new ArrayList<>();
+        References references = new References();
+        int copied = 0;
+        MarkupScanner.Tag tag;
+        // children of the definitions, up to its end tag
+        while ((tag = scanner.next()) != null && !tag.isEnd) {
+            boolean isProcess = "process".equals(tag.localName) && MODEL_NAMESPACE.equals(tag.namespace(rootNamespaces));
+            // the skeleton is the part 0
+            int part = isProcess ? processes.size() + 1 : 0;
+            int end = references.scanElement(xml, scanner, tag, part);
+            if (isProcess) {
+                processes.add(rootStart + xml.substring(tag.begin, end) + rootEnd);
+                skeleton.append(xml, copied, tag.begin);
+                if (tag.isEmpty) {
+                    skeleton.append(xml, tag.begin, tag.end);
+                } else {
+                    skeleton.append(xml, tag.begin, tag.end - 1).append("/>");
+                }
+                copied = end;
+            }
+        }
+        if (processes.isEmpty() || references.crossParts()) {
+            return null;
+        }
+        skeleton.append(xml, copied, xml.length());
+        return new Split(skeleton.toString(), processes);
+    }
+
+    // ids and references of the elements, by part of the document
+    private static class References {
+
+        private final Map<String, Integer> partOfIds = new HashMap<>();
+        private final List<String> references = new ArrayList<>();
+        private final List<Integer> partOfReferences = new ArrayList<>();
+
+        // scan up to the end of the element whose start tag has just been returned, return the position after it
+        int scanElement(String xml, MarkupScanner scanner, MarkupScanner.Tag start, int part) {
+            add(start, part);
+            if (start.isEmpty) {
+                return start.end;
+            }
+            int depth = 1;
+            MarkupScanner.Tag previous = start;
+            while (depth > 0) {
+                MarkupScanner.Tag tag = scanner.next();
+                if (tag == null) {
+                    throw new IllegalArgumentException("Unexpected end of the xml document");
+                }
+                if (tag.isEnd) {
+                    depth--;
+                    if (!previous.isEnd && !previous.isEmpty && IDREF_ELEMENTS.contains(previous.localName)) {
+                        add(xml.substring(previous.end, tag.begin).trim(), part);
+                    }
+                } else {
+                    add(tag, part);
+                    if (!tag.isEmpty) {
+                        depth++;
+                    }
+                }
+                previous = tag;
+            }
+            return previous.end;
+        }
+
+        private void add(MarkupScanner.Tag tag, int part) {
+            String id = tag.attributes.get("id");
+            if (id != null) {
+                partOfIds.put(id, part);
+            }
+            for (String attribute : IDREF_ATTRIBUTES.getOrDefault(tag.localName, Collections.emptySet())) {
+                String reference = tag.attributes.get(attribute);
+                if (reference != null) {
+                    add(reference, part);
+                }
+            }
+        }
+
+        private void add(String reference, int part) {
+            references.add(reference);
+            partOfReferences.add(part);
+        }
+
+        // a reference of a part is the id of an element of another part
+        boolean crossParts() {
+            for (int i = 0; i < references.size(); i++) {
+                Integer part = partOfIds.get(references.get(i));
+                if (part != null && !part.equals(partOfReferences.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    static class Split {
+
+        // the definitions with empty processes, in document order
+        final String skeleton;
+        // one definitions document per process, in document order
+        final List<String> processes;
+
+        Split(String skeleton, List<String> processes) {
+            this.skeleton = skeleton;
+            this.processes = processes;
+        }
+    }
+
+}
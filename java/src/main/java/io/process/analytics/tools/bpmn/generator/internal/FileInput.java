@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * How the input files are opened.
+ */
+public enum FileInput {
+
+    /** The content is copied chunk by chunk on the heap. */
+    BUFFERED {
+        @Override
+        public InputStream newInputStream(Path path) throws IOException {
+            return new BufferedInputStream(Files.newInputStream(path));
+        }
+
+        @Override
+        public Reader newReader(Path path, Charset charset) throws IOException {
+            return Files.newBufferedReader(path, charset);
+        }
+    },
+    /**
+     * The file is mapped in memory and the parsers read it in place, they start without waiting for the file to be
+     * copied. Meant for files of hundreds of megabytes.
+     */
+    MAPPED {
+        @Override
+        public InputStream newInputStream(Path path) throws IOException {
+            return MappedFile.inputStream(path);
+        }
+
+        @Override
+        public Reader newReader(Path path, Charset charset) throws IOException {
+            return MappedFile.reader(path, charset);
+        }
+    };
+
+    public abstract InputStream newInputStream(Path path) throws IOException;
+
+    public abstract Reader newReader(Path path, Charset charset) throws IOException;
+
+}
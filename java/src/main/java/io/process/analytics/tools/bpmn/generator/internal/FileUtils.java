@@ -15,20 +15,107 @@
  */
 package io.process.analytics.tools.bpmn.generator.internal;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FileUtils {
 
+    private static final int XML_DECLARATION_MAX_LENGTH = 200;
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+    private static final int UTF8_BYTE_ORDER_MARK_LENGTH = 3;
+    private static final Pattern XML_ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']");
+
     // when switching to JDK11+, use Files#readString instead
     public static String fileContent(File file) throws IOException {
         List<String> strings = Files.readAllLines(file.toPath());
+        // the UTF-8 decoder keeps the byte order mark as a char
+        if (!strings.isEmpty() && strings.get(0).startsWith(BYTE_ORDER_MARK)) {
+            strings.set(0, strings.get(0).substring(BYTE_ORDER_MARK.length()));
+        }
         // we do not care of having a OS related eol as the xml reader can handle whatever eol, so use an hardcoded eol
         return String.join("\n", strings);
     }
 
+    // when switching to JDK9+, use InputStream#readAllBytes instead
+    public static byte[] content(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String content(Reader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+
+    /**
+     * Encoding of the xml document starting at the current position of the input, see {@link #xmlEncoding(byte[])}.
+     * Only the start of the document is read, the input is then positioned after the UTF-8 byte order mark if any: the
+     * UTF-8 decoder keeps it as a char, which is not allowed before the xml declaration.
+     */
+    public static Charset xmlEncoding(BufferedInputStream input) throws IOException {
+        input.mark(XML_DECLARATION_MAX_LENGTH);
+        byte[] start = new byte[XML_DECLARATION_MAX_LENGTH];
+        int length = 0;
+        int read;
+        while (length < start.length && (read = input.read(start, length, start.length - length)) != -1) {
+            length += read;
+        }
+        input.reset();
+        byte[] declaration = length == start.length ? start : Arrays.copyOf(start, length);
+        if (hasUtf8ByteOrderMark(declaration)) {
+            input.skip(UTF8_BYTE_ORDER_MARK_LENGTH);
+        }
+        return xmlEncoding(declaration);
+    }
+
+    /**
+     * Encoding of the xml document: the one of the byte order mark if any, otherwise the one of the xml declaration,
+     * UTF-8 by default.
+     */
+    public static Charset xmlEncoding(byte[] xml) {
+        if (hasUtf8ByteOrderMark(xml)) {
+            return StandardCharsets.UTF_8;
+        }
+        if (xml.length >= 2 && ((xml[0] == (byte) 0xFE && xml[1] == (byte) 0xFF) || (xml[0] == (byte) 0xFF && xml[1] == (byte) 0xFE))) {
+            return StandardCharsets.UTF_16;
+        }
+        // the declaration is ASCII in all the encodings having no byte order mark
+        String start = new String(xml, 0, Math.min(xml.length, XML_DECLARATION_MAX_LENGTH), StandardCharsets.ISO_8859_1);
+        int declarationEnd = start.indexOf("?>");
+        if (start.contains("<?xml") && declarationEnd > 0) {
+            Matcher encoding = XML_ENCODING.matcher(start.substring(0, declarationEnd));
+            if (encoding.find()) {
+                return Charset.forName(encoding.group(1));
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static boolean hasUtf8ByteOrderMark(byte[] xml) {
+        return xml.length >= UTF8_BYTE_ORDER_MARK_LENGTH && xml[0] == (byte) 0xEF && xml[1] == (byte) 0xBB && xml[2] == (byte) 0xBF;
+    }
+
     public static void createParents(File file) {
         // TODO throw IOException if failure like commons-io
         file.getParentFile().mkdirs();
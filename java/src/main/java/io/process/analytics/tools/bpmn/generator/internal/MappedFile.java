@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File read through {@link FileChannel#map}: the bytes are read in place from the page cache, they are never copied as
+ * a whole on the heap.
+ *
+ * A single mapping cannot exceed 2 GB, so the file is mapped window by window, the next window starting where the
+ * current one has been consumed.
+ */
+class MappedFile implements Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    // longer than any encoded char, so a window always lets the decoder progress
+    private static final int MIN_WINDOW_SIZE = 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    MappedFile(Path path, int windowSize) throws IOException {
+        if (windowSize < MIN_WINDOW_SIZE) {
+            throw new IllegalArgumentException("The window size must be at least " + MIN_WINDOW_SIZE + ", was " + windowSize);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    static InputStream inputStream(Path path) throws IOException {
+        return new MappedInputStream(new MappedFile(path, DEFAULT_WINDOW_SIZE));
+    }
+
+    /**
+     * The content is decoded incrementally, malformed input is reported as by {@link java.nio.file.Files#newBufferedReader}.
+     */
+    static Reader reader(Path path, Charset charset) throws IOException {
+        return new MappedReader(new MappedFile(path, DEFAULT_WINDOW_SIZE), charset);
+    }
+
+    /**
+     * @return the bytes of the current window not read yet
+     */
+    ByteBuffer window() {
+        return window;
+    }
+
+    boolean isLastWindow() {
+        return windowStart + window.limit() == size;
+    }
+
+    /**
+     * Map the next window, starting at the first byte of the current one not read yet.
+     *
+     * @return false at the end of the file
+     */
+    boolean next() throws IOException {
+        long position = windowStart + window.position();
+        if (position >= size) {
+            return false;
+        }
+        map(position);
+        return true;
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mapping itself is released when the buffer is garbage collected
+        channel.close();
+    }
+
+    static class MappedInputStream extends InputStream {
+
+        private final MappedFile file;
+
+        MappedInputStream(MappedFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!hasRemaining()) {
+                return -1;
+            }
+            return file.window().get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!hasRemaining()) {
+                return -1;
+            }
+            ByteBuffer window = file.window();
+            int read = Math.min(len, window.remaining());
+            window.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return file.window().remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        private boolean hasRemaining() throws IOException {
+            while (!file.window().hasRemaining()) {
+                if (!file.next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static class MappedReader extends Reader {
+
+        private final MappedFile file;
+        private final CharsetDecoder decoder;
+        // decoded chars not read yet
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private boolean endOfInput;
+
+        MappedReader(MappedFile file, Charset charset) {
+            this.file = file;
+            this.decoder = charset.newDecoder();
+            chars.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!chars.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int read = Math.min(len, chars.remaining());
+            chars.get(cbuf, off, read);
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        // decode the next chars, false at the end of the file
+        private boolean fill() throws IOException {
+            chars.clear();
+            try {
+                while (chars.position() == 0 && !endOfInput) {
+                    boolean lastWindow = file.isLastWindow();
+                    CoderResult result = decoder.decode(file.window(), chars, lastWindow);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    if (result.isUnderflow()) {
+                        if (lastWindow) {
+                            decoder.flush(chars);
+                            endOfInput = true;
+                        } else {
+                            // the bytes of a char split between two windows are read again from the next one
+                            file.next();
+                        }
+                    }
+                }
+            } finally {
+                chars.flip();
+            }
+            return chars.hasRemaining();
+        }
+    }
+
+}
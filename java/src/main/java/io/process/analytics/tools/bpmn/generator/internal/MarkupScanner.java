@@ -0,0 +1,268 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Find the start and end tags of a well-formed xml document, skipping text, comments, CDATA sections, processing
+ * instructions and the document type declaration.
+ *
+ * The document may be scanned while it is read: chars are appended to the scanned buffer, and a markup is only returned
+ * once it is complete. The caller may then drop the start of the buffer, see {@link #shift(int)}.
+ */
+class MarkupScanner {
+
+    // longest markup opening to read before knowing the kind of markup
+    private static final int LONGEST_OPENING = "<![CDATA[".length();
+
+    private final CharSequence xml;
+    // false while chars may still be appended to the document
+    private boolean complete;
+    private int position;
+
+    MarkupScanner(String xml) {
+        this.xml = xml;
+        this.complete = true;
+    }
+
+    /**
+     * @param xml buffer of a document being read, the chars read being appended to it
+     */
+    MarkupScanner(StringBuilder xml) {
+        this.xml = xml;
+    }
+
+    /**
+     * The whole document is in the buffer, no chars will be appended anymore.
+     */
+    void complete() {
+        complete = true;
+    }
+
+    /**
+     * @return the position after the last markup scanned
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * The {@code count} first chars of the buffer were removed.
+     */
+    void shift(int count) {
+        position -= count;
+    }
+
+    /**
+     * @return the next tag, {@code null} at the end of the document or, when the document is not complete, when the
+     * next markup is not fully read yet
+     */
+    Tag next() {
+        while (true) {
+            int begin = indexOf("<", position);
+            if (begin == -1) {
+                return null;
+            }
+            if (!complete && xml.length() - begin < LONGEST_OPENING) {
+                return null;
+            }
+            int end;
+            if (startsWith("<!--", begin)) {
+                end = after("-->", begin);
+            } else if (startsWith("<![CDATA[", begin)) {
+                end = after("]]>", begin);
+            } else if (startsWith("<?", begin)) {
+                end = after("?>", begin);
+            } else if (startsWith("<!", begin)) {
+                end = afterDeclaration(begin);
+            } else {
+                end = afterTag(begin);
+                if (end != -1) {
+                    return tag(begin);
+                }
+                if (complete) {
+                    throw new IllegalArgumentException("Unclosed tag at position " + begin);
+                }
+            }
+            if (end == -1) {
+                if (complete) {
+                    throw new IllegalArgumentException("Unclosed markup at position " + begin);
+                }
+                return null;
+            }
+            position = end;
+        }
+    }
+
+    private int after(String delimiter, int from) {
+        int index = indexOf(delimiter, from);
+        return index == -1 ? -1 : index + delimiter.length();
+    }
+
+    // <!DOCTYPE ...> may contain an internal subset between brackets
+    private int afterDeclaration(int begin) {
+        int brackets = 0;
+        for (int i = begin + 2; i < xml.length(); i++) {
+            char c = xml.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = indexOf(String.valueOf(c), i + 1);
+                if (i == -1) {
+                    break;
+                }
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // attribute values may contain '>'
+    private int afterTag(int begin) {
+        char quote = 0;
+        for (int i = begin + 1; i < xml.length(); i++) {
+            char c = xml.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private Tag tag(int begin) {
+        Tag tag = new Tag();
+        tag.begin = begin;
+        int i = begin + 1;
+        if (xml.charAt(i) == '/') {
+            tag.isEnd = true;
+            i++;
+        }
+        int nameStart = i;
+        while (i < xml.length() && !isNameEnd(xml.charAt(i))) {
+            i++;
+        }
+        setName(tag, substring(nameStart, i));
+        while (true) {
+            if (i >= xml.length()) {
+                throw new IllegalArgumentException("Unclosed tag at position " + begin);
+            }
+            char c = xml.charAt(i);
+            if (c == '>') {
+                break;
+            } else if (c == '/' && startsWith("/>", i)) {
+                tag.isEmpty = true;
+                i++;
+                break;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                i = attribute(tag, i);
+            }
+        }
+        tag.end = i + 1;
+        position = tag.end;
+        return tag;
+    }
+
+    private int attribute(Tag tag, int nameStart) {
+        int equals = indexOf("=", nameStart);
+        if (equals == -1) {
+            throw new IllegalArgumentException("Invalid attribute at position " + nameStart);
+        }
+        String name = substring(nameStart, equals).trim();
+        int quote = equals + 1;
+        while (Character.isWhitespace(xml.charAt(quote))) {
+            quote++;
+        }
+        int valueEnd = indexOf(String.valueOf(xml.charAt(quote)), quote + 1);
+        if (valueEnd == -1) {
+            throw new IllegalArgumentException("Unclosed attribute value at position " + quote);
+        }
+        // values used here (ids and namespace uris) are not expected to contain entity references
+        tag.attributes.put(name, substring(quote + 1, valueEnd));
+        return valueEnd + 1;
+    }
+
+    private int indexOf(String searched, int from) {
+        return xml instanceof String ? ((String) xml).indexOf(searched, from) : ((StringBuilder) xml).indexOf(searched, from);
+    }
+
+    private boolean startsWith(String prefix, int at) {
+        if (at + prefix.length() > xml.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (xml.charAt(at + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String substring(int begin, int end) {
+        return xml.subSequence(begin, end).toString();
+    }
+
+    private static boolean isNameEnd(char c) {
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+
+    private static void setName(Tag tag, String qualifiedName) {
+        int colon = qualifiedName.indexOf(':');
+        tag.prefix = colon == -1 ? "" : qualifiedName.substring(0, colon);
+        tag.localName = qualifiedName.substring(colon + 1);
+    }
+
+    static class Tag {
+
+        int begin;
+        int end;
+        boolean isEnd;
+        boolean isEmpty;
+        String prefix;
+        String localName;
+        final Map<String, String> attributes = new HashMap<>();
+
+        Map<String, String> namespaces() {
+            Map<String, String> namespaces = new HashMap<>();
+            attributes.forEach((name, value) -> {
+                if (name.equals("xmlns")) {
+                    namespaces.put("", value);
+                } else if (name.startsWith("xmlns:")) {
+                    namespaces.put(name.substring("xmlns:".length()), value);
+                }
+            });
+            return namespaces;
+        }
+
+        String namespace(Map<String, String> rootNamespaces) {
+            String namespace = namespaces().get(prefix);
+            return namespace != null ? namespace : rootNamespaces.get(prefix);
+        }
+    }
+
+}
@@ -15,20 +15,80 @@
  */
 package io.process.analytics.tools.bpmn.generator.internal;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.*;
 import javax.xml.transform.stream.StreamSource;
 
 import io.process.analytics.tools.bpmn.generator.internal.generated.model.ObjectFactory;
 import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TProcess;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TRootElement;
 
 public class XmlParser {
 
+    public enum Output {
+        /** indented xml */
+        FORMATTED,
+        /** no whitespace between the elements */
+        COMPACT
+    }
+
+    public enum Input {
+        /** the whole document on the calling thread */
+        SEQUENTIAL,
+        /**
+         * the document is cut at the process elements, and the processes are unmarshalled in parallel on the common
+         * fork join pool. Meant for documents with many processes, the ids being unique in the document as required by
+         * BPMN.
+         */
+        PARALLEL
+    }
+
     private static final JAXBContext context = initContext();
 
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final BpmnNamespacePrefixMapper namespacePrefixMapper = new BpmnNamespacePrefixMapper();
+
+    // unmarshallers are not thread safe, they are created once per thread and reused
+    // marshallers are not reused: once wildcard content (extension elements) has been marshalled, the serializer of the
+    // JAXB RI keeps its element names and writes them instead of the ones of the BPMN namespace on the next marshal
+    private static final ThreadLocal<Unmarshaller> unmarshaller = ThreadLocal.withInitial(XmlParser::createUnmarshaller);
+    private final Output output;
+    private final Input input;
+
+    public XmlParser() {
+        this(Output.FORMATTED);
+    }
+
+    public XmlParser(Output output) {
+        this(output, Input.SEQUENTIAL);
+    }
+
+    public XmlParser(Output output, Input input) {
+        this.output = output;
+        this.input = input;
+    }
+
     private static JAXBContext initContext() {
         try {
             return JAXBContext.newInstance(TDefinitions.class);
@@ -38,42 +98,153 @@ public class XmlParser {
     }
 
     public String marshal(TDefinitions definitions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        marshal(definitions, bytes);
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the definitions to the stream, UTF-8 encoded. The stream is flushed but not closed.
+     */
+    public void marshal(TDefinitions definitions, OutputStream outputStream) {
+        // the UTF-8 stream output of the JAXB RI does not order the attributes and line breaks as the Writer one does
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        marshal(definitions, writer);
+    }
+
+    /**
+     * Write the definitions to the writer. The writer is flushed but not closed.
+     */
+    public void marshal(TDefinitions definitions, Writer writer) {
         try {
             JAXBElement<TDefinitions> root = new ObjectFactory().createDefinitions(definitions);
-            StringWriter stringWriter = new StringWriter();
             // 1) 见 createMarshaller() 隐藏报文头 2) 自定义生成
-            stringWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
-            createMarshaller().marshal(root, stringWriter);
-            return stringWriter.toString();
-        } catch (JAXBException e) {
+            writer.write(XML_DECLARATION);
+            if (output == Output.FORMATTED) {
+                writer.write('\n');
+            }
+            createMarshaller(output == Output.FORMATTED).marshal(root, writer);
+            writer.flush();
+        } catch (JAXBException | IOException e) {
             throw new RuntimeException("Unable to marshal", e);
         }
     }
 
-    private Marshaller createMarshaller() throws JAXBException {
-        Marshaller marshaller = context.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+    private static Marshaller createMarshaller(boolean formattedOutput) {
+        try {
+            Marshaller marshaller = context.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+            try {
+                marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", namespacePrefixMapper);
+                marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+                // 1) 隐去报文头的生成, Marshaller.JAXB_FRAGMENT默认为false
+                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            } catch(PropertyException e) {
+                // In case another JAXB implementation is used
+                // do not stop processing, namespace prefixes will be generated automatically in that case
+                e.printStackTrace();
+            }
+            return marshaller;
+        } catch (JAXBException e) {
+            throw new RuntimeException("Unable to create the Marshaller", e);
+        }
+    }
+
+    private static Unmarshaller createUnmarshaller() {
         try {
-            marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new BpmnNamespacePrefixMapper());
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-            // 1) 隐去报文头的生成, Marshaller.JAXB_FRAGMENT默认为false
-            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
-        } catch(PropertyException e) {
-            // In case another JAXB implementation is used
-            // do not stop processing, namespace prefixes will be generated automatically in that case
-            e.printStackTrace();
+            return context.createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new RuntimeException("Unable to create the Unmarshaller", e);
         }
-        return marshaller;
     }
 
     public TDefinitions unmarshall(String xml) {
+        if (input == Input.PARALLEL) {
+            return unmarshallByProcess(xml, ForkJoinPool.commonPool());
+        }
+        return unmarshall(new StreamSource(new StringReader(xml)));
+    }
+
+    public TDefinitions unmarshall(Reader xml) {
+        if (input == Input.PARALLEL) {
+            try {
+                return unmarshallByProcess(FileUtils.content(xml), ForkJoinPool.commonPool());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read the xml content", e);
+            }
+        }
+        return unmarshall(new StreamSource(xml));
+    }
+
+    /**
+     * The encoding is the one declared by the document.
+     */
+    public TDefinitions unmarshall(InputStream xml) {
+        if (input == Input.PARALLEL) {
+            try {
+                BufferedInputStream bufferedXml = new BufferedInputStream(xml);
+                Charset encoding = FileUtils.xmlEncoding(bufferedXml);
+                return unmarshallByProcess(FileUtils.content(new InputStreamReader(bufferedXml, encoding)), ForkJoinPool.commonPool());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read the xml content", e);
+            }
+        }
+        return unmarshall(new StreamSource(xml));
+    }
+
+    private static TDefinitions unmarshall(StreamSource source) {
         try {
-            StreamSource source = new StreamSource(new StringReader(xml));
-            JAXBElement<TDefinitions> root = context.createUnmarshaller().unmarshal(source, TDefinitions.class);
+            JAXBElement<TDefinitions> root = unmarshaller.get().unmarshal(source, TDefinitions.class);
             return root.getValue();
         } catch (JAXBException e) {
             throw new RuntimeException("Unable to marshal", e);
         }
     }
 
+    /**
+     * Unmarshal the skeleton of the document and each of its processes in parallel, then put the processes back in
+     * place of the empty ones of the skeleton. The result is the same as when unmarshalling the whole document, the
+     * whole document is unmarshalled when {@link DefinitionsSplitter} does not cut it.
+     */
+    // visible for testing
+    static TDefinitions unmarshallByProcess(String xml, ExecutorService executor) {
+        DefinitionsSplitter.Split split = DefinitionsSplitter.split(xml);
+        if (split == null || split.processes.size() < 2) {
+            return unmarshall(new StreamSource(new StringReader(xml)));
+        }
+        List<Callable<TDefinitions>> tasks = new ArrayList<>(split.processes.size() + 1);
+        tasks.add(() -> unmarshall(new StreamSource(new StringReader(split.skeleton))));
+        for (String process : split.processes) {
+            tasks.add(() -> unmarshall(new StreamSource(new StringReader(process))));
+        }
+        try {
+            List<Future<TDefinitions>> results = executor.invokeAll(tasks);
+            TDefinitions definitions = results.get(0).get();
+            List<JAXBElement<? extends TRootElement>> rootElements = definitions.getRootElement();
+            int process = 1;
+            for (int i = 0; i < rootElements.size(); i++) {
+                if (rootElements.get(i).getValue() instanceof TProcess) {
+                    rootElements.set(i, results.get(process++).get().getRootElement().get(0));
+                }
+            }
+            return definitions;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // the fork join pool may throw a copy of the error made in the calling thread, with the error as cause
+            if (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to unmarshal the processes", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while unmarshalling the processes", e);
+        }
+    }
+
 }
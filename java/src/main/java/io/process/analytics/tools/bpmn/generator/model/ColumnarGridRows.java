@@ -0,0 +1,264 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import java.util.Arrays;
+
+/**
+ * Rows of a {@link Grid} stored in primitive arrays only: no object is allocated per position, and the arrays of the
+ * cells of a row are reused when the row is deleted.
+ *
+ * Each row has a stable id. The row id of each slot, the row id at each index and the index of each row id are kept in
+ * int arrays, so the y coordinate of a slot is read in O(1). The cells of a row are kept in 2 arrays sorted by column:
+ * the columns and the slots. Adding or removing a row shifts the rows below it, it is O(number of rows) but never
+ * touches the cells.
+ */
+final class ColumnarGridRows implements GridRows {
+
+    private static final int INITIAL_ROW_WIDTH = 4;
+
+    // row id of each slot
+    private int[] rowOfSlot = new int[16];
+
+    // row ids by index, and index of each row id
+    private int[] rowAt = new int[16];
+    private int[] indexOfRow = new int[16];
+    private int rowCount;
+
+    // cells of each row id, sorted by column
+    private int[][] cellColumns = new int[16][];
+    private int[][] cellSlots = new int[16][];
+    private int[] cellCounts = new int[16];
+
+    // ids of the deleted rows, reused by the next rows
+    private int[] freeRows = new int[16];
+    private int freeRowCount;
+    private int rowIdCount;
+
+    @Override
+    public void growSlots(int capacity) {
+        rowOfSlot = Arrays.copyOf(rowOfSlot, capacity);
+    }
+
+    @Override
+    public int rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int lastFilledRow() {
+        int y = rowCount - 1;
+        while (y >= 0 && cellCounts[rowAt[y]] == 0) {
+            y--;
+        }
+        return y;
+    }
+
+    @Override
+    public int slotAt(int x, int y) {
+        if (y < 0 || y >= rowCount) {
+            return NONE;
+        }
+        int row = rowAt[y];
+        int cell = Arrays.binarySearch(cellColumns[row], 0, cellCounts[row], x);
+        return cell < 0 ? NONE : cellSlots[row][cell];
+    }
+
+    @Override
+    public void put(int slot, int x, int y) {
+        while (rowCount <= y) {
+            insertRow(rowCount);
+        }
+        int row = rowAt[y];
+        int count = cellCounts[row];
+        int cell = -Arrays.binarySearch(cellColumns[row], 0, count, x) - 1;
+        if (count == cellColumns[row].length) {
+            cellColumns[row] = Arrays.copyOf(cellColumns[row], count * 2);
+            cellSlots[row] = Arrays.copyOf(cellSlots[row], count * 2);
+        }
+        System.arraycopy(cellColumns[row], cell, cellColumns[row], cell + 1, count - cell);
+        System.arraycopy(cellSlots[row], cell, cellSlots[row], cell + 1, count - cell);
+        cellColumns[row][cell] = x;
+        cellSlots[row][cell] = slot;
+        cellCounts[row]++;
+        rowOfSlot[slot] = row;
+    }
+
+    @Override
+    public void remove(int slot, int x) {
+        int row = rowOfSlot[slot];
+        int count = cellCounts[row];
+        int cell = Arrays.binarySearch(cellColumns[row], 0, count, x);
+        System.arraycopy(cellColumns[row], cell + 1, cellColumns[row], cell, count - cell - 1);
+        System.arraycopy(cellSlots[row], cell + 1, cellSlots[row], cell, count - cell - 1);
+        cellCounts[row]--;
+    }
+
+    @Override
+    public int rowOf(int slot) {
+        return indexOfRow[rowOfSlot[slot]];
+    }
+
+    @Override
+    public int[] columns(int y) {
+        if (y < 0 || y >= rowCount) {
+            return new int[0];
+        }
+        int row = rowAt[y];
+        return Arrays.copyOf(cellColumns[row], cellCounts[row]);
+    }
+
+    @Override
+    public int[] slots(int y) {
+        if (y < 0 || y >= rowCount) {
+            return new int[0];
+        }
+        int row = rowAt[y];
+        return Arrays.copyOf(cellSlots[row], cellCounts[row]);
+    }
+
+    @Override
+    public int columnAfter(int y, int x) {
+        if (y < 0 || y >= rowCount) {
+            return NONE;
+        }
+        int row = rowAt[y];
+        int cell = Arrays.binarySearch(cellColumns[row], 0, cellCounts[row], x);
+        int next = cell < 0 ? -cell - 1 : cell + 1;
+        return next < cellCounts[row] ? cellColumns[row][next] : NONE;
+    }
+
+    @Override
+    public void insertRow(int y) {
+        if (rowCount == rowAt.length) {
+            rowAt = Arrays.copyOf(rowAt, rowCount * 2);
+        }
+        int row = newRow();
+        System.arraycopy(rowAt, y, rowAt, y + 1, rowCount - y);
+        rowAt[y] = row;
+        rowCount++;
+        updateIndexes(y);
+    }
+
+    @Override
+    public boolean isEmpty(int y) {
+        return cellCounts[rowAt[y]] == 0;
+    }
+
+    @Override
+    public void deleteEmptyRow(int y) {
+        deleteRows(y, 1);
+    }
+
+    @Override
+    public int[] mergeRows(int firstRow, int lastRow) {
+        int target = rowAt[lastRow];
+        int movedCount = 0;
+        for (int y = firstRow; y < lastRow; y++) {
+            movedCount += cellCounts[rowAt[y]];
+        }
+        // column in the high bits, slot in the low bits: sorted by column
+        long[] moved = new long[movedCount];
+        int i = 0;
+        for (int y = firstRow; y < lastRow; y++) {
+            int row = rowAt[y];
+            for (int cell = 0; cell < cellCounts[row]; cell++) {
+                moved[i++] = (long) cellColumns[row][cell] << 32 | cellSlots[row][cell];
+            }
+        }
+        Arrays.sort(moved);
+        for (i = 0; i < movedCount; i++) {
+            int x = (int) (moved[i] >>> 32);
+            if ((i > 0 && x == (int) (moved[i - 1] >>> 32))
+                    || Arrays.binarySearch(cellColumns[target], 0, cellCounts[target], x) >= 0) {
+                throw new IllegalArgumentException("Cannot merge rows " + firstRow + " to " + lastRow + ", column " + x + " is filled twice");
+            }
+        }
+
+        int[] movedSlots = new int[movedCount];
+        int count = cellCounts[target] + movedCount;
+        int[] columns = new int[Math.max(count, INITIAL_ROW_WIDTH)];
+        int[] slots = new int[columns.length];
+        int targetCell = 0;
+        int cell = 0;
+        for (i = 0; i < movedCount; i++) {
+            int x = (int) (moved[i] >>> 32);
+            int slot = (int) moved[i];
+            while (targetCell < cellCounts[target] && cellColumns[target][targetCell] < x) {
+                columns[cell] = cellColumns[target][targetCell];
+                slots[cell++] = cellSlots[target][targetCell++];
+            }
+            columns[cell] = x;
+            slots[cell++] = slot;
+            movedSlots[i] = slot;
+            rowOfSlot[slot] = target;
+        }
+        System.arraycopy(cellColumns[target], targetCell, columns, cell, cellCounts[target] - targetCell);
+        System.arraycopy(cellSlots[target], targetCell, slots, cell, cellCounts[target] - targetCell);
+        cellColumns[target] = columns;
+        cellSlots[target] = slots;
+        cellCounts[target] = count;
+
+        for (int y = firstRow; y < lastRow; y++) {
+            cellCounts[rowAt[y]] = 0;
+        }
+        deleteRows(firstRow, lastRow - firstRow);
+        return movedSlots;
+    }
+
+    private void deleteRows(int y, int deletedCount) {
+        for (int index = y; index < y + deletedCount; index++) {
+            freeRow(rowAt[index]);
+        }
+        System.arraycopy(rowAt, y + deletedCount, rowAt, y, rowCount - y - deletedCount);
+        rowCount -= deletedCount;
+        updateIndexes(y);
+    }
+
+    private void updateIndexes(int fromIndex) {
+        for (int index = fromIndex; index < rowCount; index++) {
+            indexOfRow[rowAt[index]] = index;
+        }
+    }
+
+    private int newRow() {
+        int row;
+        if (freeRowCount > 0) {
+            row = freeRows[--freeRowCount];
+        } else {
+            if (rowIdCount == indexOfRow.length) {
+                int capacity = rowIdCount * 2;
+                indexOfRow = Arrays.copyOf(indexOfRow, capacity);
+                cellColumns = Arrays.copyOf(cellColumns, capacity);
+                cellSlots = Arrays.copyOf(cellSlots, capacity);
+                cellCounts = Arrays.copyOf(cellCounts, capacity);
+            }
+            row = rowIdCount++;
+            cellColumns[row] = new int[INITIAL_ROW_WIDTH];
+            cellSlots[row] = new int[INITIAL_ROW_WIDTH];
+        }
+        cellCounts[row] = 0;
+        return row;
+    }
+
+    private void freeRow(int row) {
+        if (freeRowCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRowCount * 2);
+        }
+        freeRows[freeRowCount++] = row;
+    }
+
+}
@@ -1,41 +1,344 @@
 package io.process.analytics.tools.bpmn.generator.model;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Singular;
+import lombok.ToString;
 
+/**
+ * Shapes and edges of a diagram.
+ *
+ * Ids of shapes and of edge ends are interned in a {@link SymbolTable}, which can be shared by the diagrams computed
+ * from an other one, including diagrams built concurrently. An adjacency index by handle is built once when the diagram
+ * is created: queries on edges of a shape are O(degree) and return immutable lists shared between calls.
+ */
 @Data
-@Builder
 public class Diagram {
 
-    @Singular
-    private List<Shape> shapes;
-    @Singular
-    private Set<Edge> edges;
+    private final List<Shape> shapes;
+    private final Set<Edge> edges;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final SymbolTable symbols;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Index index;
 
+    /**
+     * @param symbols table to intern ids into, a new one is created when {@code null}
+     */
+    @Builder
+    public Diagram(@Singular List<Shape> shapes, @Singular Set<Edge> edges, SymbolTable symbols) {
+        this.shapes = shapes;
+        this.edges = edges;
+        this.symbols = symbols == null ? new SymbolTable() : symbols;
+        this.index = new Index(shapes, edges, this.symbols);
+    }
 
     public List<Edge> getIncomingEdges(String shapeId) {
-        return edges.stream().filter(e -> e.getTo().equals(shapeId)).collect(Collectors.toList());
+        return getIncomingEdges(symbols.handle(shapeId));
     }
 
     public List<Edge> getOutgoingEdges(String shapeId) {
-        return edges.stream().filter(e -> e.getFrom().equals(shapeId)).collect(Collectors.toList());
+        return getOutgoingEdges(symbols.handle(shapeId));
     }
 
     public List<Edge> getOriginalIncomingEdges(String shapeId) {
-        return edges.stream().filter(e -> (e.getTo().equals(shapeId) && !e.isReverted()) || (e.getFrom().equals(shapeId) && e.isReverted())).collect(Collectors.toList());
+        return getOriginalIncomingEdges(symbols.handle(shapeId));
     }
 
     public List<Edge> getOriginalOutgoingEdges(String shapeId) {
-        return edges.stream().filter(e -> (e.getFrom().equals(shapeId) && !e.isReverted()) || (e.getTo().equals(shapeId) && e.isReverted())).collect(Collectors.toList());
+        return getOriginalOutgoingEdges(symbols.handle(shapeId));
     }
 
     public Shape getShape(String shapeId) {
-        return shapes.stream().filter(s -> s.getId().equals(shapeId)).findFirst().get();
+        return getShape(symbols.handle(shapeId));
+    }
+
+    public List<Edge> getIncomingEdges(int handle) {
+        return index.incoming.get(handle);
+    }
+
+    public List<Edge> getOutgoingEdges(int handle) {
+        return index.outgoing.get(handle);
+    }
+
+    public List<Edge> getOriginalIncomingEdges(int handle) {
+        return index.originalIncoming.get(handle);
+    }
+
+    public List<Edge> getOriginalOutgoingEdges(int handle) {
+        return index.originalOutgoing.get(handle);
+    }
+
+    public Shape getShape(int handle) {
+        int shapeIndex = getShapeIndex(handle);
+        if (shapeIndex == -1) {
+            throw new NoSuchElementException("No shape with id " + (handle < 0 ? null : symbols.symbol(handle)));
+        }
+        return shapes.get(shapeIndex);
+    }
+
+    /**
+     * @return the handle of the shape at the given index of {@link #getShapes()}
+     */
+    public int getShapeHandle(int shapeIndex) {
+        return index.shapeHandles[shapeIndex];
+    }
+
+    /**
+     * @return the index in {@link #getShapes()} of the first shape with the handle, or -1 if no shape of the diagram has
+     * it
+     */
+    public int getShapeIndex(int handle) {
+        int node = index.nodes.get(handle);
+        return node < index.shapeHandles.length ? node : -1;
+    }
+
+    /**
+     * @return the number of nodes of the diagram: its shapes, then the edge ends that are not shapes
+     */
+    public int getNodeCount() {
+        return index.nodeCount;
+    }
+
+    /**
+     * @return the handle of the source of the edge at the given index in the iteration order of {@link #getEdges()}
+     */
+    public int getSourceHandle(int edgeIndex) {
+        return index.sources[edgeIndex];
+    }
+
+    /**
+     * @return the handle of the target of the edge at the given index in the iteration order of {@link #getEdges()}
+     */
+    public int getTargetHandle(int edgeIndex) {
+        return index.targets[edgeIndex];
+    }
+
+    /**
+     * @return the node of the source of the edge at the given index in the iteration order of {@link #getEdges()}: the
+     * index of the first shape with its id, or a number after the shapes when its id is not the id of a shape
+     */
+    public int getSourceNode(int edgeIndex) {
+        return index.sourceNodes[edgeIndex];
+    }
+
+    /**
+     * @return the node of the target of the edge at the given index in the iteration order of {@link #getEdges()}, see
+     * {@link #getSourceNode(int)}
+     */
+    public int getTargetNode(int edgeIndex) {
+        return index.targetNodes[edgeIndex];
+    }
+
+    /**
+     * The arrays are sized by the number of shapes and edges of the diagram, not by the size of the symbol table which
+     * may be shared with many other diagrams: handles are mapped to nodes numbered from 0 by a {@link NodesByHandle}.
+     */
+    private static class Index {
+
+        private final int[] shapeHandles;
+        private final int[] sources;
+        private final int[] targets;
+        private final NodesByHandle nodes;
+        private final int nodeCount;
+        private final int[] sourceNodes;
+        private final int[] targetNodes;
+        private final Adjacency outgoing;
+        private final Adjacency incoming;
+        private final Adjacency originalOutgoing;
+        private final Adjacency originalIncoming;
+
+        Index(List<Shape> shapes, Set<Edge> edges, SymbolTable symbols) {
+            shapeHandles = new int[shapes.size()];
+            for (int i = 0; i < shapeHandles.length; i++) {
+                shapeHandles[i] = symbols.intern(shapes.get(i).getId());
+            }
+            Edge[] edgeArray = edges.toArray(new Edge[0]);
+            sources = new int[edgeArray.length];
+            targets = new int[edgeArray.length];
+            for (int e = 0; e < edgeArray.length; e++) {
+                sources[e] = symbols.intern(edgeArray[e].getFrom());
+                targets[e] = symbols.intern(edgeArray[e].getTo());
+            }
+            // a shape is numbered by its index, the first one when an id is duplicated
+            nodes = new NodesByHandle(shapeHandles.length + 2 * edgeArray.length);
+            for (int i = 0; i < shapeHandles.length; i++) {
+                nodes.putIfAbsent(shapeHandles[i], i);
+            }
+            int nextNode = shapeHandles.length;
+            sourceNodes = new int[edgeArray.length];
+            targetNodes = new int[edgeArray.length];
+            for (int e = 0; e < edgeArray.length; e++) {
+                sourceNodes[e] = nodes.putIfAbsent(sources[e], nextNode);
+                if (sourceNodes[e] == nextNode) {
+                    nextNode++;
+                }
+                targetNodes[e] = nodes.putIfAbsent(targets[e], nextNode);
+                if (targetNodes[e] == nextNode) {
+                    nextNode++;
+                }
+            }
+            nodeCount = nextNode;
+            int[] originalSources = new int[edgeArray.length];
+            int[] originalTargets = new int[edgeArray.length];
+            for (int e = 0; e < edgeArray.length; e++) {
+                boolean reverted = edgeArray[e].isReverted();
+                originalSources[e] = reverted ? targetNodes[e] : sourceNodes[e];
+                originalTargets[e] = reverted ? sourceNodes[e] : targetNodes[e];
+            }
+            outgoing = new Adjacency(edgeArray, sourceNodes, nodeCount, nodes);
+            incoming = new Adjacency(edgeArray, targetNodes, nodeCount, nodes);
+            originalOutgoing = new Adjacency(edgeArray, originalSources, nodeCount, nodes);
+            originalIncoming = new Adjacency(edgeArray, originalTargets, nodeCount, nodes);
+        }
+    }
+
+    /**
+     * Nodes of the diagram by handle, in an open addressing table of primitive ints sized by the number of handles of
+     * the diagram.
+     */
+    private static class NodesByHandle {
+
+        private static final int FREE = -1;
+
+        private final int[] handles;
+        private final int[] nodes;
+        private final int mask;
+
+        NodesByHandle(int maxSize) {
+            // at most half full
+            int capacity = Integer.highestOneBit(Math.max(maxSize, 1)) * 4;
+            handles = new int[capacity];
+            nodes = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(handles, FREE);
+        }
+
+        /**
+         * @return the node of the handle or -1 when the handle is not one of the diagram
+         */
+        int get(int handle) {
+            if (handle < 0) {
+                return -1;
+            }
+            for (int i = slot(handle); ; i = (i + 1) & mask) {
+                if (handles[i] == handle) {
+                    return nodes[i];
+                }
+                if (handles[i] == FREE) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * @return the node already numbering the handle, or the given node which now numbers it
+         */
+        int putIfAbsent(int handle, int node) {
+            int i = slot(handle);
+            while (handles[i] != FREE) {
+                if (handles[i] == handle) {
+                    return nodes[i];
+                }
+                i = (i + 1) & mask;
+            }
+            handles[i] = handle;
+            nodes[i] = node;
+            return node;
+        }
+
+        private int slot(int handle) {
+            // handles are consecutive ints, spread them over the table
+            int hash = handle * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+
+    /**
+     * Edges grouped by node (compressed sparse row), keeping the ordering of the edges of the diagram
+     */
+    private static class Adjacency {
+
+        private final Edge[] edges;
+        private final int[] offsets;
+        private final List<Edge>[] lists;
+        private final NodesByHandle nodes;
+
+        @SuppressWarnings("unchecked")
+        Adjacency(Edge[] diagramEdges, int[] nodeOfEdge, int nodeCount, NodesByHandle nodes) {
+            this.nodes = nodes;
+            offsets = new int[nodeCount + 1];
+            for (int node : nodeOfEdge) {
+                offsets[node + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            edges = new Edge[diagramEdges.length];
+            int[] fill = new int[nodeCount];
+            for (int e = 0; e < diagramEdges.length; e++) {
+                int node = nodeOfEdge[e];
+                edges[offsets[node] + fill[node]++] = diagramEdges[e];
+            }
+            lists = new List[nodeCount];
+        }
+
+        List<Edge> get(int handle) {
+            // the symbol table may be shared and know ids that are not part of this diagram
+            int node = nodes.get(handle);
+            if (node == -1) {
+                return Collections.emptyList();
+            }
+            // lists are immutable, computing one twice concurrently is harmless
+            List<Edge> list = lists[node];
+            if (list == null) {
+                list = offsets[node] == offsets[node + 1]
+                        ? Collections.emptyList()
+                        : new EdgeRange(edges, offsets[node], offsets[node + 1]);
+                lists[node] = list;
+            }
+            return list;
+        }
+    }
+
+    private static class EdgeRange extends AbstractList<Edge> implements RandomAccess {
+
+        private final Edge[] edges;
+        private final int from;
+        private final int to;
+
+        EdgeRange(Edge[] edges, int from, int to) {
+            this.edges = edges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Edge get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return edges[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
     }
 
 }
@@ -1,9 +1,12 @@
 package io.process.analytics.tools.bpmn.generator.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  *
@@ -14,10 +17,84 @@ import java.util.stream.Collectors;
  *  ↓
  *  y
  * </pre>
+ *
+ * Positions are indexed by shape handle, by row/column and by cell, so lookups done while laying out and while
+ * computing edge waypoints do not scan the whole grid. A cell holds at most one position. The shape ids are interned in a
+ * {@link SymbolTable}: a grid sharing the table of the diagram it lays out is queried by the handles of the diagram,
+ * without hashing ids.
+ *
+ * Positions are attached to a logical row rather than to a y coordinate: the y coordinate is resolved when a position
+ * is read, see {@link Storage} for the cost of adding or removing a row.
+ *
+ * Positions are not kept as objects: the column, the row and the shape of each position are stored in parallel arrays
+ * (slots), the shape information (name, type) being stored once per shape in a shape table. {@link Position} objects
+ * are only built when they are read.
  */
 public class Grid {
 
-    private final List<Position> positions = new ArrayList<>();
+    public enum Storage {
+        /**
+         * Rows are stored in an order-statistic tree, and the cells of each row in a sorted map: adding or removing a
+         * row is O(log n).
+         */
+        ROW_TREE,
+        /**
+         * Rows and cells are stored in primitive int arrays: no object is allocated per position, for a smaller heap
+         * and less garbage. Adding or removing a row is O(number of rows).
+         */
+        COLUMNAR
+    }
+
+    private static final int NONE = -1;
+
+    private final SymbolTable symbols;
+    private final GridRows rows;
+    // slot of the first position of each shape, by handle
+    private int[] slotOfHandle = new int[0];
+    // number of positions per column
+    private int[] columnCounts = new int[16];
+    private int lastColumn = NONE;
+
+    // shape table: shape information shared by positions, the first shape of a handle then the shapes of the same id
+    // with other information
+    private String[] shapeNames = new String[16];
+    private ShapeType[] shapeTypes = new ShapeType[16];
+    private boolean[] splitGateways = new boolean[16];
+    private int[] handleOfShape = new int[16];
+    private int[] nextShapeOfHandle = new int[16];
+    private int shapeCount;
+    private int[] shapeOfHandle = new int[0];
+
+    // slots, linked in insertion order which is the order used by exporters
+    private int[] xs = new int[16];
+    private int[] shapeOfSlot = new int[16];
+    private int[] previous = new int[16];
+    private int[] next = new int[16];
+    private int slotCount;
+    private int first = NONE;
+    private int last = NONE;
+    private int positionCount;
+    // slots of removed positions, reused by the next additions
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    // number of changes, to detect the use of a list of positions after a change
+    private int modCount;
+
+    public Grid() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param symbols table to intern the shape ids into, usually the one of the diagram laid out
+     */
+    public Grid(SymbolTable symbols) {
+        this(symbols, Storage.ROW_TREE);
+    }
+
+    public Grid(SymbolTable symbols, Storage storage) {
+        this.symbols = symbols;
+        this.rows = storage == Storage.COLUMNAR ? new ColumnarGridRows() : new TreeGridRows();
+    }
 
     public static Grid of(Position... positions) {
         Grid grid = new Grid();
@@ -42,30 +119,91 @@ public class Grid {
     }
 
     public Integer getLastRowIndex() {
-        return positions.stream().map(Position::getY).reduce(-1, Math::max);
+        return rows.lastFilledRow();
     }
 
     public Integer getLastColumnIndex() {
-        return positions.stream().map(Position::getX).reduce(-1, Math::max);
+        return lastColumn;
     }
 
+    /**
+     * Exporters write the positions in this order.
+     *
+     * @return the positions in insertion order. Adding or removing a row does not change the order: the positions of
+     * the shifted rows keep their place. A position removed then added again, or moved by {@link #mergeRows(int, int)},
+     * goes to the end.
+     * <p>
+     * The list is a view: each {@link Position} is built when it is read. It cannot be read anymore once the grid is
+     * changed, a {@link ConcurrentModificationException} is then thrown.
+     */
     public List<Position> getPositions() {
-        return positions;
+        return new Positions();
+    }
+
+    /**
+     * @return the handles of the shapes of the positions, in the order of {@link #getPositions()}
+     */
+    public int[] getShapeHandles() {
+        int[] handles = new int[positionCount];
+        int i = 0;
+        for (int slot = first; slot != NONE; slot = next[slot]) {
+            handles[i++] = handleOfShape[shapeOfSlot[slot]];
+        }
+        return handles;
     }
 
     public Position getPosition(String node) {
-        return positions.stream().filter(position -> position.getShape().equals(node)).findFirst().orElseThrow(() -> new IllegalStateException("Node not yet positionned in grid:" + node));
+        return getPosition(symbols.handle(node));
+    }
+
+    /**
+     * @param handle handle of the shape id in the symbol table of the grid
+     * @return the first position of the shape
+     */
+    public Position getPosition(int handle) {
+        int slot = handle < 0 || handle >= slotOfHandle.length ? NONE : slotOfHandle[handle];
+        if (slot == NONE) {
+            throw new IllegalStateException("Node not yet positionned in grid:" + (handle < 0 ? null : symbols.symbol(handle)));
+        }
+        return toPosition(slot);
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
     }
 
     public List<Position> getRow(int index) {
-        return positions.stream().filter(p -> p.getY() == index).collect(Collectors.toList());
+        List<Position> positions = new ArrayList<>();
+        for (int slot : rows.slots(index)) {
+            positions.add(toPosition(slot, index));
+        }
+        return positions;
+    }
+
+    /**
+     * @return the columns of the positions of the row, in ascending order
+     */
+    public int[] getColumns(int y) {
+        return rows.columns(y);
     }
 
     public void remove(Position position) {
-        if (!positions.contains(position)) {
+        int slot = getSlot(position.getX(), position.getY());
+        if (slot == NONE || !position.equals(toPosition(slot, position.getY()))) {
             throw new IllegalArgumentException("Position " + position + " is not in the grid");
         }
-        positions.remove(position);
+        rows.remove(slot, position.getX());
+        int handle = handleOfShape[shapeOfSlot[slot]];
+        if (handle < slotOfHandle.length && slotOfHandle[handle] == slot) {
+            slotOfHandle[handle] = NONE;
+        }
+        int x = position.getX();
+        columnCounts[x]--;
+        while (lastColumn >= 0 && columnCounts[lastColumn] == 0) {
+            lastColumn--;
+        }
+        freeSlot(slot);
+        modCount++;
     }
 
     /**
@@ -74,7 +212,36 @@ public class Grid {
      * @param position to add
      */
     public void add(Position position) {
-        positions.add(position);
+        if (position.getY() < 0) {
+            throw new IllegalArgumentException("Cannot add " + position + ", rows start at 0");
+        }
+        if (position.getX() < 0) {
+            throw new IllegalArgumentException("Cannot add " + position + ", columns start at 0");
+        }
+        int existing = getSlot(position.getX(), position.getY());
+        if (existing != NONE) {
+            throw new IllegalArgumentException("Cannot add " + position + ", the cell is already filled by " + toPosition(existing, position.getY()));
+        }
+        int shape = shapeIndex(position);
+        int slot = newSlot();
+        xs[slot] = position.getX();
+        shapeOfSlot[slot] = shape;
+        rows.put(slot, position.getX(), position.getY());
+        // positions without shape are not indexed
+        if (position.getShape() != null) {
+            int handle = handleOfShape[shape];
+            slotOfHandle = ensureHandle(slotOfHandle, handle);
+            if (slotOfHandle[handle] == NONE) {
+                slotOfHandle[handle] = slot;
+            }
+        }
+        int x = position.getX();
+        if (x >= columnCounts.length) {
+            columnCounts = Arrays.copyOf(columnCounts, Math.max(x + 1, columnCounts.length * 2));
+        }
+        columnCounts[x]++;
+        lastColumn = Math.max(lastColumn, x);
+        modCount++;
     }
 
     /**
@@ -84,32 +251,205 @@ public class Grid {
      * @param y add a row after that row
      */
     public void addRowAfter(int y) {
-        for (Position cellToMove : getAllPositionBelow(y)) {
-            positions.remove(cellToMove);
-            positions.add(cellToMove.toBuilder().y(cellToMove.getY() + 1).build());
+        int index = Math.max(y + 1, 0);
+        // there is nothing to move when adding a row after the last one
+        if (index < rows.rowCount()) {
+            rows.insertRow(index);
+            modCount++;
         }
     }
 
-    private List<Position> getAllPositionBelow(int y) {
-        return positions.stream().filter(p -> p.getY() > y).collect(Collectors.toList());
-    }
-
     public void addRowBefore(int y) {
         addRowAfter(y - 1);
     }
 
+    /**
+     * Move the positions of the rows {@code firstRow} to {@code lastRow - 1} into the row {@code lastRow}, then remove
+     * the emptied rows.
+     *
+     * As when removing then adding them again, moved positions are put at the end of the insertion order, by column.
+     */
+    public void mergeRows(int firstRow, int lastRow) {
+        if (firstRow < 0 || lastRow >= rows.rowCount() || firstRow > lastRow) {
+            throw new IllegalArgumentException("Cannot merge rows " + firstRow + " to " + lastRow);
+        }
+        for (int slot : rows.mergeRows(firstRow, lastRow)) {
+            unlink(slot);
+            append(slot);
+        }
+        modCount++;
+    }
+
     public void removeEmptyRow(int y) {
-        List<Position> row = getRow(y);
-        if (!row.isEmpty()) {
-            throw new IllegalArgumentException("Row " + y + " is not empty");
+        if (y < 0 || y >= rows.rowCount()) {
+            return;
         }
-        for (Position cellToMove : getAllPositionBelow(y)) {
-            positions.remove(cellToMove);
-            positions.add(cellToMove.toBuilder().y(cellToMove.getY() - 1).build());
+        if (!rows.isEmpty(y)) {
+            throw new IllegalArgumentException("Row " + y + " is not empty");
         }
+        rows.deleteEmptyRow(y);
+        modCount++;
     }
 
     public boolean isFilled(Position position) {
-        return positions.stream().anyMatch(p -> p.getX() == position.getX() && p.getY() == position.getY());
+        return isFilled(position.getX(), position.getY());
     }
+
+    public boolean isFilled(int x, int y) {
+        return getSlot(x, y) != NONE;
+    }
+
+    /**
+     * @return {@code true} if a position of the row {@code y} is strictly between the columns {@code x1} and {@code x2}
+     */
+    public boolean hasPositionBetween(int y, int x1, int x2) {
+        int next = rows.columnAfter(y, Math.min(x1, x2));
+        return next != NONE && next < Math.max(x1, x2);
+    }
+
+    private int getSlot(int x, int y) {
+        return rows.slotAt(x, y);
+    }
+
+    private Position toPosition(int slot) {
+        return toPosition(slot, rows.rowOf(slot));
+    }
+
+    private Position toPosition(int slot, int y) {
+        int shape = shapeOfSlot[slot];
+        return new Position(symbols.symbol(handleOfShape[shape]), shapeNames[shape], shapeTypes[shape],
+                splitGateways[shape], xs[slot], y);
+    }
+
+    private int shapeIndex(Position position) {
+        int handle = symbols.intern(position.getShape());
+        shapeOfHandle = ensureHandle(shapeOfHandle, handle);
+        int shape = shapeOfHandle[handle];
+        int lastShape = NONE;
+        // the same id with other information is rare: the shapes of a handle are chained
+        while (shape != NONE) {
+            if (Objects.equals(shapeNames[shape], position.getShapeName()) && shapeTypes[shape] == position.getShapeType()
+                    && splitGateways[shape] == position.isSplitGateway()) {
+                return shape;
+            }
+            lastShape = shape;
+            shape = nextShapeOfHandle[shape];
+        }
+        if (shapeCount == shapeNames.length) {
+            int capacity = shapeCount * 2;
+            shapeNames = Arrays.copyOf(shapeNames, capacity);
+            shapeTypes = Arrays.copyOf(shapeTypes, capacity);
+            splitGateways = Arrays.copyOf(splitGateways, capacity);
+            handleOfShape = Arrays.copyOf(handleOfShape, capacity);
+            nextShapeOfHandle = Arrays.copyOf(nextShapeOfHandle, capacity);
+        }
+        shape = shapeCount++;
+        shapeNames[shape] = position.getShapeName();
+        shapeTypes[shape] = position.getShapeType();
+        splitGateways[shape] = position.isSplitGateway();
+        handleOfShape[shape] = handle;
+        nextShapeOfHandle[shape] = NONE;
+        if (lastShape == NONE) {
+            shapeOfHandle[handle] = shape;
+        } else {
+            nextShapeOfHandle[lastShape] = shape;
+        }
+        return shape;
+    }
+
+    private static int[] ensureHandle(int[] byHandle, int handle) {
+        if (handle < byHandle.length) {
+            return byHandle;
+        }
+        int[] grown = Arrays.copyOf(byHandle, Math.max(handle + 1, byHandle.length * 2));
+        Arrays.fill(grown, byHandle.length, grown.length, NONE);
+        return grown;
+    }
+
+    private int newSlot() {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            if (slotCount == xs.length) {
+                int capacity = slotCount * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                shapeOfSlot = Arrays.copyOf(shapeOfSlot, capacity);
+                previous = Arrays.copyOf(previous, capacity);
+                next = Arrays.copyOf(next, capacity);
+                rows.growSlots(capacity);
+            }
+            slot = slotCount++;
+        }
+        append(slot);
+        positionCount++;
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+        unlink(slot);
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+        positionCount--;
+    }
+
+    private void append(int slot) {
+        previous[slot] = last;
+        next[slot] = NONE;
+        if (last == NONE) {
+            first = slot;
+        } else {
+            next[last] = slot;
+        }
+        last = slot;
+    }
+
+    private void unlink(int slot) {
+        if (previous[slot] == NONE) {
+            first = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            last = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+    }
+
+    /**
+     * Positions in insertion order, the slots being listed on the first read.
+     */
+    private class Positions extends AbstractList<Position> implements RandomAccess {
+
+        private final int expectedModCount = Grid.this.modCount;
+        private final int size = positionCount;
+        private int[] slots;
+
+        @Override
+        public Position get(int index) {
+            if (Grid.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException("The grid was changed after its positions were listed");
+            }
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (slots == null) {
+                slots = new int[size];
+                int i = 0;
+                for (int slot = first; slot != NONE; slot = next[slot]) {
+                    slots[i++] = slot;
+                }
+            }
+            return toPosition(slots[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
 }
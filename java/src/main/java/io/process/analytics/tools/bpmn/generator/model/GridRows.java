@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+/**
+ * Rows and cells of a {@link Grid}: where the slot of each position is, see {@link Grid.Storage}.
+ *
+ * The slots are allocated by the grid. A cell holds at most one slot, the callers check it before putting a slot.
+ */
+interface GridRows {
+
+    int NONE = -1;
+
+    /**
+     * Called before a slot greater or equal to the current capacity is put.
+     */
+    void growSlots(int capacity);
+
+    int rowCount();
+
+    /**
+     * @return the index of the last row holding a slot, or -1 if the grid is empty
+     */
+    int lastFilledRow();
+
+    /**
+     * @return the slot of the cell, or {@link #NONE} if the cell is empty
+     */
+    int slotAt(int x, int y);
+
+    /**
+     * Put the slot in an empty cell, the missing rows up to {@code y} are created.
+     */
+    void put(int slot, int x, int y);
+
+    void remove(int slot, int x);
+
+    /**
+     * @return the index of the row of the slot
+     */
+    int rowOf(int slot);
+
+    /**
+     * @return the columns of the cells of the row, in ascending order
+     */
+    int[] columns(int y);
+
+    /**
+     * @return the slots of the row, by column
+     */
+    int[] slots(int y);
+
+    /**
+     * @return the least column of the row greater than {@code x}, or {@link #NONE}
+     */
+    int columnAfter(int y, int x);
+
+    /**
+     * Insert an empty row at an index lower or equal to the number of rows.
+     */
+    void insertRow(int y);
+
+    /**
+     * @return {@code true} if the row has no cell
+     */
+    boolean isEmpty(int y);
+
+    void deleteEmptyRow(int y);
+
+    /**
+     * Move the slots of the rows {@code firstRow} to {@code lastRow - 1} into the row {@code lastRow}, then delete the
+     * emptied rows. The rows exist.
+     *
+     * @return the moved slots, by column
+     * @throws IllegalArgumentException if a column is filled twice, the rows are then unchanged
+     */
+    int[] mergeRows(int firstRow, int lastRow);
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Ordered list of the logical rows of a {@link Grid}, stored in a treap keyed by implicit rank.
+ *
+ * The index (i.e. the y coordinate) of a row is never stored: it is computed from the tree when requested. Inserting
+ * or deleting a row is then O(log n) and never touches the content of the rows below it.
+ */
+final class RowTree<T> {
+
+    // fixed seed: the tree shape must not depend on the run
+    private final Random priorities = new Random(0);
+    private Row<T> root;
+
+    static final class Row<T> {
+
+        // cells of the row, by column
+        final NavigableMap<Integer, T> cells = new TreeMap<>();
+
+        private final int priority;
+        private Row<T> left;
+        private Row<T> right;
+        private Row<T> parent;
+        // number of rows in the subtree
+        private int size = 1;
+        // number of rows having at least one cell in the subtree
+        private int filledRows;
+
+        private Row(int priority) {
+            this.priority = priority;
+        }
+
+        private boolean isFilled() {
+            return !cells.isEmpty();
+        }
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * @return the row at the given index or {@code null} if there is no such row
+     */
+    Row<T> get(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        Row<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @return the row at the given index, appending empty rows at the end of the tree if needed
+     */
+    Row<T> getOrCreate(int index) {
+        while (size() <= index) {
+            insert(size());
+        }
+        return get(index);
+    }
+
+    int indexOf(Row<T> row) {
+        int index = size(row.left);
+        for (Row<T> node = row; node.parent != null; node = node.parent) {
+            if (node == node.parent.right) {
+                index += size(node.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of the last row having at least one cell, -1 if all rows are empty
+     */
+    int lastFilledIndex() {
+        if (filledRows(root) == 0) {
+            return -1;
+        }
+        int offset = 0;
+        Row<T> node = root;
+        while (true) {
+            if (filledRows(node.right) > 0) {
+                offset += size(node.left) + 1;
+                node = node.right;
+            } else if (node.isFilled()) {
+                return offset + size(node.left);
+            } else {
+                node = node.left;
+            }
+        }
+    }
+
+    /**
+     * Insert a new empty row, rows from the given index are shifted by one
+     */
+    Row<T> insert(int index) {
+        Row<T> row = new Row<>(priorities.nextInt());
+        if (root == null) {
+            root = row;
+            return row;
+        }
+        Row<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index <= leftSize) {
+                if (node.left == null) {
+                    node.left = row;
+                    break;
+                }
+                node = node.left;
+            } else {
+                index -= leftSize + 1;
+                if (node.right == null) {
+                    node.right = row;
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        row.parent = node;
+        updateAncestors(node);
+        while (row.parent != null && row.parent.priority < row.priority) {
+            rotateUp(row);
+        }
+        return row;
+    }
+
+    void delete(Row<T> row) {
+        while (row.left != null || row.right != null) {
+            Row<T> child = row.left == null || (row.right != null && row.right.priority > row.left.priority)
+                    ? row.right : row.left;
+            rotateUp(child);
+        }
+        Row<T> parent = row.parent;
+        if (parent == null) {
+            root = null;
+        } else {
+            if (parent.left == row) {
+                parent.left = null;
+            } else {
+                parent.right = null;
+            }
+            row.parent = null;
+            updateAncestors(parent);
+        }
+    }
+
+    /**
+     * Must be called when cells are added to or removed from a row, to maintain the count of filled rows
+     */
+    void cellsChanged(Row<T> row) {
+        updateAncestors(row);
+    }
+
+    private void rotateUp(Row<T> node) {
+        Row<T> parent = node.parent;
+        Row<T> grandParent = parent.parent;
+        if (parent.left == node) {
+            parent.left = node.right;
+            if (node.right != null) {
+                node.right.parent = parent;
+            }
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) {
+                node.left.parent = parent;
+            }
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent = grandParent;
+        if (grandParent == null) {
+            root = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+        update(parent);
+        update(node);
+    }
+
+    private static <T> void updateAncestors(Row<T> node) {
+        for (; node != null; node = node.parent) {
+            update(node);
+        }
+    }
+
+    private static <T> void update(Row<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        node.filledRows = (node.isFilled() ? 1 : 0) + filledRows(node.left) + filledRows(node.right);
+    }
+
+    private static int size(Row<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int filledRows(Row<?> node) {
+        return node == null ? 0 : node.filledRows;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Map element ids to dense integer handles, starting at 0 in the order ids are interned.
+ *
+ * Ids are hashed once when interned, then the layout works on handles. The first interned instance of an id is kept
+ * and returned by {@link #symbol(int)}, so equal ids share the same String instance.
+ *
+ * A table can be shared by diagrams built concurrently: ids are interned one at a time and lookups never block. The
+ * symbol of a handle is stored before the handle is published, so any thread getting a handle can read its symbol.
+ */
+public class SymbolTable {
+
+    // ConcurrentHashMap does not accept null keys
+    private static final Object NULL_ID = new Object();
+
+    private final ConcurrentMap<Object, Integer> handles = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[16];
+    private volatile int size;
+
+    /**
+     * @return the handle of the id, a new handle is created when the id is not known yet
+     */
+    public int intern(String id) {
+        Integer handle = handles.get(key(id));
+        return handle == null ? add(id) : handle;
+    }
+
+    private synchronized int add(String id) {
+        Integer handle = handles.get(key(id));
+        if (handle != null) {
+            return handle;
+        }
+        int newHandle = size;
+        String[] newSymbols = newHandle == symbols.length ? Arrays.copyOf(symbols, newHandle * 2) : symbols;
+        newSymbols[newHandle] = id;
+        symbols = newSymbols;
+        size = newHandle + 1;
+        handles.put(key(id), newHandle);
+        return newHandle;
+    }
+
+    /**
+     * @return the handle of the id or -1 when the id is not known
+     */
+    public int handle(String id) {
+        Integer handle = handles.get(key(id));
+        return handle == null ? -1 : handle;
+    }
+
+    public String symbol(int handle) {
+        // size is read first, it is written after the symbols
+        if (handle < 0 || handle >= size) {
+            throw new IndexOutOfBoundsException("Handle: " + handle + ", Size: " + size);
+        }
+        return symbols[handle];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static Object key(String id) {
+        return id == null ? NULL_ID : id;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import io.process.analytics.tools.bpmn.generator.model.RowTree.Row;
+
+/**
+ * Rows of a {@link Grid} stored in a {@link RowTree}, the cells of each row in a sorted map: adding or removing a row
+ * is O(log n) whatever the number of rows and positions below it.
+ */
+final class TreeGridRows implements GridRows {
+
+    private final RowTree<Integer> rows = new RowTree<>();
+    @SuppressWarnings("unchecked")
+    private Row<Integer>[] rowOfSlot = new Row[16];
+
+    @Override
+    public void growSlots(int capacity) {
+        rowOfSlot = Arrays.copyOf(rowOfSlot, capacity);
+    }
+
+    @Override
+    public int rowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int lastFilledRow() {
+        return rows.lastFilledIndex();
+    }
+
+    @Override
+    public int slotAt(int x, int y) {
+        Row<Integer> row = rows.get(y);
+        Integer slot = row == null ? null : row.cells.get(x);
+        return slot == null ? NONE : slot;
+    }
+
+    @Override
+    public void put(int slot, int x, int y) {
+        Row<Integer> row = rows.getOrCreate(y);
+        rowOfSlot[slot] = row;
+        row.cells.put(x, slot);
+        rows.cellsChanged(row);
+    }
+
+    @Override
+    public void remove(int slot, int x) {
+        Row<Integer> row = rowOfSlot[slot];
+        row.cells.remove(x);
+        rows.cellsChanged(row);
+        rowOfSlot[slot] = null;
+    }
+
+    @Override
+    public int rowOf(int slot) {
+        return rows.indexOf(rowOfSlot[slot]);
+    }
+
+    @Override
+    public int[] columns(int y) {
+        Row<Integer> row = rows.get(y);
+        if (row == null) {
+            return new int[0];
+        }
+        int[] columns = new int[row.cells.size()];
+        int i = 0;
+        for (int x : row.cells.keySet()) {
+            columns[i++] = x;
+        }
+        return columns;
+    }
+
+    @Override
+    public int[] slots(int y) {
+        Row<Integer> row = rows.get(y);
+        if (row == null) {
+            return new int[0];
+        }
+        return row.cells.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public int columnAfter(int y, int x) {
+        Row<Integer> row = rows.get(y);
+        Integer next = row == null ? null : row.cells.higherKey(x);
+        return next == null ? NONE : next;
+    }
+
+    @Override
+    public void insertRow(int y) {
+        rows.insert(y);
+    }
+
+    @Override
+    public boolean isEmpty(int y) {
+        return rows.get(y).cells.isEmpty();
+    }
+
+    @Override
+    public void deleteEmptyRow(int y) {
+        rows.delete(rows.get(y));
+    }
+
+    @Override
+    public int[] mergeRows(int firstRow, int lastRow) {
+        Row<Integer> target = rows.get(lastRow);
+        List<Row<Integer>> merged = new ArrayList<>(lastRow - firstRow);
+        NavigableMap<Integer, Integer> moved = new TreeMap<>();
+        for (int y = firstRow; y < lastRow; y++) {
+            Row<Integer> row = rows.get(y);
+            merged.add(row);
+            for (Map.Entry<Integer, Integer> cell : row.cells.entrySet()) {
+                if (target.cells.containsKey(cell.getKey()) || moved.put(cell.getKey(), cell.getValue()) != null) {
+                    throw new IllegalArgumentException("Cannot merge rows " + firstRow + " to " + lastRow + ", column " + cell.getKey() + " is filled twice");
+                }
+            }
+        }
+        for (int slot : moved.values()) {
+            rowOfSlot[slot] = target;
+        }
+        target.cells.putAll(moved);
+        rows.cellsChanged(target);
+        for (Row<Integer> row : merged) {
+            row.cells.clear();
+            rows.delete(row);
+        }
+        return moved.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
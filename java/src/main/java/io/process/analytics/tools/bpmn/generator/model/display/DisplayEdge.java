@@ -22,7 +22,8 @@ import java.util.List;
 @Builder
 public class DisplayEdge {
 
-    public final String bpmnElementId;
+    // handle of the bpmnElement id in the symbols of the display model
+    public final int bpmnElement;
     public final List<DisplayPoint> wayPoints;
 
 }
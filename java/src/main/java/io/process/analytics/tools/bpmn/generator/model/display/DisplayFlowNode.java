@@ -20,7 +20,8 @@ import lombok.RequiredArgsConstructor;
 @Builder
 public class DisplayFlowNode {
 
-    public final String bpmnElementId;
+    // handle of the bpmnElement id in the symbols of the display model
+    public final int bpmnElement;
     public final DisplayDimension dimension;
     public final DisplayLabel label;
     // for non BPMN exporters only
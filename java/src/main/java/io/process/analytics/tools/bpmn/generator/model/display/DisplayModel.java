@@ -12,6 +12,7 @@
  */
 package io.process.analytics.tools.bpmn.generator.model.display;
 
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.Singular;
@@ -28,5 +29,15 @@ public class DisplayModel {
     public final List<DisplayFlowNode> flowNodes;
     @Singular
     public final List<DisplayEdge> edges;
+    // ids of the bpmn elements of the flow nodes and of the edges, mapped back by the exporters
+    public final SymbolTable symbols;
+
+    public String bpmnElementId(DisplayFlowNode flowNode) {
+        return symbols.symbol(flowNode.bpmnElement);
+    }
+
+    public String bpmnElementId(DisplayEdge edge) {
+        return symbols.symbol(edge.bpmnElement);
+    }
 
 }
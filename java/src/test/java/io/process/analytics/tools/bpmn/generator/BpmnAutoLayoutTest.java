@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator;
+
+import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.BpmnAutoLayout.ExportType;
+import io.process.analytics.tools.bpmn.generator.BpmnAutoLayout.Exporting;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter.RowAllocation;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter.CycleBreaking;
+import io.process.analytics.tools.bpmn.generator.export.ASCIIExporter;
+import io.process.analytics.tools.bpmn.generator.input.CSVtoDiagram;
+import io.process.analytics.tools.bpmn.generator.input.CsvParsing;
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.internal.FileInput;
+import io.process.analytics.tools.bpmn.generator.internal.FileUtils;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+
+class BpmnAutoLayoutTest {
+
+    private final BpmnAutoLayout bpmnAutoLayout = new BpmnAutoLayout();
+
+    @Test
+    void should_write_the_same_export_from_a_bpmn_file_as_from_its_content() throws IOException {
+        Path bpmn = Paths.get("src/test/resources/bpmn/A.2.0.bpmn.xml");
+        // ascii only content
+        String content = new String(Files.readAllBytes(bpmn), StandardCharsets.UTF_8);
+        for (ExportType exportType : ExportType.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            bpmnAutoLayout.generateLayoutFromBPMNSemantic(bpmn, exportType, output);
+
+            assertThat(content(exportType, output)).as(exportType.name())
+                    .isEqualTo(bpmnAutoLayout.generateLayoutFromBPMNSemantic(content, textExportType(exportType)));
+        }
+    }
+
+    @Test
+    void should_keep_the_encoding_of_the_original_document_when_passing_it_through() throws IOException {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"definitions_1\">\n" +
+                "  <process id=\"process_1\">\n" +
+                "    <startEvent id=\"start_1\" name=\"Début\" />\n" +
+                "  </process>\n" +
+                "</definitions>\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        BpmnAutoLayout.layout(new ByteArrayInputStream(bpmn.getBytes(StandardCharsets.ISO_8859_1)), ExportType.BPMN_PASS_THROUGH, output);
+
+        assertThat(new String(output.toByteArray(), StandardCharsets.ISO_8859_1))
+                .isEqualTo(BpmnAutoLayout.layout(bpmn, ExportType.BPMN_PASS_THROUGH))
+                .contains("name=\"Début\"");
+    }
+
+    @Test
+    void should_skip_the_byte_order_mark_of_a_bpmn_file() throws IOException {
+        Path bpmn = Paths.get("src/test/resources/bpmn/03-startEvent_task_endEvent-with-byte-order-mark.bpmn.xml");
+        byte[] bytes = Files.readAllBytes(bpmn);
+        // the content without the 3 bytes of the UTF-8 byte order mark
+        String content = new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        for (ExportType exportType : ExportType.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            bpmnAutoLayout.generateLayoutFromBPMNSemantic(bpmn, exportType, output);
+
+            assertThat(content(exportType, output)).as(exportType.name())
+                    .isEqualTo(bpmnAutoLayout.generateLayoutFromBPMNSemantic(content, textExportType(exportType)));
+        }
+    }
+
+    @Test
+    void should_write_the_same_export_from_csv_files_as_from_their_content() throws IOException {
+        File nodes = new File("src/test/resources/csv/PatientsProcess/gateways_node.csv");
+        File edges = new File("src/test/resources/csv/PatientsProcess/gateways_edge.csv");
+        for (ExportType exportType : ExportType.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            bpmnAutoLayout.generateLayoutFromCSV(nodes.toPath(), edges.toPath(), exportType, output);
+
+            assertThat(content(exportType, output)).as(exportType.name())
+                    .isEqualTo(bpmnAutoLayout.generateLayoutFromCSV(fileContent(nodes), fileContent(edges), textExportType(exportType)));
+        }
+    }
+
+    @Test
+    void should_write_the_same_export_when_mapping_the_csv_files_in_memory() throws IOException {
+        Path nodes = Paths.get("src/test/resources/csv/VacationRequestBonita_v2/nodes.csv");
+        Path edges = Paths.get("src/test/resources/csv/VacationRequestBonita_v2/edges.csv");
+        for (ExportType exportType : ExportType.values()) {
+            ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+            ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+
+            new BpmnAutoLayout(FileInput.MAPPED).generateLayoutFromCSV(nodes, edges, exportType, mapped);
+            bpmnAutoLayout.generateLayoutFromCSV(nodes, edges, exportType, buffered);
+
+            assertThat(mapped.toByteArray()).as(exportType.name()).isEqualTo(buffered.toByteArray());
+        }
+    }
+
+    @Test
+    void should_write_the_same_export_when_exporting_in_parallel() throws IOException {
+        Path nodes = Paths.get("src/test/resources/csv/VacationRequestBonita_v2/nodes.csv");
+        Path edges = Paths.get("src/test/resources/csv/VacationRequestBonita_v2/edges.csv");
+        for (ExportType exportType : ExportType.values()) {
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+
+            new BpmnAutoLayout(FileInput.BUFFERED, CsvParsing.SEQUENTIAL, Exporting.PARALLEL)
+                    .generateLayoutFromCSV(nodes, edges, exportType, parallel);
+            bpmnAutoLayout.generateLayoutFromCSV(nodes, edges, exportType, sequential);
+
+            assertThat(parallel.toByteArray()).as(exportType.name()).isEqualTo(sequential.toByteArray());
+        }
+    }
+
+    @Test
+    void should_export_a_single_layout_to_several_types() throws IOException {
+        String bpmn = fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml"));
+        String nodes = fileContent(new File("src/test/resources/csv/PatientsProcess/gateways_node.csv"));
+        String edges = fileContent(new File("src/test/resources/csv/PatientsProcess/gateways_edge.csv"));
+        Set<ExportType> exportTypes = EnumSet.complementOf(EnumSet.of(ExportType.SVGZ));
+
+        for (Exporting exporting : Exporting.values()) {
+            BpmnAutoLayout layout = new BpmnAutoLayout(FileInput.BUFFERED, CsvParsing.SEQUENTIAL, exporting);
+
+            Map<ExportType, String> bpmnExports = layout.generateLayoutFromBPMNSemantic(bpmn, exportTypes);
+            Map<ExportType, String> csvExports = layout.generateLayoutFromCSV(nodes, edges, exportTypes);
+
+            assertThat(bpmnExports).as(exporting.name()).containsOnlyKeys(exportTypes);
+            assertThat(csvExports).as(exporting.name()).containsOnlyKeys(exportTypes);
+            for (ExportType exportType : exportTypes) {
+                assertThat(bpmnExports.get(exportType)).as("%s %s", exporting, exportType)
+                        .isEqualTo(bpmnAutoLayout.generateLayoutFromBPMNSemantic(bpmn, exportType));
+                assertThat(csvExports.get(exportType)).as("%s %s", exporting, exportType)
+                        .isEqualTo(bpmnAutoLayout.generateLayoutFromCSV(nodes, edges, exportType));
+            }
+        }
+    }
+
+    @Test
+    void should_lay_out_with_the_given_strategies() {
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(7).nodeCount(200).cycleDensity(0.3).build().generateCsv();
+        for (CycleBreaking cycleBreaking : CycleBreaking.values()) {
+            for (RowAllocation rowAllocation : RowAllocation.values()) {
+                BpmnAutoLayout layout = new BpmnAutoLayout(FileInput.BUFFERED, CsvParsing.SEQUENTIAL, Exporting.SEQUENTIAL,
+                        cycleBreaking, rowAllocation);
+
+                String ascii = layout.generateLayoutFromCSV(csv.nodes, csv.edges, ExportType.ASCII);
+
+                Diagram sortedDiagram = new ShapeSorter(cycleBreaking).sort(new CSVtoDiagram().readFromCSV(csv.nodes, csv.edges));
+                assertThat(ascii).as("%s %s", cycleBreaking, rowAllocation)
+                        .isEqualTo(new ASCIIExporter().export(new ShapeLayouter(rowAllocation).layout(sortedDiagram)));
+            }
+        }
+    }
+
+    @Test
+    void should_not_export_svgz_to_a_string() {
+        assertThatThrownBy(() -> BpmnAutoLayout.layout(fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml")), ExportType.SVGZ))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("SVGZ is a binary format, it can only be exported to an output stream");
+        assertThatThrownBy(() -> new BpmnAutoLayout(FileInput.BUFFERED, CsvParsing.SEQUENTIAL, Exporting.PARALLEL)
+                .generateLayoutFromBPMNSemantic("<definitions />", EnumSet.of(ExportType.SVG, ExportType.SVGZ)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("SVGZ is a binary format, it can only be exported to an output stream");
+    }
+
+    // the svgz export is the compact svg compressed
+    private static String content(ExportType exportType, ByteArrayOutputStream output) throws IOException {
+        if (exportType == ExportType.SVGZ) {
+            return new String(FileUtils.content(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))),
+                    StandardCharsets.UTF_8);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ExportType textExportType(ExportType exportType) {
+        return exportType == ExportType.SVGZ ? ExportType.SVG_COMPACT : exportType;
+    }
+
+}
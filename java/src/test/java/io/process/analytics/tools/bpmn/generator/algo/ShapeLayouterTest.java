@@ -6,7 +6,16 @@ import static io.process.analytics.tools.bpmn.generator.model.Position.position;
 import static io.process.analytics.tools.bpmn.generator.model.Shape.shape;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
 import io.process.analytics.tools.bpmn.generator.model.Grid;
+import io.process.analytics.tools.bpmn.generator.model.Position;
 import io.process.analytics.tools.bpmn.generator.model.Shape;
 import io.process.analytics.tools.bpmn.generator.model.Diagram;
 import org.junit.jupiter.api.Test;
@@ -342,4 +351,295 @@ class ShapeLayouterTest {
                 position(end, 2, 2))));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void should_layout_2_branches_with_branch_heights() {
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(step1)
+                .shape(step2)
+                .shape(step3)
+                .shape(step4)
+                .shape(end)
+                .edge(edge(start, step1))
+                .edge(edge(step1, step2))
+                .edge(edge(step1, step3))
+                .edge(edge(step3, step4))
+                .edge(edge(step2, step4))
+                .edge(edge(step4, end))
+                .build();
+
+        Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+        assertThat(toAscii(grid)).isEqualTo(toAscii(Grid.of(
+                position(start, 0, 1),
+                position(step1, 1, 1),
+                position(step2, 2, 0),
+                position(step3, 2, 2),
+                position(step4, 3, 1),
+                position(end, 4, 1)
+        )));
+    }
+
+    @Test
+    public void should_allocate_rows_of_nested_splits_with_branch_heights() {
+        //+----------------------------+
+        //|                     step4  |
+        //|              step1         |
+        //|                     step5  |
+        //|start  split  step2         |
+        //|              step3         |
+        //+----------------------------+
+        Shape split = shape("split");
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(split)
+                .shape(step1)
+                .shape(step2)
+                .shape(step3)
+                .shape(step4)
+                .shape(step5)
+                .edge(edge(start, split))
+                .edge(edge(split, step1))
+                .edge(edge(split, step2))
+                .edge(edge(split, step3))
+                .edge(edge(step1, step4))
+                .edge(edge(step1, step5))
+                .build();
+
+        Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+        assertThat(toAscii(grid)).isEqualTo(toAscii(Grid.of(
+                position(start, 0, 3),
+                position(split, 1, 3),
+                position(step1, 2, 1),
+                position(step2, 2, 3),
+                position(step3, 2, 4),
+                position(step4, 3, 0),
+                position(step5, 3, 2)
+        )));
+    }
+
+    @Test
+    public void should_add_rows_above_the_branches_of_a_join_with_branch_heights() {
+        //+----------------------+
+        //|              step4   |
+        //|step1  step3          |
+        //|step2         step5   |
+        //+----------------------+
+        Diagram diagram = Diagram.builder()
+                .shape(step1)
+                .shape(step2)
+                .shape(step3)
+                .shape(step4)
+                .shape(step5)
+                .edge(edge(step1, step3))
+                .edge(edge(step2, step3))
+                .edge(edge(step3, step4))
+                .edge(edge(step3, step5))
+                .build();
+
+        Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+        assertThat(toAscii(grid)).isEqualTo(toAscii(Grid.of(
+                position(step1, 0, 1),
+                position(step2, 0, 2),
+                position(step3, 1, 1),
+                position(step4, 2, 0),
+                position(step5, 2, 2)
+        )));
+        assertBandsDoNotOverlap(diagram, grid);
+    }
+
+    @Test
+    public void should_allocate_rows_of_nested_joins_with_branch_heights() {
+        //+-------------------------------------------------+
+        //|                     step3                       |
+        //|              split2        join2                |
+        //|                     step4         join1  end    |
+        //|start  split1                                    |
+        //|              step2                              |
+        //+-------------------------------------------------+
+        Shape split1 = shape("split1");
+        Shape split2 = shape("split2");
+        Shape join1 = shape("join1");
+        Shape join2 = shape("join2");
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(split1)
+                .shape(split2)
+                .shape(step2)
+                .shape(step3)
+                .shape(step4)
+                .shape(join2)
+                .shape(join1)
+                .shape(end)
+                .edge(edge(start, split1))
+                .edge(edge(split1, split2))
+                .edge(edge(split1, step2))
+                .edge(edge(split2, step3))
+                .edge(edge(split2, step4))
+                .edge(edge(step3, join2))
+                .edge(edge(step4, join2))
+                .edge(edge(join2, join1))
+                .edge(edge(step2, join1))
+                .edge(edge(join1, end))
+                .build();
+
+        Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+        assertThat(toAscii(grid)).isEqualTo(toAscii(Grid.of(
+                position(start, 0, 3),
+                position(split1, 1, 3),
+                position(split2, 2, 1),
+                position(step2, 2, 4),
+                position(step3, 3, 0),
+                position(step4, 3, 2),
+                position(join2, 4, 1),
+                position(join1, 5, 2),
+                position(end, 6, 2)
+        )));
+        assertBandsDoNotOverlap(diagram, grid);
+    }
+
+    @Test
+    public void should_allocate_rows_of_a_split_after_a_join_with_branch_heights() {
+        //+-------------------------------------------------+
+        //|              step1         step3                |
+        //|start  split         join          join2  end    |
+        //|              step2         step4                |
+        //|start2 step5                                     |
+        //+-------------------------------------------------+
+        Shape split = shape("split");
+        Shape join = shape("join");
+        Shape join2 = shape("join2");
+        Shape start2 = shape("start2");
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(split)
+                .shape(step1)
+                .shape(step2)
+                .shape(join)
+                .shape(step3)
+                .shape(step4)
+                .shape(join2)
+                .shape(end)
+                .shape(start2)
+                .shape(step5)
+                .edge(edge(start, split))
+                .edge(edge(split, step1))
+                .edge(edge(split, step2))
+                .edge(edge(step1, join))
+                .edge(edge(step2, join))
+                .edge(edge(join, step3))
+                .edge(edge(join, step4))
+                .edge(edge(step3, join2))
+                .edge(edge(step4, join2))
+                .edge(edge(join2, end))
+                .edge(edge(start2, step5))
+                .build();
+
+        Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+        assertThat(toAscii(grid)).isEqualTo(toAscii(Grid.of(
+                position(start, 0, 1),
+                position(split, 1, 1),
+                position(step1, 2, 0),
+                position(step2, 2, 2),
+                position(join, 3, 1),
+                position(step3, 4, 0),
+                position(step4, 4, 2),
+                position(join2, 5, 1),
+                position(end, 6, 1),
+                position(start2, 0, 3),
+                position(step5, 1, 3)
+        )));
+        assertBandsDoNotOverlap(diagram, grid);
+    }
+
+    @Test
+    public void should_not_overlap_bands_of_generated_diagrams_with_branch_heights() {
+        WorkloadGenerator[] generators = {
+                WorkloadGenerator.builder().seed(7).nodeCount(500).cycleDensity(0.2).build(),
+                WorkloadGenerator.builder().seed(7).nodeCount(500).fanOut(2).nestingDepth(4).cycleDensity(0).build(),
+                WorkloadGenerator.builder().seed(7).nodeCount(500).fanOut(8).nestingDepth(1).cycleDensity(0).build()
+        };
+        for (WorkloadGenerator generator : generators) {
+            TDefinitions definitions = generator.generateDefinitions();
+            Diagram diagram = new ShapeSorter().sort(new BpmnToAlgoModelConverter().toAlgoModel(definitions));
+
+            Grid grid = new ShapeLayouter(ShapeLayouter.RowAllocation.BRANCH_HEIGHTS).layout(diagram);
+
+            assertThat(grid.getPositions()).hasSize(diagram.getShapes().size());
+            assertBandsDoNotOverlap(diagram, grid);
+        }
+    }
+
+    /**
+     * Each shape is in the band computed for it, the band of a member is inside the band of its shape, and the bands of
+     * the members of a shape only share rows when they do not share columns.
+     */
+    private static void assertBandsDoNotOverlap(Diagram diagram, Grid grid) {
+        BranchHeights branchHeights = new BranchHeights(diagram);
+        List<Shape> shapes = diagram.getShapes();
+        int[] bandTops = new int[shapes.size()];
+        int[] lastColumns = new int[shapes.size()];
+        Map<Integer, List<Integer>> members = new HashMap<>();
+        for (int shape = 0; shape < shapes.size(); shape++) {
+            Position position = grid.getPosition(shapes.get(shape).getId());
+            int parent = branchHeights.parent(shape);
+            bandTops[shape] = position.getY() - branchHeights.anchor(shape);
+            int parentBandTop = parent == -1 ? 0 : bandTops[parent];
+            assertThat(bandTops[shape]).as("band top of %s", shapes.get(shape).getId())
+                    .isEqualTo(parentBandTop + branchHeights.offset(shape));
+            if (parent != -1) {
+                assertThat(bandTops[shape] + branchHeights.height(shape))
+                        .as("band end of %s", shapes.get(shape).getId())
+                        .isLessThanOrEqualTo(parentBandTop + branchHeights.height(parent));
+            }
+            for (int ancestor = shape; ancestor != -1; ancestor = branchHeights.parent(ancestor)) {
+                lastColumns[ancestor] = Math.max(lastColumns[ancestor], position.getX());
+            }
+            members.computeIfAbsent(parent, p -> new ArrayList<>()).add(shape);
+        }
+        for (List<Integer> membersOfShape : members.values()) {
+            for (int first : membersOfShape) {
+                for (int second : membersOfShape) {
+                    boolean sharedRows = first != second && bandTops[first] < bandTops[second] + branchHeights.height(second)
+                            && bandTops[second] < bandTops[first] + branchHeights.height(first);
+                    if (sharedRows) {
+                        assertThat(branchHeights.column(first) > lastColumns[second] || branchHeights.column(second) > lastColumns[first])
+                                .as("bands of %s and %s", shapes.get(first).getId(), shapes.get(second).getId()).isTrue();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void should_lay_out_the_same_grid_with_a_columnar_storage() {
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(step1)
+                .shape(step2)
+                .shape(step3)
+                .shape(step4)
+                .shape(step5)
+                .shape(end)
+                .edge(edge(start, step1))
+                .edge(edge(start, step2))
+                .edge(edge(step1, step3))
+                .edge(edge(step2, step3))
+                .edge(edge(step3, step4))
+                .edge(edge(step3, step5))
+                .edge(edge(step4, end))
+                .edge(edge(step5, end))
+                .build();
+
+        for (ShapeLayouter.RowAllocation rowAllocation : ShapeLayouter.RowAllocation.values()) {
+            Grid grid = new ShapeLayouter(rowAllocation, Grid.Storage.COLUMNAR).layout(diagram);
+
+            assertThat(grid.getPositions()).isEqualTo(new ShapeLayouter(rowAllocation).layout(diagram).getPositions());
+        }
+    }
+
+}
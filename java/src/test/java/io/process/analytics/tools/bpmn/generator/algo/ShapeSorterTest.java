@@ -19,6 +19,10 @@ import static io.process.analytics.tools.bpmn.generator.model.Edge.edge;
 import static io.process.analytics.tools.bpmn.generator.model.Edge.revertedEdge;
 import static io.process.analytics.tools.bpmn.generator.model.Shape.shape;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -221,4 +225,78 @@ class ShapeSorterTest {
                 t9);
     }
 
-}
\ No newline at end of file
+    @Test
+    void should_sort_shapes_with_cycle_using_feedback_arc_set() {
+        Diagram diagram = Diagram.builder()
+                .shape(step1)
+                .shape(step3)
+                .shape(step2)
+                .shape(step5)
+                .shape(step4)
+                .shape(start)
+                .edge(edge(start, step1))
+                .edge(edge(step1, step2))
+                .edge(edge(step2, step3))
+                .edge(edge(step3, step4))
+                .edge(edge(step4, step2))
+                .edge(edge(step4, step5))
+                .build();
+
+        Diagram sorted = new ShapeSorter(ShapeSorter.CycleBreaking.FEEDBACK_ARC_SET).sort(diagram);
+
+        assertThat(sorted.getShapes()).containsExactly(start, step1, step2, step3, step4, step5);
+        assertThat(sorted.getEdges()).filteredOn(Edge::isReverted).extracting(Edge::getFrom, Edge::getTo)
+                .containsOnly(tuple("step2", "step4"));
+    }
+
+    @Test
+    void should_only_revert_the_feedback_arc_set_of_a_cycle() {
+        Edge t1 = Edge.builder().id("t1").from(start.getId()).to(step1.getId()).build();
+        Edge t2 = Edge.builder().id("t2").from(step1.getId()).to(step2.getId()).build();
+        Edge t3 = Edge.builder().id("t3").from(step2.getId()).to(step3.getId()).build();
+        Edge t4 = Edge.builder().id("t4").from(step3.getId()).to(step1.getId()).build();
+        Edge t5 = Edge.builder().id("t5").from(step2.getId()).to(end.getId()).build();
+        Diagram diagram = Diagram.builder()
+                .shape(start)
+                .shape(step1)
+                .shape(step2)
+                .shape(step3)
+                .shape(end)
+                .edge(t1)
+                .edge(t2)
+                .edge(t3)
+                .edge(t4)
+                .edge(t5)
+                .build();
+
+        Diagram sorted = new ShapeSorter(ShapeSorter.CycleBreaking.FEEDBACK_ARC_SET).sort(diagram);
+
+        assertThat(sorted.getEdges()).containsOnly(t1, t2, t3, revertedEdge(t4), t5);
+    }
+
+    @Test
+    void should_sort_dense_cycles_and_self_loops_using_feedback_arc_set() {
+        // every step is linked to every other step, in both directions
+        Shape[] steps = { step1, step2, step3, step4, step5 };
+        Diagram.DiagramBuilder builder = Diagram.builder().shape(end).shapes(Arrays.asList(steps)).shape(start)
+                .edge(edge(start, step1))
+                .edge(edge(step5, end))
+                .edge(edge(step3, step3));
+        for (Shape from : steps) {
+            for (Shape to : steps) {
+                if (from != to) {
+                    builder.edge(edge(from, to));
+                }
+            }
+        }
+
+        Diagram sorted = new ShapeSorter(ShapeSorter.CycleBreaking.FEEDBACK_ARC_SET).sort(builder.build());
+
+        List<Shape> shapes = sorted.getShapes();
+        assertThat(shapes).hasSize(7).startsWith(start, step1).endsWith(end);
+        assertThat(sorted.getEdges()).hasSize(23).allSatisfy(e -> assertThat(
+                shapes.indexOf(sorted.getShape(e.getFrom()))).isLessThanOrEqualTo(shapes.indexOf(sorted.getShape(e.getTo()))));
+        assertThat(sorted.getEdges()).filteredOn(Edge::isReverted).hasSize(10);
+    }
+
+}
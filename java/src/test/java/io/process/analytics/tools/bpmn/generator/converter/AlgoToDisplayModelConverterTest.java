@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.input.CSVtoDiagram;
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+import io.process.analytics.tools.bpmn.generator.model.Position;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayEdge;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayFlowNode;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
+
+class AlgoToDisplayModelConverterTest {
+
+    @Test
+    void should_compute_the_same_waypoints_in_parallel() {
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(11).nodeCount(1000).cycleDensity(0.2).build()
+                .generateCsv();
+        Diagram diagram = new ShapeSorter().sort(new CSVtoDiagram().readFromCSV(csv.nodes, csv.edges));
+        Grid grid = new ShapeLayouter().layout(diagram);
+
+        DisplayModel model = new AlgoToDisplayModelConverter(AlgoToDisplayModelConverter.WayPoints.PARALLEL)
+                .convert(grid, diagram);
+
+        DisplayModel expected = new AlgoToDisplayModelConverter().convert(grid, diagram);
+        assertThat(model.edges).hasSize(diagram.getEdges().size());
+        assertThat(model.edges).extracting(edge -> toString(model, edge))
+                .containsExactlyElementsOf(expected.edges.stream()
+                        .map(edge -> toString(expected, edge))
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    void should_convert_a_grid_not_sharing_the_symbols_of_the_diagram() {
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(5).nodeCount(300).cycleDensity(0.2).build()
+                .generateCsv();
+        Diagram diagram = new ShapeSorter().sort(new CSVtoDiagram().readFromCSV(csv.nodes, csv.edges));
+        Grid grid = new ShapeLayouter().layout(diagram);
+        Grid copy = Grid.of(grid.getPositions().toArray(new Position[0]));
+
+        DisplayModel model = new AlgoToDisplayModelConverter().convert(copy, diagram);
+
+        DisplayModel expected = new AlgoToDisplayModelConverter().convert(grid, diagram);
+        assertThat(copy.getSymbols()).isNotSameAs(diagram.getSymbols());
+        assertThat(model.flowNodes).extracting(flowNode -> toString(model, flowNode))
+                .containsExactlyElementsOf(expected.flowNodes.stream()
+                        .map(flowNode -> toString(expected, flowNode))
+                        .collect(Collectors.toList()));
+        assertThat(model.edges).extracting(edge -> toString(model, edge))
+                .containsExactlyElementsOf(expected.edges.stream()
+                        .map(edge -> toString(expected, edge))
+                        .collect(Collectors.toList()));
+    }
+
+    private static String toString(DisplayModel model, DisplayFlowNode flowNode) {
+        return model.bpmnElementId(flowNode) + " " + flowNode.dimension.x + "," + flowNode.dimension.y;
+    }
+
+    private static String toString(DisplayModel model, DisplayEdge edge) {
+        return model.bpmnElementId(edge) + " " + edge.wayPoints;
+    }
+
+}
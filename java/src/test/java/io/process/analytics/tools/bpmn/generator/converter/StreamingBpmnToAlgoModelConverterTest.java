@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.converter;
+
+import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
+import static io.process.analytics.tools.bpmn.generator.model.Edge.edge;
+import static io.process.analytics.tools.bpmn.generator.model.ShapeType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.internal.XmlParser;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Shape;
+
+class StreamingBpmnToAlgoModelConverterTest {
+
+    private final StreamingBpmnToAlgoModelConverter converter = new StreamingBpmnToAlgoModelConverter();
+
+    @Test
+    void should_build_the_same_diagram_as_the_unmarshalled_definitions() throws IOException {
+        File[] bpmnFiles = new File("src/test/resources/bpmn").listFiles((dir, name) -> name.endsWith(".bpmn.xml"));
+        assertThat(bpmnFiles).isNotEmpty();
+        for (File bpmnFile : bpmnFiles) {
+            String bpmn = fileContent(bpmnFile);
+
+            Diagram diagram = converter.toAlgoModel(bpmn);
+
+            Diagram expected = new BpmnToAlgoModelConverter().toAlgoModel(new XmlParser().unmarshall(bpmn));
+            assertSameDiagram(bpmnFile.getName(), diagram, expected);
+        }
+    }
+
+    @Test
+    void should_build_the_same_diagram_as_the_unmarshalled_generated_definitions() {
+        String bpmn = new XmlParser().marshal(WorkloadGenerator.builder().seed(3).nodeCount(300).cycleDensity(0.2).build()
+                .generateDefinitions());
+
+        Diagram diagram = converter.toAlgoModel(bpmn);
+
+        assertSameDiagram("generated", diagram, new BpmnToAlgoModelConverter().toAlgoModel(new XmlParser().unmarshall(bpmn)));
+    }
+
+    @Test
+    void should_read_the_choreography_activities() {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<bpmn:definitions xmlns:bpmn=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"definitions_1\">\n" +
+                "  <bpmn:process id=\"process_1\">\n" +
+                "    <bpmn:startEvent id=\"start_1\" />\n" +
+                "    <bpmn:choreographyTask id=\"choreographyTask_1\" initiatingParticipantRef=\"participant_1\" />\n" +
+                "    <bpmn:subChoreography id=\"subChoreography_1\" initiatingParticipantRef=\"participant_1\" />\n" +
+                "    <bpmn:callChoreography id=\"callChoreography_1\" initiatingParticipantRef=\"participant_1\" />\n" +
+                "    <bpmn:endEvent id=\"end_1\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_1\" sourceRef=\"start_1\" targetRef=\"choreographyTask_1\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_2\" sourceRef=\"choreographyTask_1\" targetRef=\"subChoreography_1\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_3\" sourceRef=\"subChoreography_1\" targetRef=\"callChoreography_1\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_4\" sourceRef=\"callChoreography_1\" targetRef=\"end_1\" />\n" +
+                "  </bpmn:process>\n" +
+                "</bpmn:definitions>";
+
+        Diagram diagram = converter.toAlgoModel(bpmn);
+
+        assertThat(diagram.getShapes()).containsExactly(
+                new Shape("start_1", null, EVENT, false),
+                new Shape("choreographyTask_1", null, ACTIVITY, false),
+                new Shape("subChoreography_1", null, ACTIVITY, false),
+                new Shape("callChoreography_1", null, ACTIVITY, false),
+                new Shape("end_1", null, EVENT, false));
+        assertThat(diagram.getEdges()).hasSize(4);
+        assertSameDiagram("choreography", diagram, new BpmnToAlgoModelConverter().toAlgoModel(new XmlParser().unmarshall(bpmn)));
+    }
+
+    @Test
+    void should_only_read_the_flow_elements_of_the_processes() {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<bpmn:definitions xmlns:bpmn=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:zeebe=\"http://camunda.org/schema/zeebe/1.0\" id=\"definitions_1\">\n" +
+                "  <bpmn:collaboration id=\"collaboration_1\">\n" +
+                "    <bpmn:participant id=\"participant_1\" processRef=\"process_1\" />\n" +
+                "  </bpmn:collaboration>\n" +
+                "  <bpmn:process id=\"process_1\">\n" +
+                "    <bpmn:documentation>a documented process</bpmn:documentation>\n" +
+                "    <bpmn:sequenceFlow id=\"flow_1\" sourceRef=\"start_1\" targetRef=\"gateway_1\" />\n" +
+                "    <bpmn:startEvent id=\"start_1\" name=\"Start\">\n" +
+                "      <bpmn:outgoing>flow_1</bpmn:outgoing>\n" +
+                "    </bpmn:startEvent>\n" +
+                "    <bpmn:parallelGateway id=\"gateway_1\">\n" +
+                "      <bpmn:incoming>flow_1</bpmn:incoming>\n" +
+                "      <bpmn:outgoing>flow_2</bpmn:outgoing>\n" +
+                "      <bpmn:outgoing>flow_3</bpmn:outgoing>\n" +
+                "    </bpmn:parallelGateway>\n" +
+                "    <bpmn:serviceTask id=\"task_1\" name=\"Task\">\n" +
+                "      <bpmn:extensionElements>\n" +
+                "        <zeebe:taskDefinition type=\"test\" />\n" +
+                "        <zeebe:task id=\"not_a_task\" />\n" +
+                "      </bpmn:extensionElements>\n" +
+                "    </bpmn:serviceTask>\n" +
+                "    <bpmn:subProcess id=\"subProcess_1\" name=\"Sub Process\">\n" +
+                "      <bpmn:startEvent id=\"nested_start\" />\n" +
+                "      <bpmn:sequenceFlow id=\"nested_flow\" sourceRef=\"nested_start\" targetRef=\"nested_end\" />\n" +
+                "      <bpmn:endEvent id=\"nested_end\" />\n" +
+                "    </bpmn:subProcess>\n" +
+                "    <bpmn:sequenceFlow id=\"flow_2\" sourceRef=\"gateway_1\" targetRef=\"task_1\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_3\" sourceRef=\"gateway_1\" targetRef=\"subProcess_1\" />\n" +
+                "  </bpmn:process>\n" +
+                "</bpmn:definitions>";
+
+        Diagram diagram = converter.toAlgoModel(bpmn);
+
+        assertThat(diagram.getShapes()).containsExactly(
+                new Shape("start_1", "Start", EVENT, false),
+                new Shape("gateway_1", null, GATEWAY, true),
+                new Shape("task_1", "Task", ACTIVITY, false),
+                new Shape("subProcess_1", "Sub Process", SUB_PROCESS, false));
+        assertThat(diagram.getEdges()).containsExactly(
+                edge("flow_1", "start_1", "gateway_1"),
+                edge("flow_2", "gateway_1", "task_1"),
+                edge("flow_3", "gateway_1", "subProcess_1"));
+    }
+
+    // the edges are compared in order, the diagram equality does not depend on it
+    private static void assertSameDiagram(String description, Diagram actual, Diagram expected) {
+        assertThat(actual.getShapes()).as(description).containsExactlyElementsOf(expected.getShapes());
+        assertThat(new ArrayList<>(actual.getEdges())).as(description).containsExactlyElementsOf(expected.getEdges());
+        assertThat(actual).as(description).isEqualTo(expected);
+    }
+
+}
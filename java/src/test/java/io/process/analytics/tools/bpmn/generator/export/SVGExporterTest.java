@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.export;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.input.CSVtoDiagram;
+import io.process.analytics.tools.bpmn.generator.input.WorkloadGenerator;
+import io.process.analytics.tools.bpmn.generator.internal.FileUtils;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+
+class SVGExporterTest {
+
+    private final SVGExporter exporter = new SVGExporter();
+    private final SVGExporter compactExporter = new SVGExporter(SVGExporter.Style.COMPACT);
+
+    @Test
+    void should_write_the_same_svg_to_writers_and_streams() {
+        // small enough to fit in a single block, and large enough to be written by many blocks
+        for (int nodeCount : new int[] { 3, 500 }) {
+            Diagram diagram = diagram(nodeCount);
+            Grid grid = new ShapeLayouter().layout(diagram);
+            String svg = exporter.export(grid, diagram);
+
+            StringWriter writer = new StringWriter();
+            exporter.export(grid, diagram, writer);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            exporter.export(grid, diagram, stream);
+            StringBuilder builder = new StringBuilder("<!-- svg -->");
+            exporter.export(grid, diagram, builder);
+
+            assertThat(svg).as("node count %s", nodeCount).startsWith("<svg").endsWith("</svg>");
+            assertThat(writer.toString()).isEqualTo(svg);
+            assertThat(new String(stream.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(svg);
+            assertThat(builder.toString()).isEqualTo("<!-- svg -->" + svg);
+        }
+    }
+
+    @Test
+    void should_draw_the_same_elements_in_compact_style() {
+        Diagram diagram = diagram(200);
+        Grid grid = new ShapeLayouter().layout(diagram);
+
+        String svg = exporter.export(grid, diagram);
+        String compactSvg = compactExporter.export(grid, diagram);
+
+        for (String element : new String[] { "<rect ", "<ellipse ", "<polygon ", "<text ", "<tspan ", "<polyline " }) {
+            assertThat(count(compactSvg, element)).as(element).isEqualTo(count(svg, element));
+        }
+        // a circle per edge target, drawn by the marker in the compact style
+        assertThat(count(svg, "<circle ")).isEqualTo(count(svg, "<polyline "));
+        assertThat(count(compactSvg, "<circle ")).isEqualTo(1);
+        assertThat(count(compactSvg, "marker-end:url(#target)")).isEqualTo(1);
+        // only the marker carries presentation attributes
+        assertThat(count(compactSvg, " stroke=")).isEqualTo(1);
+        assertThat(compactSvg).startsWith("<svg").endsWith("</svg>");
+        assertThat(compactSvg.length()).isLessThan(svg.length() * 2 / 3);
+    }
+
+    @Test
+    void should_render_the_same_svg_in_parallel() {
+        // many more chunks than threads
+        Diagram diagram = diagram(1000);
+        Grid grid = new ShapeLayouter().layout(diagram);
+
+        for (SVGExporter.Style style : SVGExporter.Style.values()) {
+            String svg = new SVGExporter(style, SVGExporter.Rendering.PARALLEL).export(grid, diagram);
+
+            assertThat(svg).as(style.name()).isEqualTo(new SVGExporter(style).export(grid, diagram));
+        }
+    }
+
+    @Test
+    void should_render_a_bounded_number_of_elements_ahead_of_the_output() throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<Integer> elements = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        AtomicInteger rendered = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        // one char per element
+        Writer output = new Writer() {
+            private int written;
+
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                maxAhead.accumulateAndGet(rendered.get() - written, Math::max);
+                written += length;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SVGExporter.BlockOutput blockOutput = new SVGExporter.BlockOutput(output);
+
+        SVGExporter.appendInParallel(elements, (chunk, element) -> {
+            chunk.append('x');
+            rendered.incrementAndGet();
+        }, blockOutput, pool);
+        blockOutput.end();
+
+        assertThat(rendered).hasValue(elements.size());
+        // the chunks waiting to be written, the chunk being written and the block not written yet
+        int chunksAhead = SVGExporter.CHUNKS_AHEAD_PER_THREAD * pool.getParallelism() + 1;
+        assertThat(maxAhead.get()).isLessThanOrEqualTo(chunksAhead * SVGExporter.CHUNK_SIZE + SVGExporter.BLOCK_SIZE);
+    }
+
+    @Test
+    void should_compress_the_compact_svg() throws IOException {
+        Diagram diagram = diagram(100);
+        Grid grid = new ShapeLayouter().layout(diagram);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        compactExporter.exportCompressed(grid, diagram, output);
+
+        byte[] svg = FileUtils.content(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())));
+        assertThat(new String(svg, StandardCharsets.UTF_8)).isEqualTo(compactExporter.export(grid, diagram));
+    }
+
+    private static Diagram diagram(int nodeCount) {
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(7).nodeCount(nodeCount).cycleDensity(0.2).build()
+                .generateCsv();
+        return new ShapeSorter().sort(new CSVtoDiagram().readFromCSV(csv.nodes, csv.edges));
+    }
+
+    private static int count(String content, String part) {
+        int count = 0;
+        for (int index = content.indexOf(part); index != -1; index = content.indexOf(part, index + part.length())) {
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -80,6 +80,38 @@ class CSVtoBPMNTest {
         assertThat(gateway1.getOutgoing()).extracting(QName::getLocalPart).containsExactlyInAnyOrder("sequenceFlow_2", "sequenceFlow_3");
     }
 
+    @Test
+    public void should_read_quoted_ids_and_columns_named_in_the_header() {
+        String nodes = "\"type\",\"label\",\"id\"\r\n" +
+                "\"start_event\",\"Start, here\",\"start\"\r\n" +
+                "\"user_task\",\"Check \"\"it\"\"\",\"12\"\r\n";
+        String edges = "\"to_id\",\"from_id\",\"id\"\r\n" +
+                "\"12\",\"start\",\"flow\"\r\n";
+
+        TDefinitions definitions = new CSVtoBPMN().readFromCSV(nodes, edges);
+
+        BpmnElements bpmnElements = new Semantic(definitions).getBpmnElements(new Semantic(definitions).getProcesses().get(0));
+        List<? extends TFlowElement> flowNodes = bpmnElements.getFlowNodes();
+        assertThat(flowNodes).extracting(TFlowElement::getId).containsExactly("start", "bpmnElement_12");
+        assertThat(flowNodes).extracting(TFlowElement::getName).containsExactly("Start, here", "Check \"it\"");
+        assertThat(flowNodes.get(1)).isExactlyInstanceOf(TUserTask.class);
+        TSequenceFlow sequenceFlow = bpmnElements.getSequenceFlows().get(0);
+        assertThat(sequenceFlow.getId()).isEqualTo("flow");
+        assertThat(sequenceFlow.getSourceRef()).isSameAs(flowNodes.get(0));
+        assertThat(sequenceFlow.getTargetRef()).isSameAs(flowNodes.get(1));
+    }
+
+    @Test
+    public void should_detect_numeric_ids_as_double_parsing_does() {
+        for (String numeric : new String[] { "1", "-12", "+3.", ".5", "1.5e-3", "2E10", "7d", " 42 ", "NaN", "-Infinity" }) {
+            assertThat(CsvProcess.isNumeric(numeric)).as(numeric).isTrue();
+            Double.parseDouble(numeric);
+        }
+        for (String nonNumeric : new String[] { null, "", "a1", "1a", ".", "-", "1e", "1.2.3", "NaNa", "task_1" }) {
+            assertThat(CsvProcess.isNumeric(nonNumeric)).as(nonNumeric).isFalse();
+        }
+    }
+
     // =================================================================================================================
     // UTILS
     // =================================================================================================================
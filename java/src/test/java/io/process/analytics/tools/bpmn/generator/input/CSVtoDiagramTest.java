@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
+
+class CSVtoDiagramTest {
+
+    @Test
+    void should_build_the_same_diagram_as_the_bpmn_conversion() throws IOException {
+        assertSameDiagramAsBpmnConversion("PatientsProcess/nodeSimple.csv", "PatientsProcess/edgeSimple.csv");
+        assertSameDiagramAsBpmnConversion("PatientsProcess/node.csv", "PatientsProcess/edge.csv");
+        assertSameDiagramAsBpmnConversion("PatientsProcess/gateway_node_simple.csv", "PatientsProcess/gateway_edge_simple.csv");
+        assertSameDiagramAsBpmnConversion("PatientsProcess/gateways_node.csv", "PatientsProcess/gateways_edge.csv");
+        assertSameDiagramAsBpmnConversion("VacationRequestBonita/nodes.csv", "VacationRequestBonita/edges.csv");
+        assertSameDiagramAsBpmnConversion("VacationRequestBonita_v2/nodes.csv", "VacationRequestBonita_v2/edges.csv");
+    }
+
+    @Test
+    void should_build_the_same_diagram_as_the_bpmn_conversion_for_a_generated_workload() {
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(3).nodeCount(300).cycleDensity(0.2).build().generateCsv();
+
+        assertSameDiagram(csv.nodes, csv.edges);
+    }
+
+    @Test
+    void should_detect_split_gateways_and_keep_edges_to_unknown_nodes() {
+        String nodes = "\"\",\"id\",\"label\",\"type\"\n" +
+                "\"1\",1,\"Start\",\"start_event\"\n" +
+                "\"2\",2,\"Split\",\"exclusive_gateway\"\n" +
+                "\"3\",3,\"Task\",\"user_task\"\n";
+        String edges = "\"\",\"id\",\"from\",\"to\"\n" +
+                "\"1\",1,1,2\n" +
+                "\"2\",2,2,3\n" +
+                "\"3\",3,2,unknown\n";
+
+        Diagram diagram = new CSVtoDiagram().readFromCSV(nodes, edges);
+
+        assertThat(diagram.getShape("bpmnElement_2").isSplitGateway()).isTrue();
+        assertThat(diagram.getOutgoingEdges("bpmnElement_2")).extracting("to").containsExactly("bpmnElement_3", "unknown");
+        assertSameDiagram(nodes, edges);
+    }
+
+    private static void assertSameDiagramAsBpmnConversion(String nodesFile, String edgesFile) throws IOException {
+        assertSameDiagram(fileContent(new File("src/test/resources/csv/" + nodesFile)),
+                fileContent(new File("src/test/resources/csv/" + edgesFile)));
+    }
+
+    private static void assertSameDiagram(String nodes, String edges) {
+        Diagram expected = new BpmnToAlgoModelConverter().toAlgoModel(new CSVtoBPMN().readFromCSV(nodes, edges));
+
+        Diagram diagram = new CSVtoDiagram().readFromCSV(nodes, edges);
+
+        assertThat(diagram.getShapes()).containsExactlyElementsOf(expected.getShapes());
+        assertThat(diagram.getEdges()).containsExactlyElementsOf(expected.getEdges());
+        assertThat(symbols(diagram.getSymbols())).isEqualTo(symbols(expected.getSymbols()));
+    }
+
+    private static List<String> symbols(SymbolTable symbols) {
+        List<String> values = new ArrayList<>();
+        for (int handle = 0; handle < symbols.size(); handle++) {
+            values.add(symbols.symbol(handle));
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+
+class CsvProcessTest {
+
+    private static final String NODES = "\"\",\"id\",\"label\",\"type\"\n" +
+            "\"1\",1,\"Start\",\"start_event\"\n" +
+            "\"2\",2,\"Check the request,\n  then \"\"approve\"\" it\n\",\"user_task\"\n" +
+            "\"3\",3,\"End\",\"end_event\"\n";
+    private static final String EDGES = "\"\",\"id\",\"from\",\"to\"\n" +
+            "\"1\",1,1,2\n" +
+            "\"2\",2,2,3\n" +
+            "\"3\",3,2,unknown\n";
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Test
+    void should_read_the_same_process_by_chunks_as_sequentially() throws IOException {
+        assertSameProcessByChunks(NODES, EDGES);
+        assertSameProcessByChunks(csvFile("PatientsProcess/gateways_node.csv"), csvFile("PatientsProcess/gateways_edge.csv"));
+        assertSameProcessByChunks(csvFile("VacationRequestBonita_v2/nodes.csv"), csvFile("VacationRequestBonita_v2/edges.csv"));
+        WorkloadGenerator.Csv csv = WorkloadGenerator.builder().seed(5).nodeCount(500).cycleDensity(0.2).build().generateCsv();
+        assertSameProcessByChunks(csv.nodes, csv.edges);
+    }
+
+    @Test
+    void should_read_the_node_types() {
+        CsvProcess process = CsvProcess.read(NODES, EDGES, CsvParsing.SEQUENTIAL);
+
+        assertThat(process.nodeTypes).containsExactly(CsvProcess.NodeType.START_EVENT, CsvProcess.NodeType.USER_TASK,
+                CsvProcess.NodeType.END_EVENT);
+        assertThat(CsvProcess.NodeType.of("exclusive_gateway").shapeType()).isEqualTo(ShapeType.GATEWAY);
+        assertThat(CsvProcess.NodeType.of("unknown")).isEqualTo(CsvProcess.NodeType.TASK);
+    }
+
+    @Test
+    void should_not_start_a_chunk_inside_a_quoted_field() {
+        CsvProcess.Chunks chunks = CsvProcess.split(NODES, 1, pool);
+
+        assertThat(chunks.starts).containsExactly(0, NODES.indexOf("\"1\""), NODES.indexOf("\"2\""), NODES.indexOf("\"3\""));
+        assertThat(chunks.linesBefore).containsExactly(0, 1, 2, 5);
+    }
+
+    @Test
+    void should_not_split_when_double_quotes_are_in_unquoted_fields() {
+        String nodes = "\"\",\"id\",\"label\",\"type\"\n" +
+                "\"1\",1,6\" pipe,\"task\"\n" +
+                "\"2\",2,\"first\nsecond\",\"task\"\n";
+
+        assertThat(CsvProcess.split(nodes, 1, pool)).isNull();
+    }
+
+    @Test
+    void should_read_sequentially_when_double_quotes_are_in_unquoted_fields() {
+        // the quote in the label makes the line break of the next quoted label look like a record end
+        String nodes = "\"\",\"id\",\"label\",\"type\"\n" +
+                "\"1\",1,6\" pipe,\"task\"\n" +
+                "\"2\",2,\"first\nsecond\",\"task\"\n";
+
+        assertSameProcessByChunks(nodes, EDGES);
+    }
+
+    @Test
+    void should_report_the_same_error_as_when_reading_sequentially() {
+        String nodes = NODES + "\"4\",4\n";
+
+        assertThatThrownBy(() -> CsvProcess.readInParallel(nodes, EDGES, pool, 1, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Line 7 has 2 fields, expected at least 3");
+    }
+
+    private void assertSameProcessByChunks(String nodes, String edges) {
+        CsvProcess expected = CsvProcess.read(nodes, edges, CsvParsing.SEQUENTIAL);
+
+        for (int chunkSize : new int[] { 1, 7, 64, Integer.MAX_VALUE }) {
+            CsvProcess process = CsvProcess.readInParallel(nodes, edges, pool, chunkSize, chunkSize);
+
+            assertThat(process.mappingShapeId).as("chunk size %s", chunkSize).isEqualTo(expected.mappingShapeId);
+            assertThat(process.nodeIds).isEqualTo(expected.nodeIds);
+            assertThat(process.nodeNames).isEqualTo(expected.nodeNames);
+            assertThat(process.nodeTypes).isEqualTo(expected.nodeTypes);
+            assertThat(process.nodeHandles.toArray()).isEqualTo(expected.nodeHandles.toArray());
+            assertThat(process.edgeIds).isEqualTo(expected.edgeIds);
+            assertThat(process.edgeSourceIds).isEqualTo(expected.edgeSourceIds);
+            assertThat(process.edgeTargetIds).isEqualTo(expected.edgeTargetIds);
+            assertThat(process.edgeSourceHandles.toArray()).isEqualTo(expected.edgeSourceHandles.toArray());
+            assertThat(process.edgeTargetHandles.toArray()).isEqualTo(expected.edgeTargetHandles.toArray());
+            for (int handle = 0; handle < expected.shapeRelations.size(); handle++) {
+                assertThat(process.shapeRelations.get(handle).incoming).isEqualTo(expected.shapeRelations.get(handle).incoming);
+                assertThat(process.shapeRelations.get(handle).outgoing).isEqualTo(expected.shapeRelations.get(handle).outgoing);
+            }
+        }
+    }
+
+    private static String csvFile(String path) throws IOException {
+        return fileContent(new File("src/test/resources/csv/" + path));
+    }
+
+}
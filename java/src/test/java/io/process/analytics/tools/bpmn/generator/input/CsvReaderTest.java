@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    @Test
+    void should_read_quoted_and_unquoted_fields() throws IOException {
+        List<List<String>> records = records("\"\",\"id\",\"label\"\n" +
+                "\"1\",1,\"Check, then \"\"approve\"\"\"\n" +
+                "\"2\",2,\"Two\nlines\"\n" +
+                "\"3\",,\n");
+
+        assertThat(records).containsExactly(
+                list("", "id", "label"),
+                list("1", "1", "Check, then \"approve\""),
+                list("2", "2", "Two\nlines"),
+                list("3", "", ""));
+    }
+
+    @Test
+    void should_support_all_line_breaks_and_skip_blank_lines() throws IOException {
+        List<List<String>> records = records("a,b\r\nc,d\r\n\r\ne,f\rg,h\n\n");
+
+        assertThat(records).containsExactly(list("a", "b"), list("c", "d"), list("e", "f"), list("g", "h"));
+    }
+
+    @Test
+    void should_give_the_line_of_the_records() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a\n\"b\nc\"\nd"));
+
+        assertThat(csv.next()).isTrue();
+        assertThat(csv.lineNumber()).isEqualTo(1);
+        assertThat(csv.next()).isTrue();
+        assertThat(csv.lineNumber()).isEqualTo(2);
+        assertThat(csv.next()).isTrue();
+        assertThat(csv.lineNumber()).isEqualTo(4);
+        assertThat(csv.next()).isFalse();
+        assertThatThrownBy(() -> csv.get(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_fail_on_unterminated_quoted_field() {
+        assertThatThrownBy(() -> records("a,b\n\"c,d\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unterminated quoted field starting at line 2");
+    }
+
+    private static List<List<String>> records(String content) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        CsvReader csv = new CsvReader(new StringReader(content));
+        while (csv.next()) {
+            List<String> record = new ArrayList<>();
+            for (int i = 0; i < csv.size(); i++) {
+                record.add(csv.get(i));
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static List<String> list(String... fields) {
+        return Arrays.asList(fields);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.input;
+
+import static io.process.analytics.tools.bpmn.generator.internal.Semantic.getId;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.algo.ShapeLayouter;
+import io.process.analytics.tools.bpmn.generator.algo.ShapeSorter;
+import io.process.analytics.tools.bpmn.generator.converter.BpmnToAlgoModelConverter;
+import io.process.analytics.tools.bpmn.generator.internal.Semantic;
+import io.process.analytics.tools.bpmn.generator.internal.Semantic.BpmnElements;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TDefinitions;
+import io.process.analytics.tools.bpmn.generator.internal.generated.model.TFlowNode;
+import io.process.analytics.tools.bpmn.generator.model.Diagram;
+import io.process.analytics.tools.bpmn.generator.model.Grid;
+
+class WorkloadGeneratorTest {
+
+    private final WorkloadGenerator generator = WorkloadGenerator.builder()
+            .seed(42).nodeCount(500).fanOut(4).nestingDepth(3).cycleDensity(0.1).labelLength(20)
+            .build();
+
+    @Test
+    void should_generate_the_same_model_for_the_same_seed() {
+        WorkloadGenerator.Csv csv = generator.generateCsv();
+        WorkloadGenerator.Csv sameSeed = WorkloadGenerator.builder()
+                .seed(42).nodeCount(500).fanOut(4).nestingDepth(3).cycleDensity(0.1).labelLength(20)
+                .build().generateCsv();
+        WorkloadGenerator.Csv otherSeed = WorkloadGenerator.builder()
+                .seed(43).nodeCount(500).fanOut(4).nestingDepth(3).cycleDensity(0.1).labelLength(20)
+                .build().generateCsv();
+
+        assertThat(sameSeed.nodes).isEqualTo(csv.nodes);
+        assertThat(sameSeed.edges).isEqualTo(csv.edges);
+        assertThat(otherSeed.edges).isNotEqualTo(csv.edges);
+    }
+
+    @Test
+    void should_generate_the_requested_number_of_nodes_and_label_length() {
+        BpmnElements bpmnElements = bpmnElements(generator.generateDefinitions());
+
+        assertThat(bpmnElements.getFlowNodes()).hasSize(500)
+                .allSatisfy(flowNode -> assertThat(flowNode.getName()).hasSize(20));
+    }
+
+    @Test
+    void should_generate_csv_read_as_the_generated_definitions() {
+        WorkloadGenerator.Csv csv = generator.generateCsv();
+
+        BpmnElements fromCsv = bpmnElements(new CSVtoBPMN().readFromCSV(csv.nodes, csv.edges));
+        BpmnElements generated = bpmnElements(generator.generateDefinitions());
+
+        assertThat(flowNodes(fromCsv)).isEqualTo(flowNodes(generated));
+        assertThat(sequenceFlows(fromCsv)).isEqualTo(sequenceFlows(generated));
+    }
+
+    @Test
+    void should_generate_models_that_can_be_laid_out() {
+        TDefinitions definitions = WorkloadGenerator.builder().seed(7).nodeCount(2000).cycleDensity(0.3).build()
+                .generateDefinitions();
+
+        Diagram diagram = new BpmnToAlgoModelConverter().toAlgoModel(definitions);
+        Diagram sortedDiagram = new ShapeSorter().sort(diagram);
+        Grid grid = new ShapeLayouter().layout(sortedDiagram);
+
+        assertThat(grid.getPositions()).hasSize(2000);
+    }
+
+    @Test
+    void should_reject_too_small_models() {
+        assertThatThrownBy(() -> WorkloadGenerator.builder().nodeCount(1).build().generateCsv())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BpmnElements bpmnElements(TDefinitions definitions) {
+        Semantic semantic = new Semantic(definitions);
+        return semantic.getBpmnElements(semantic.getProcesses().get(0));
+    }
+
+    private static List<String> flowNodes(BpmnElements bpmnElements) {
+        return bpmnElements.getFlowNodes().stream()
+                .map(TFlowNode.class::cast)
+                .map(flowNode -> flowNode.getId() + " " + flowNode.getClass().getSimpleName() + " " + flowNode.getName()
+                        + " " + flowNode.getIncoming() + " " + flowNode.getOutgoing())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> sequenceFlows(BpmnElements bpmnElements) {
+        return bpmnElements.getSequenceFlows().stream()
+                .map(flow -> flow.getId() + " " + getId(flow.getSourceRef()) + " " + getId(flow.getTargetRef()))
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import io.process.analytics.tools.bpmn.generator.BpmnAutoLayout;
+import io.process.analytics.tools.bpmn.generator.BpmnAutoLayout.ExportType;
+import io.process.analytics.tools.bpmn.generator.model.ShapeType;
+import io.process.analytics.tools.bpmn.generator.model.SymbolTable;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayDimension;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayEdge;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayFlowNode;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayLabel;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayModel;
+import io.process.analytics.tools.bpmn.generator.model.display.DisplayPoint;
+
+class BPMNDiagramInjectorTest {
+
+    private static final String BPMN = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<!-- exported by <a modeler> -->\n" +
+            "<bpmn:definitions xmlns:bpmn=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:zeebe='http://camunda.org/schema/zeebe/1.0' id=\"definitions_1\">\n" +
+            "    <bpmn:process id=\"process_1\">\n" +
+            "        <bpmn:startEvent id=\"start_1\" name=\"Start &amp; go\"/>\n" +
+            "        <bpmn:serviceTask id=\"task_1\">\n" +
+            "            <bpmn:extensionElements><zeebe:taskDefinition type=\"test\" /></bpmn:extensionElements>\n" +
+            "            <bpmn:documentation><![CDATA[</bpmn:definitions>]]></bpmn:documentation>\n" +
+            "        </bpmn:serviceTask>\n" +
+            "        <bpmn:sequenceFlow id=\"flow_1\" sourceRef=\"start_1\" targetRef=\"task_1\" />\n" +
+            "    </bpmn:process>\n" +
+            "    <bpmndi:BPMNDiagram xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\" id=\"old_diagram\">\n" +
+            "        <bpmndi:BPMNPlane id=\"old_plane\" bpmnElement=\"process_1\" />\n" +
+            "    </bpmndi:BPMNDiagram>\n" +
+            "</bpmn:definitions>\n";
+
+    private final BPMNDiagramInjector injector = new BPMNDiagramInjector();
+
+    @Test
+    void should_keep_the_document_and_replace_the_diagram() {
+        SymbolTable symbols = new SymbolTable();
+        DisplayModel displayModel = DisplayModel.builder()
+                .flowNode(new DisplayFlowNode(symbols.intern("start_1"), new DisplayDimension(10, 20, 30, 30),
+                        new DisplayLabel("Start & go", 10, new DisplayDimension(0, 55, 40, 10)), ShapeType.EVENT, 0, 0))
+                .flowNode(new DisplayFlowNode(symbols.intern("task_1"), new DisplayDimension(100, 10, 100, 50),
+                        new DisplayLabel("", 10, new DisplayDimension(100, 10, 100, 50)), ShapeType.ACTIVITY, 0, 0))
+                .edge(new DisplayEdge(symbols.intern("flow_1"), Arrays.asList(new DisplayPoint(40, 35), new DisplayPoint(100, 35))))
+                .symbols(symbols)
+                .build();
+        StringWriter output = new StringWriter();
+
+        injector.inject(BPMN, displayModel, output);
+
+        String semantic = BPMN.substring(0, BPMN.indexOf("    <bpmndi:BPMNDiagram") - 1);
+        assertThat(output.toString()).isEqualTo(semantic + "\n" +
+                "    <bpmndi:BPMNDiagram xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\" xmlns:dc=\"http://www.omg.org/spec/DD/20100524/DC\" xmlns:di=\"http://www.omg.org/spec/DD/20100524/DI\" id=\"BPMNDiagram_1\">\n" +
+                "        <bpmndi:BPMNPlane id=\"BPMNPlane_1\" bpmnElement=\"process_1\">\n" +
+                "            <bpmndi:BPMNShape id=\"BPMNShape_start_1\" bpmnElement=\"start_1\">\n" +
+                "                <dc:Bounds x=\"10.0\" y=\"20.0\" width=\"30.0\" height=\"30.0\"/>\n" +
+                "                <bpmndi:BPMNLabel>\n" +
+                "                    <dc:Bounds x=\"10.0\" y=\"55.0\" width=\"40.0\" height=\"10.0\"/>\n" +
+                "                </bpmndi:BPMNLabel>\n" +
+                "            </bpmndi:BPMNShape>\n" +
+                "            <bpmndi:BPMNShape id=\"BPMNShape_task_1\" bpmnElement=\"task_1\">\n" +
+                "                <dc:Bounds x=\"100.0\" y=\"10.0\" width=\"100.0\" height=\"50.0\"/>\n" +
+                "            </bpmndi:BPMNShape>\n" +
+                "            <bpmndi:BPMNEdge id=\"BPMNEdge_flow_1\" bpmnElement=\"flow_1\">\n" +
+                "                <di:waypoint x=\"40.0\" y=\"35.0\"/>\n" +
+                "                <di:waypoint x=\"100.0\" y=\"35.0\"/>\n" +
+                "            </bpmndi:BPMNEdge>\n" +
+                "        </bpmndi:BPMNPlane>\n" +
+                "    </bpmndi:BPMNDiagram>\n" +
+                "</bpmn:definitions>\n");
+    }
+
+    @Test
+    void should_reuse_the_prefixes_declared_on_the_definitions() {
+        String bpmn = "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:d=\"http://www.omg.org/spec/BPMN/20100524/DI\" xmlns:c=\"http://www.omg.org/spec/DD/20100524/DC\">" +
+                "<collaboration id=\"collaboration_1\"/><process id=\"process_1\"/><d:BPMNDiagram/></definitions>";
+        StringWriter output = new StringWriter();
+
+        injector.inject(bpmn, DisplayModel.builder().build(), output);
+
+        assertThat(output.toString()).isEqualTo(bpmn.substring(0, bpmn.indexOf("<d:BPMNDiagram/>")) + "\n" +
+                "  <d:BPMNDiagram xmlns:di=\"http://www.omg.org/spec/DD/20100524/DI\" id=\"BPMNDiagram_1\">\n" +
+                "    <d:BPMNPlane id=\"BPMNPlane_1\" bpmnElement=\"collaboration_1\"></d:BPMNPlane>\n" +
+                "  </d:BPMNDiagram></definitions>");
+    }
+
+    @Test
+    void should_copy_the_document_while_it_is_read() throws IOException {
+        StringWriter expected = new StringWriter();
+        injector.inject(BPMN, DisplayModel.builder().build(), expected);
+        // markup split across reads
+        Reader document = new StringReader(BPMN) {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                return super.read(chars, offset, Math.min(length, 3));
+            }
+        };
+        StringWriter output = new StringWriter();
+
+        BPMNDiagramInjector.Injection injection = injector.inject(document, output);
+        char[] buffer = new char[BPMN.indexOf("</bpmn:process>")];
+        int read = 0;
+        while (read < buffer.length) {
+            read += injection.getReader().read(buffer, read, buffer.length - read);
+        }
+
+        assertThat(new String(buffer)).isEqualTo(BPMN.substring(0, buffer.length));
+        assertThat(output.toString()).isEqualTo(BPMN.substring(0, BPMN.indexOf("\n    </bpmn:process>")));
+
+        injection.finish(DisplayModel.builder().build());
+
+        assertThat(output.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void should_produce_the_same_model_as_the_bpmn_export() throws IOException {
+        String bpmn = fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml"));
+
+        String passThrough = BpmnAutoLayout.layout(bpmn, ExportType.BPMN_PASS_THROUGH);
+
+        XmlParser xmlParser = new XmlParser();
+        assertThat(xmlParser.marshal(xmlParser.unmarshall(passThrough)))
+                .isEqualTo(BpmnAutoLayout.layout(bpmn, ExportType.BPMN));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.process.analytics.tools.bpmn.generator.internal.MappedFile.MappedInputStream;
+import io.process.analytics.tools.bpmn.generator.internal.MappedFile.MappedReader;
+
+class MappedFileTest {
+
+    // chars encoded on 1 to 4 bytes, so that some of them are split between two windows
+    private static final String CONTENT = "id,label\n1,Début ✓ 🚀 étape\n2,Fin\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void should_read_all_the_windows_of_the_file() throws IOException {
+        Path file = write(CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream input = new MappedInputStream(new MappedFile(file, 16))) {
+            assertThat(FileUtils.content(input)).isEqualTo(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void should_decode_chars_split_between_two_windows() throws IOException {
+        Path file = write(CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        for (int windowSize = 16; windowSize < 24; windowSize++) {
+            try (Reader reader = new MappedReader(new MappedFile(file, windowSize), StandardCharsets.UTF_8)) {
+                assertThat(read(reader)).as("window size %s", windowSize).isEqualTo(CONTENT);
+            }
+        }
+    }
+
+    @Test
+    void should_read_an_empty_file() throws IOException {
+        Path file = write(new byte[0]);
+
+        try (Reader reader = FileInput.MAPPED.newReader(file, StandardCharsets.UTF_8);
+             InputStream input = FileInput.MAPPED.newInputStream(file)) {
+            assertThat(reader.read()).isEqualTo(-1);
+            assertThat(input.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void should_report_malformed_input() throws IOException {
+        Path file = write(CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+
+        try (Reader reader = FileInput.MAPPED.newReader(file, StandardCharsets.UTF_8)) {
+            assertThatThrownBy(() -> read(reader)).isInstanceOf(MalformedInputException.class);
+        }
+    }
+
+    @Test
+    void should_read_the_same_definitions_as_the_buffered_input() {
+        Path bpmn = Paths.get("src/test/resources/bpmn/A.2.0.bpmn.xml");
+        XmlParser xmlParser = new XmlParser();
+
+        String mapped = xmlParser.marshal(new BpmnInOut(xmlParser, FileInput.MAPPED).readFromBpmn(bpmn));
+
+        assertThat(mapped).isEqualTo(xmlParser.marshal(new BpmnInOut(xmlParser).readFromBpmn(bpmn)));
+    }
+
+    private Path write(byte[] content) throws IOException {
+        return Files.write(directory.resolve("content.csv"), content);
+    }
+
+    private static String read(Reader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[5];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+
+}
@@ -17,12 +17,19 @@ package io.process.analytics.tools.bpmn.generator.internal;
 
 import static io.process.analytics.tools.bpmn.generator.internal.FileUtils.fileContent;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.UnmarshalException;
 
 import org.junit.jupiter.api.Test;
 
@@ -56,4 +63,125 @@ public class XmlParserTest {
         assertThat(plane.getId()).isEqualTo("BPMNPlane_1");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void marshal_to_a_stream() throws IOException {
+        TDefinitions definitions = xmlParser.unmarshall(fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        xmlParser.marshal(definitions, output);
+
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(xmlParser.marshal(definitions));
+    }
+
+    @Test
+    public void marshal_without_indentation() throws IOException {
+        TDefinitions definitions = xmlParser.unmarshall(fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml")));
+        XmlParser compactXmlParser = new XmlParser(XmlParser.Output.COMPACT);
+
+        String compact = compactXmlParser.marshal(definitions);
+
+        assertThat(compact)
+                .startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><definitions ")
+                .doesNotContain("\n")
+                .hasSizeLessThan(xmlParser.marshal(definitions).length());
+        assertThat(xmlParser.marshal(compactXmlParser.unmarshall(compact))).isEqualTo(xmlParser.marshal(definitions));
+    }
+
+    @Test
+    public void marshal_after_definitions_with_extension_elements() throws IOException {
+        TDefinitions definitions = xmlParser.unmarshall(fileContent(new File("src/test/resources/bpmn/A.2.0.bpmn.xml")));
+        String expected = xmlParser.marshal(definitions);
+
+        xmlParser.marshal(xmlParser.unmarshall(fileContent(new File("src/test/resources/bpmn/A.2.1.bpmn.xml"))));
+
+        assertThat(xmlParser.marshal(definitions)).isEqualTo(expected);
+    }
+
+    @Test
+    public void unmarshall_from_a_stream() throws IOException {
+        File bpmn = new File("src/test/resources/bpmn/A.2.1.bpmn.xml");
+
+        TDefinitions definitions;
+        try (InputStream input = new FileInputStream(bpmn)) {
+            definitions = xmlParser.unmarshall(input);
+        }
+
+        assertThat(xmlParser.marshal(definitions)).isEqualTo(xmlParser.marshal(xmlParser.unmarshall(fileContent(bpmn))));
+    }
+
+    @Test
+    public void unmarshall_the_processes_in_parallel() {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<bpmn:definitions xmlns:bpmn=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:zeebe=\"http://camunda.org/schema/zeebe/1.0\" id=\"definitions_1\">\n" +
+                "  <bpmn:collaboration id=\"collaboration_1\">\n" +
+                "    <bpmn:participant id=\"participant_1\" processRef=\"process_1\" />\n" +
+                "    <bpmn:participant id=\"participant_2\" processRef=\"process_2\" />\n" +
+                "    <bpmn:messageFlow id=\"message_1\" sourceRef=\"task_1\" targetRef=\"start_2\" />\n" +
+                "  </bpmn:collaboration>\n" +
+                "  <bpmn:process id=\"process_1\">\n" +
+                "    <bpmn:laneSet id=\"laneSet_1\"><bpmn:lane id=\"lane_1\"><bpmn:flowNodeRef>task_1</bpmn:flowNodeRef></bpmn:lane></bpmn:laneSet>\n" +
+                "    <bpmn:serviceTask id=\"task_1\" name=\"Send &amp; wait\">\n" +
+                "      <bpmn:extensionElements><zeebe:taskDefinition type=\"test\" /></bpmn:extensionElements>\n" +
+                "      <bpmn:documentation><![CDATA[</bpmn:process>]]></bpmn:documentation>\n" +
+                "    </bpmn:serviceTask>\n" +
+                "  </bpmn:process>\n" +
+                "  <!-- <bpmn:process id=\"commented\"/> -->\n" +
+                "  <bpmn:process id=\"process_2\">\n" +
+                "    <bpmn:startEvent id=\"start_2\" />\n" +
+                "    <bpmn:endEvent id=\"end_2\" />\n" +
+                "    <bpmn:sequenceFlow id=\"flow_2\" sourceRef=\"start_2\" targetRef=\"end_2\" />\n" +
+                "  </bpmn:process>\n" +
+                "  <bpmn:process id=\"process_3\" />\n" +
+                "</bpmn:definitions>\n";
+
+        // the message flows reference the tasks by QName, not by IDREF
+        assertThat(DefinitionsSplitter.split(bpmn).processes).hasSize(3);
+        TDefinitions definitions = XmlParser.unmarshallByProcess(bpmn, ForkJoinPool.commonPool());
+
+        assertThat(definitions.getRootElement()).extracting(element -> element.getValue().getId())
+                .containsExactly("collaboration_1", "process_1", "process_2", "process_3");
+        assertThat(xmlParser.marshal(definitions)).isEqualTo(xmlParser.marshal(xmlParser.unmarshall(bpmn)));
+    }
+
+    @Test
+    public void unmarshall_the_whole_document_when_a_process_references_another_one() {
+        String bpmn = "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"definitions_1\">" +
+                "<process id=\"process_1\"><task id=\"task_1\" /></process>" +
+                "<process id=\"process_2\"><task id=\"task_2\" /><sequenceFlow id=\"flow_1\" sourceRef=\"task_1\" targetRef=\"task_2\" /></process>" +
+                "</definitions>";
+
+        assertThat(DefinitionsSplitter.split(bpmn)).isNull();
+        TDefinitions definitions = XmlParser.unmarshallByProcess(bpmn, ForkJoinPool.commonPool());
+
+        TSequenceFlow sequenceFlow = (TSequenceFlow) ((TProcess) definitions.getRootElement().get(1).getValue()).getFlowElement().get(1).getValue();
+        assertThat(sequenceFlow.getSourceRef()).isInstanceOf(TTask.class);
+        assertThat(xmlParser.marshal(definitions)).isEqualTo(xmlParser.marshal(xmlParser.unmarshall(bpmn)));
+    }
+
+    @Test
+    public void unmarshall_the_processes_in_parallel_from_a_stream_with_a_byte_order_mark() throws IOException {
+        File bpmn = new File("src/test/resources/bpmn/03-startEvent_task_endEvent-with-byte-order-mark.bpmn.xml");
+        XmlParser parallelXmlParser = new XmlParser(XmlParser.Output.FORMATTED, XmlParser.Input.PARALLEL);
+
+        TDefinitions definitions;
+        try (InputStream input = new FileInputStream(bpmn)) {
+            definitions = parallelXmlParser.unmarshall(input);
+        }
+
+        assertThat(xmlParser.marshal(definitions)).isEqualTo(xmlParser.marshal(xmlParser.unmarshall(fileContent(bpmn))));
+    }
+
+    @Test
+    public void report_the_error_of_a_process_unmarshalled_in_parallel() {
+        String bpmn = "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"definitions_1\">" +
+                "<process id=\"process_1\"><task id=\"task_1\" /></process>" +
+                "<process id=\"process_2\"><task id=\"task_2\"></process>" +
+                "</definitions>";
+
+        assertThatThrownBy(() -> XmlParser.unmarshallByProcess(bpmn, ForkJoinPool.commonPool()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Unable to marshal")
+                .hasCauseInstanceOf(UnmarshalException.class);
+    }
+
+}
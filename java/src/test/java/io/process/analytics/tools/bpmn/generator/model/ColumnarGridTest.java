@@ -0,0 +1,30 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import io.process.analytics.tools.bpmn.generator.model.Grid.Storage;
+
+/**
+ * Runs the {@link GridTest} cases on a grid storing its rows in primitive arrays.
+ */
+class ColumnarGridTest extends GridTest {
+
+    @Override
+    Grid newGrid() {
+        return new Grid(new SymbolTable(), Storage.COLUMNAR);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import static io.process.analytics.tools.bpmn.generator.model.Edge.edge;
+import static io.process.analytics.tools.bpmn.generator.model.Edge.revertedEdge;
+import static io.process.analytics.tools.bpmn.generator.model.Shape.shape;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+class DiagramTest {
+
+    private final Shape start = shape("start");
+    private final Shape step1 = shape("step1");
+    private final Shape step2 = shape("step2");
+    private final Edge t1 = edge("t1", "start", "step1");
+    private final Edge t2 = edge("t2", "step1", "step2");
+    private final Edge t3 = revertedEdge(edge("t3", "step2", "step1"));
+    private final Edge t4 = edge("t4", "start", "step2");
+
+    private final Diagram diagram = Diagram.builder()
+            .shape(start).shape(step1).shape(step2)
+            .edge(t1).edge(t2).edge(t3).edge(t4)
+            .build();
+
+    @Test
+    void should_return_edges_of_a_shape_in_diagram_order() {
+        assertThat(diagram.getOutgoingEdges("start")).containsExactly(t1, t4);
+        assertThat(diagram.getIncomingEdges("step2")).containsExactly(t2, t3, t4);
+        assertThat(diagram.getOutgoingEdges("step1")).containsExactly(t2, t3);
+        assertThat(diagram.getIncomingEdges("start")).isEmpty();
+    }
+
+    @Test
+    void should_return_edges_of_a_shape_in_original_direction() {
+        assertThat(diagram.getOriginalIncomingEdges("step1")).containsExactly(t1, t3);
+        assertThat(diagram.getOriginalOutgoingEdges("step2")).containsExactly(t3);
+        assertThat(diagram.getOriginalIncomingEdges("step2")).containsExactly(t2, t4);
+    }
+
+    @Test
+    void should_return_empty_edges_for_unknown_shape() {
+        assertThat(diagram.getIncomingEdges("unknown")).isEmpty();
+        assertThat(diagram.getOriginalOutgoingEdges("unknown")).isEmpty();
+    }
+
+    @Test
+    void should_share_immutable_edge_lists() {
+        assertThat(diagram.getOutgoingEdges("start")).isSameAs(diagram.getOutgoingEdges("start"));
+        assertThatThrownBy(() -> diagram.getOutgoingEdges("start").add(t2))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void should_find_shape_by_id() {
+        assertThat(diagram.getShape("step1")).isSameAs(step1);
+        assertThatThrownBy(() -> diagram.getShape("unknown")).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void should_ignore_index_in_equality() {
+        Diagram same = Diagram.builder().shape(start).shape(step1).shape(step2).edge(t1).edge(t2).edge(t3).edge(t4).build();
+
+        assertThat(same).isEqualTo(diagram).hasSameHashCodeAs(diagram);
+        assertThat(same.toString()).isEqualTo(diagram.toString());
+    }
+
+    @Test
+    void should_query_edges_by_handle_of_a_shared_symbol_table() {
+        Diagram sorted = Diagram.builder().symbols(diagram.getSymbols()).shape(step2).shape(start).shape(step1).edge(t1).build();
+        int step1Handle = diagram.getSymbols().handle("step1");
+
+        assertThat(sorted.getSymbols()).isSameAs(diagram.getSymbols());
+        assertThat(sorted.getShapeHandle(2)).isEqualTo(step1Handle);
+        assertThat(sorted.getShape(step1Handle)).isSameAs(step1);
+        assertThat(sorted.getIncomingEdges(step1Handle)).containsExactly(t1);
+        assertThat(sorted.getSourceHandle(0)).isEqualTo(diagram.getSymbols().handle("start"));
+        assertThat(sorted.getOutgoingEdges("step1")).isEmpty();
+    }
+
+    @Test
+    void should_number_the_nodes_of_the_diagram_whatever_the_size_of_the_symbol_table() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 1000; i++) {
+            symbols.intern("other_" + i);
+        }
+        Diagram diagram = Diagram.builder().symbols(symbols).shape(step1).shape(start).edge(t1).edge(edge("t5", "step1", "end")).build();
+
+        assertThat(diagram.getNodeCount()).isEqualTo(3);
+        assertThat(diagram.getShapeIndex(symbols.handle("start"))).isEqualTo(1);
+        assertThat(diagram.getShapeIndex(symbols.handle("end"))).isEqualTo(-1);
+        assertThat(diagram.getShapeIndex(symbols.handle("other_1"))).isEqualTo(-1);
+        assertThat(diagram.getSourceNode(0)).isEqualTo(1);
+        assertThat(diagram.getTargetNode(1)).isEqualTo(2);
+        assertThat(diagram.getOutgoingEdges(symbols.handle("other_1"))).isEmpty();
+        assertThat(diagram.getIncomingEdges("end")).extracting(Edge::getId).containsExactly("t5");
+    }
+
+}
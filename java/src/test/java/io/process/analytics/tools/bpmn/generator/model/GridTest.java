@@ -18,16 +18,25 @@ package io.process.analytics.tools.bpmn.generator.model;
 import static io.process.analytics.tools.bpmn.generator.model.Position.position;
 import static io.process.analytics.tools.bpmn.generator.model.Shape.shape;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
 class GridTest {
 
-    private final Grid grid = new Grid();
+    private final Grid grid = newGrid();
     private final Shape nodeA = shape("a");
     private final Shape nodeB = shape("b");
     private final Shape nodeC = shape("c");
 
+    Grid newGrid() {
+        return new Grid();
+    }
+
     @Test
     public void should_move_element_when_adding_row_after() {
         grid.add(position(nodeA, 0, 0));
@@ -75,4 +84,220 @@ class GridTest {
         );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void should_find_position_of_shape_after_rows_are_added() {
+        grid.add(position(nodeA, 0, 0));
+        grid.add(position(nodeB, 1, 1));
+
+        grid.addRowBefore(1);
+
+        assertThat(grid.getPosition("b")).isEqualTo(position(nodeB, 1, 2));
+        assertThat(grid.isFilled(1, 2)).isTrue();
+        assertThat(grid.isFilled(1, 1)).isFalse();
+        assertThat(grid.getRow(1)).isEmpty();
+        assertThat(grid.height()).isEqualTo(3);
+        assertThat(grid.width()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_find_position_by_handle_of_a_shared_symbol_table() {
+        SymbolTable symbols = new SymbolTable();
+        int handleOfC = symbols.intern("c");
+        Grid sharingGrid = new Grid(symbols);
+        sharingGrid.add(position(nodeA, 0, 0));
+        sharingGrid.add(position(nodeC, 1, 0));
+
+        assertThat(sharingGrid.getPosition(handleOfC)).isEqualTo(position(nodeC, 1, 0));
+        assertThat(sharingGrid.getShapeHandles()).containsExactly(symbols.handle("a"), handleOfC);
+        assertThatThrownBy(() -> sharingGrid.getPosition(symbols.intern("b")))
+                .isInstanceOf(IllegalStateException.class).hasMessageEndingWith(":b");
+    }
+
+    @Test
+    public void should_move_element_when_removing_empty_row() {
+        grid.add(position(nodeA, 0, 0));
+        grid.add(position(nodeB, 1, 2));
+        grid.add(position(nodeC, 2, 3));
+
+        grid.removeEmptyRow(1);
+
+        assertThat(grid.getPositions()).containsExactly(
+                position(nodeA, 0, 0),
+                position(nodeB, 1, 1),
+                position(nodeC, 2, 2)
+        );
+        assertThat(grid.getLastRowIndex()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_detect_positions_between_columns_of_a_row() {
+        grid.add(position(nodeA, 0, 1));
+        grid.add(position(nodeB, 2, 1));
+
+        assertThat(grid.hasPositionBetween(1, 0, 2)).isFalse();
+        assertThat(grid.hasPositionBetween(1, 3, 0)).isTrue();
+        assertThat(grid.hasPositionBetween(0, 0, 5)).isFalse();
+    }
+
+    @Test
+    public void should_not_add_a_position_on_a_filled_cell() {
+        grid.add(position(nodeA, 0, 0));
+
+        assertThatThrownBy(() -> grid.add(position(nodeB, 0, 0))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void should_keep_positions_consistent_when_adding_and_removing_many_rows() {
+        grid.add(position(nodeA, 0, 0));
+        grid.add(position(nodeB, 1, 1));
+        grid.add(position(nodeC, 2, 2));
+
+        for (int i = 0; i < 100; i++) {
+            grid.addRowBefore(grid.getPosition("c").getY());
+            grid.addRowAfter(0);
+        }
+        assertThat(grid.getPositions()).containsExactly(
+                position(nodeA, 0, 0),
+                position(nodeB, 1, 101),
+                position(nodeC, 2, 202)
+        );
+        assertThat(grid.height()).isEqualTo(203);
+
+        for (int i = 0; i < 100; i++) {
+            grid.removeEmptyRow(1);
+        }
+        for (int i = 0; i < 100; i++) {
+            grid.removeEmptyRow(2);
+        }
+        assertThat(grid.getPositions()).containsExactly(
+                position(nodeA, 0, 0),
+                position(nodeB, 1, 1),
+                position(nodeC, 2, 2)
+        );
+        assertThat(grid.getPosition("c")).isEqualTo(position(nodeC, 2, 2));
+    }
+
+    @Test
+    public void should_keep_insertion_order_when_positions_are_removed_and_added_again() {
+        for (int i = 0; i < 40; i++) {
+            grid.add(position(shape("shape_" + i), i % 5, i / 5));
+        }
+        for (int i = 0; i < 40; i += 2) {
+            grid.remove(position(shape("shape_" + i), i % 5, i / 5));
+        }
+        grid.add(position(nodeA, 10, 0));
+        grid.add(position(nodeB, 0, 0));
+
+        assertThat(grid.getPositions()).hasSize(22).startsWith(position(shape("shape_1"), 1, 0))
+                .endsWith(position(shape("shape_39"), 4, 7), position(nodeA, 10, 0), position(nodeB, 0, 0));
+        assertThat(grid.getPosition("shape_3")).isEqualTo(position(shape("shape_3"), 3, 0));
+        assertThatThrownBy(() -> grid.getPosition("shape_2")).isInstanceOf(IllegalStateException.class);
+        assertThat(grid.width()).isEqualTo(11);
+    }
+
+    @Test
+    public void should_keep_insertion_order_when_rows_are_added_or_removed() {
+        grid.add(position(nodeA, 0, 1));
+        grid.add(position(nodeB, 0, 0));
+        grid.add(position(nodeC, 1, 2));
+        grid.add(position(shape("d"), 1, 0));
+
+        grid.addRowAfter(0);
+        grid.addRowBefore(0);
+        grid.removeEmptyRow(2);
+
+        assertThat(grid.getPositions()).containsExactly(
+                position(nodeA, 0, 2),
+                position(nodeB, 0, 1),
+                position(nodeC, 1, 3),
+                position(shape("d"), 1, 1)
+        );
+    }
+
+    @Test
+    public void should_merge_rows_into_the_last_one() {
+        grid.add(position(nodeC, 4, 0));
+        grid.add(position(nodeA, 0, 0));
+        grid.add(position(nodeB, 2, 2));
+        grid.add(position(shape("d"), 6, 3));
+
+        grid.mergeRows(0, 2);
+
+        assertThat(grid.getColumns(0)).containsExactly(0, 2, 4);
+        assertThat(grid.getPositions()).containsExactly(
+                position(nodeB, 2, 0),
+                position(shape("d"), 6, 1),
+                position(nodeA, 0, 0),
+                position(nodeC, 4, 0)
+        );
+        assertThat(grid.height()).isEqualTo(2);
+
+        grid.add(position(shape("e"), 6, 0));
+        assertThatThrownBy(() -> grid.mergeRows(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(grid.getColumns(1)).containsExactly(6);
+    }
+
+    @Test
+    public void should_reject_a_negative_column() {
+        assertThatThrownBy(() -> grid.add(position(nodeA, -1, 0)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageEndingWith("columns start at 0");
+    }
+
+    @Test
+    public void should_not_read_positions_listed_before_a_change() {
+        grid.add(position(nodeA, 0, 0));
+        List<Position> positions = grid.getPositions();
+
+        grid.addRowBefore(0);
+
+        assertThatThrownBy(() -> positions.get(0)).isInstanceOf(ConcurrentModificationException.class);
+        assertThat(grid.getPositions()).containsExactly(position(nodeA, 0, 1));
+    }
+
+    @Test
+    public void should_lay_out_the_same_positions_whatever_the_storage() {
+        Grid rowTree = new Grid(new SymbolTable(), Grid.Storage.ROW_TREE);
+        Grid columnar = new Grid(new SymbolTable(), Grid.Storage.COLUMNAR);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(8);
+            int y = random.nextInt(rowTree.height() + 2);
+            switch (random.nextInt(4)) {
+                case 0:
+                    rowTree.addRowAfter(y);
+                    columnar.addRowAfter(y);
+                    break;
+                case 1:
+                    if (y < rowTree.height() && rowTree.getColumns(y).length == 0) {
+                        rowTree.removeEmptyRow(y);
+                        columnar.removeEmptyRow(y);
+                    } else if (rowTree.isFilled(x, y)) {
+                        Position position = rowTree.getRow(y).stream().filter(p -> p.getX() == x).findFirst().get();
+                        rowTree.remove(position);
+                        columnar.remove(position);
+                    }
+                    break;
+                default:
+                    if (!rowTree.isFilled(x, y)) {
+                        rowTree.add(position(shape("shape_" + i), x, y));
+                        columnar.add(position(shape("shape_" + i), x, y));
+                    }
+            }
+            assertThat(columnar.getPositions()).isEqualTo(rowTree.getPositions());
+            assertThat(columnar.width()).isEqualTo(rowTree.width());
+            assertThat(columnar.height()).isEqualTo(rowTree.height());
+        }
+        for (int y = 0; y + 1 < rowTree.height(); y += 2) {
+            int row = y;
+            try {
+                rowTree.mergeRows(row, row + 1);
+            } catch (IllegalArgumentException e) {
+                assertThatThrownBy(() -> columnar.mergeRows(row, row + 1)).isInstanceOf(IllegalArgumentException.class);
+                continue;
+            }
+            columnar.mergeRows(row, row + 1);
+            assertThat(columnar.getPositions()).isEqualTo(rowTree.getPositions());
+        }
+    }
+
+}
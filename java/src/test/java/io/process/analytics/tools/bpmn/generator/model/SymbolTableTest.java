@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Bonitasoft S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.process.analytics.tools.bpmn.generator.model;
+
+import static io.process.analytics.tools.bpmn.generator.model.Edge.edge;
+import static io.process.analytics.tools.bpmn.generator.model.Shape.shape;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class SymbolTableTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    @Test
+    void should_create_dense_handles_in_interning_order() {
+        assertThat(symbols.intern("a")).isEqualTo(0);
+        assertThat(symbols.intern("b")).isEqualTo(1);
+        assertThat(symbols.intern(new String("a"))).isEqualTo(0);
+        assertThat(symbols.intern(null)).isEqualTo(2);
+
+        assertThat(symbols.size()).isEqualTo(3);
+        assertThat(symbols.handle("b")).isEqualTo(1);
+        assertThat(symbols.handle(null)).isEqualTo(2);
+        assertThat(symbols.handle("unknown")).isEqualTo(-1);
+        assertThat(symbols.symbol(2)).isNull();
+        assertThatThrownBy(() -> symbols.symbol(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void should_keep_the_first_interned_instance() {
+        String id = new String("a");
+        symbols.intern(id);
+
+        assertThat(symbols.symbol(symbols.intern(new String("a")))).isSameAs(id);
+    }
+
+    @Test
+    void should_intern_the_same_ids_from_several_threads() throws Exception {
+        int idCount = 20_000;
+        int threadCount = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int offset = t * idCount / threadCount;
+                results.add(pool.submit(() -> {
+                    int[] handles = new int[idCount];
+                    for (int i = 0; i < idCount; i++) {
+                        int id = (i + offset) % idCount;
+                        handles[id] = symbols.intern("id_" + id);
+                        assertThat(symbols.symbol(handles[id])).isEqualTo("id_" + id);
+                    }
+                    return handles;
+                }));
+            }
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertThat(result.get()).containsExactly(expected);
+            }
+            Set<Integer> distinctHandles = new HashSet<>();
+            for (int id = 0; id < idCount; id++) {
+                distinctHandles.add(expected[id]);
+                assertThat(symbols.handle("id_" + id)).isEqualTo(expected[id]);
+            }
+            assertThat(distinctHandles).hasSize(idCount);
+            assertThat(symbols.size()).isEqualTo(idCount);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void should_build_diagrams_sharing_the_table_from_several_threads() throws Exception {
+        int diagramCount = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Diagram>> diagrams = new ArrayList<>();
+            for (int d = 0; d < diagramCount; d++) {
+                String prefix = "diagram_" + d + "_";
+                diagrams.add(pool.submit(() -> {
+                    Diagram.DiagramBuilder diagram = Diagram.builder().symbols(symbols);
+                    for (int i = 0; i < 1000; i++) {
+                        diagram.shape(shape(prefix + i));
+                        if (i > 0) {
+                            diagram.edge(edge(prefix + "edge_" + i, prefix + (i - 1), prefix + i));
+                        }
+                    }
+                    return diagram.build();
+                }));
+            }
+            for (int d = 0; d < diagramCount; d++) {
+                Diagram diagram = diagrams.get(d).get();
+                String prefix = "diagram_" + d + "_";
+                for (int i = 1; i < 1000; i++) {
+                    assertThat(diagram.getIncomingEdges(prefix + i)).extracting(Edge::getFrom).containsExactly(prefix + (i - 1));
+                    assertThat(diagram.getShape(prefix + i).getId()).isEqualTo(prefix + i);
+                }
+            }
+            assertThat(symbols.size()).isEqualTo(diagramCount * 1000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}